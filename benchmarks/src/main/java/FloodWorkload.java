@@ -0,0 +1,107 @@
+import java.util.Random;
+
+import floodit.bench.Workload;
+import javalib.worldimages.Posn;
+
+// Lets the benchmarks play FloodItWorld, which is only visible from the default
+// package
+// each cell is drawn as small as it can be while the board still fits in a scene
+// 1000 pixels wide, and at least a pixel wide
+public class FloodWorkload implements Workload {
+  // how many points findClickedCellColor cycles through
+  static final int POINTS = 1024;
+
+  int size;
+  int colors;
+  Random rand;
+  int cellSize;
+  int sceneSize;
+  // the game drawBoard, makeScene, findClickedCellColor and allFlooded look at
+  FloodItWorld world;
+  // the game as setUp made it, and the copy of it the next move is made on
+  FloodGame start;
+  FloodItWorld moveWorld;
+  // the color that floods the most cells of the starting board
+  int bestColor;
+  Posn[] points;
+  int nextPoint;
+
+  public FloodWorkload() {
+    // everything is made by setUp
+  }
+
+  public void setUp(int size, int colors, long seed) {
+    this.size = size;
+    this.colors = colors;
+    this.rand = new Random(seed);
+    this.cellSize = Math.max(1, 1000 / size);
+    this.sceneSize = size * this.cellSize + 100;
+    this.start = new FloodGame(size, colors, new Random(seed));
+    this.world = this.makeWorld(this.start.copy());
+    this.world.makeScene();
+    this.bestColor = new FloodSolver().bestMove(this.start.regions);
+    this.points = new Posn[POINTS];
+    for (int k = 0; k < POINTS; k++) {
+      this.points[k] = new Posn(this.rand.nextInt(this.sceneSize),
+          this.rand.nextInt(this.sceneSize));
+    }
+    this.restart();
+  }
+
+  // returns a world that plays the given game, drawn at this workload's scale
+  FloodItWorld makeWorld(FloodGame game) {
+    FloodItWorld ans = new FloodItWorld(game);
+    ans.cellSize = this.cellSize;
+    ans.sceneSize = this.sceneSize;
+    return ans;
+  }
+
+  public Object makeBoard() {
+    return new FloodBoard(this.size, this.rand, this.start.allColors);
+  }
+
+  public void restart() {
+    this.moveWorld = this.makeWorld(this.start.copy());
+  }
+
+  public int fullMove() {
+    FloodItWorld w = this.moveWorld;
+    w.flooding = true;
+    w.game.startMove(this.bestColor);
+    int steps = 0;
+    while (w.flooding) {
+      w.floodNext();
+      steps = steps + 1;
+    }
+    return steps;
+  }
+
+  public int greedyGame(boolean bits) {
+    FloodGame g = this.start.copy();
+    if (bits) {
+      g.useBits();
+    }
+    AMoveStrategy greedy = new GreedyStrategy();
+    while (!g.allFlooded()) {
+      g.applyMove(greedy.chooseMove(g, this.rand));
+    }
+    return g.movesUsed();
+  }
+
+  public Object drawBoard() {
+    return this.world.drawBoard();
+  }
+
+  public Object makeScene() {
+    return this.world.makeScene();
+  }
+
+  public Object findClickedCellColor() {
+    this.nextPoint = (this.nextPoint + 1) & (POINTS - 1);
+    return this.world.findClickedCellColor(this.points[this.nextPoint]);
+  }
+
+  public boolean allFlooded() {
+    return this.world.allFlooded();
+  }
+}
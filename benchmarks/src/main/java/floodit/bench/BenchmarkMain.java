@@ -0,0 +1,30 @@
+package floodit.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks with the usual JMH options, writing the results as JSON to
+// jmh-result.json unless told otherwise, so runs can be compared over time
+public class BenchmarkMain {
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+    if (!cmd.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!cmd.getResult().hasValue()) {
+      options.result("jmh-result.json");
+    }
+    if (cmd.getIncludes().isEmpty()) {
+      options.include(FloodBenchmarks.class.getSimpleName());
+      options.include(MoveBenchmarks.class.getSimpleName());
+      options.include(EngineBenchmarks.class.getSimpleName());
+    }
+    new Runner(options.build()).run();
+  }
+}
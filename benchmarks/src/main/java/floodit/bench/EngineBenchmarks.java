@@ -0,0 +1,50 @@
+package floodit.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures a whole greedy game played on the regions of the board against the
+// same game played on its bits, for each board size and number of colors
+// both engines flood the same cells, so both games take the same moves
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmarks {
+  @Param({ "13", "100", "500" })
+  int size;
+
+  @Param({ "3", "6" })
+  int colors;
+
+  @Param({ "regions", "bits" })
+  String engine;
+
+  Workload game;
+
+  @Setup(Level.Trial)
+  public void setUp() throws ReflectiveOperationException {
+    this.game = (Workload) Class.forName("FloodWorkload").getDeclaredConstructor()
+        .newInstance();
+    this.game.setUp(this.size, this.colors, 42);
+  }
+
+  @Benchmark
+  public int greedyGame() {
+    return this.game.greedyGame(this.engine.equals("bits"));
+  }
+}
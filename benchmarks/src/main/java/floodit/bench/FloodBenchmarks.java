@@ -0,0 +1,65 @@
+package floodit.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures the hot paths of the game for each board size and number of colors
+// moves change the board, so they are measured by MoveBenchmarks
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloodBenchmarks {
+  @Param({ "13", "100", "500", "2000" })
+  int size;
+
+  @Param({ "3", "5", "8" })
+  int colors;
+
+  Workload game;
+
+  @Setup(Level.Trial)
+  public void setUp() throws ReflectiveOperationException {
+    this.game = (Workload) Class.forName("FloodWorkload").getDeclaredConstructor()
+        .newInstance();
+    this.game.setUp(this.size, this.colors, 42);
+  }
+
+  @Benchmark
+  public Object makeBoard() {
+    return this.game.makeBoard();
+  }
+
+  @Benchmark
+  public Object drawBoard() {
+    return this.game.drawBoard();
+  }
+
+  @Benchmark
+  public Object makeScene() {
+    return this.game.makeScene();
+  }
+
+  @Benchmark
+  public Object findClickedCellColor() {
+    return this.game.findClickedCellColor();
+  }
+
+  @Benchmark
+  public boolean allFlooded() {
+    return this.game.allFlooded();
+  }
+}
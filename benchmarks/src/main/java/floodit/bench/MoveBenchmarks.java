@@ -0,0 +1,52 @@
+package floodit.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures a whole move driven one floodNext at a time, the way the display
+// plays it, for each board size and number of colors
+// every move starts over from the same board, so each one floods the same cells
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmarks {
+  @Param({ "13", "100", "500", "2000" })
+  int size;
+
+  @Param({ "3", "5", "8" })
+  int colors;
+
+  Workload game;
+
+  @Setup(Level.Trial)
+  public void setUp() throws ReflectiveOperationException {
+    this.game = (Workload) Class.forName("FloodWorkload").getDeclaredConstructor()
+        .newInstance();
+    this.game.setUp(this.size, this.colors, 42);
+  }
+
+  @Setup(Level.Invocation)
+  public void restart() {
+    this.game.restart();
+  }
+
+  @Benchmark
+  public int fullMove() {
+    return this.game.fullMove();
+  }
+}
@@ -0,0 +1,41 @@
+package floodit.bench;
+
+// The parts of a game of Flood-It the benchmarks measure
+// the game is in the default package, which classes in a package cannot name,
+// so FloodWorkload implements this in the default package and the benchmarks
+// load it by name
+public interface Workload {
+
+  // EFFECT: makes a seeded game on a board of the given size and number of colors,
+  // drawn small enough that the whole board fits in a scene
+  void setUp(int size, int colors, long seed);
+
+  // returns a new random board of the game's size and colors
+  Object makeBoard();
+
+  // EFFECT: starts the moves over from the board made by setUp, leaving the
+  // game the other benchmarks look at alone
+  void restart();
+
+  // EFFECT: clicks the color that floods the most cells of the restarted board and
+  // calls floodNext until the flood stops
+  // returns how many times floodNext was called
+  int fullMove();
+
+  // returns how many moves the greedy strategy takes to flood a copy of the
+  // board made by setUp, played on its bits if bits is true and on its regions
+  // otherwise
+  int greedyGame(boolean bits);
+
+  // returns the picture of the board
+  Object drawBoard();
+
+  // returns the scene of the game
+  Object makeScene();
+
+  // returns the color at the next of a fixed list of random points in the scene
+  Object findClickedCellColor();
+
+  // checks if every cell is flooded
+  boolean allFlooded();
+}
@@ -0,0 +1,548 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.Tester;
+import java.awt.Color;
+
+// The cells of a board as bits, one plane of bits per palette color and one for
+// the flooded cells, so the flood can grow 64 cells at a time
+// each row takes rowWords longs of its own, so a cell's neighbors above and
+// below are a whole number of words away and only the neighbors left and right
+// need shifting
+// cell (x, y) is bit x % 64 of word y * rowWords + x / 64, and the bits past the
+// end of a row are always 0
+// a move floods the same cells with the same colors as startMove and floodStep
+// on a FloodBoard do, either one wave at a time with startMove and step, or all
+// at once with move
+class BitBoard {
+  int size;
+  int rowWords;
+  // the bits of the last word of a row that are cells
+  long lastMask;
+  // the cells of each palette color
+  long[][] planes;
+  long[] flooded;
+  int floodedCount;
+  // whether every flooded cell is joined to the top left cell through flooded
+  // cells, so a move can spread from all of them instead of from the top left
+  // cell, which moves keep true once it is
+  boolean joined;
+  // the cells the flood of the current move has reached, and the last wave of it
+  long[] reached;
+  long[] wave;
+  int waveSize;
+  // how many cells the last step looked at, which is every cell of the board
+  // since every word of it is combined
+  int examined;
+  // scratch space the size of a plane
+  long[] scratch;
+  // the rows fill has left to look at, and whether each row is one of them
+  int[] rows;
+  boolean[] waiting;
+  // the board indexes of the cells the current move flooded that were not
+  // flooded, where addedSize is how many there are
+  int[] added = new int[16];
+  int addedSize;
+
+  // makes the bits of the given board
+  BitBoard(FloodBoard board) {
+    this.size = board.size;
+    this.rowWords = (this.size + 63) / 64;
+    this.lastMask = this.size % 64 == 0 ? -1L : (1L << (this.size % 64)) - 1;
+    int words = this.rowWords * this.size;
+    this.planes = new long[board.palette.size()][words];
+    this.flooded = new long[words];
+    this.reached = new long[words];
+    this.wave = new long[words];
+    this.scratch = new long[words];
+    this.rows = new int[this.size];
+    this.waiting = new boolean[this.size];
+    for (int y = 0; y < this.size; y++) {
+      for (int x = 0; x < this.size; x++) {
+        int i = board.index(x, y);
+        int w = this.word(x, y);
+        this.planes[board.colors[i]][w] |= 1L << x;
+        if (board.isFlooded(i)) {
+          this.flooded[w] |= 1L << x;
+        }
+      }
+    }
+    this.floodedCount = board.floodedCount;
+    this.fill(-1, this.scratch);
+    this.joined = Arrays.equals(this.scratch, this.flooded);
+  }
+
+  // makes bits in the same state as the given bits that can be played without
+  // changing them
+  BitBoard(BitBoard other) {
+    this.size = other.size;
+    this.rowWords = other.rowWords;
+    this.lastMask = other.lastMask;
+    this.planes = new long[other.planes.length][];
+    for (int c = 0; c < this.planes.length; c++) {
+      this.planes[c] = other.planes[c].clone();
+    }
+    this.flooded = other.flooded.clone();
+    this.floodedCount = other.floodedCount;
+    this.joined = other.joined;
+    this.reached = other.reached.clone();
+    this.wave = other.wave.clone();
+    this.waveSize = other.waveSize;
+    this.scratch = new long[other.scratch.length];
+    this.rows = new int[this.size];
+    this.waiting = new boolean[this.size];
+  }
+
+  // returns the word that holds the cell at (x, y)
+  int word(int x, int y) {
+    return y * this.rowWords + (x >> 6);
+  }
+
+  // returns the palette color of the cell at (x, y)
+  int colorAt(int x, int y) {
+    int w = this.word(x, y);
+    for (int c = 0; c < this.planes.length; c++) {
+      if ((this.planes[c][w] & (1L << x)) != 0) {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  // checks if every cell is flooded
+  boolean allFlooded() {
+    return this.floodedCount == this.size * this.size;
+  }
+
+  // EFFECT: puts the cells next to the cells of from, and no others, in into
+  void neighbors(long[] from, long[] into) {
+    int rw = this.rowWords;
+    for (int y = 0; y < this.size; y++) {
+      int row = y * rw;
+      for (int k = 0; k < rw; k++) {
+        int w = row + k;
+        long s = from[w];
+        long ans = (s << 1) | (s >>> 1);
+        if (k > 0) {
+          ans |= from[w - 1] >>> 63;
+        }
+        if (k < rw - 1) {
+          ans |= from[w + 1] << 63;
+        }
+        if (y > 0) {
+          ans |= from[w - rw];
+        }
+        if (y < this.size - 1) {
+          ans |= from[w + rw];
+        }
+        into[w] = k == rw - 1 ? ans & this.lastMask : ans;
+      }
+    }
+  }
+
+  // EFFECT: floods the top left cell, changes it to the palette color c and
+  // starts the wave of the move from it
+  void startMove(int c) {
+    Arrays.fill(this.reached, 0);
+    Arrays.fill(this.wave, 0);
+    this.reached[0] = 1L;
+    this.wave[0] = 1L;
+    this.waveSize = 1;
+    this.addedSize = 0;
+    this.paint(this.wave, c);
+  }
+
+  // EFFECT: spreads the flood of the palette color c from the last wave to the
+  // cells next to it that are flooded or of color c and not yet reached, which
+  // are flooded, changed to c and become the new wave
+  // returns whether the flood reached any cell
+  boolean step(int c) {
+    long[] next = this.scratch;
+    if (c < 0) {
+      Arrays.fill(next, 0);
+      this.examined = 0;
+    }
+    else {
+      this.examined = this.size * this.size;
+      this.neighbors(this.wave, next);
+      long[] plane = this.planes[c];
+      for (int w = 0; w < next.length; w++) {
+        next[w] &= (this.flooded[w] | plane[w]) & ~this.reached[w];
+        this.reached[w] |= next[w];
+      }
+    }
+    this.scratch = this.wave;
+    this.wave = next;
+    this.waveSize = this.paint(next, c);
+    return this.waveSize > 0;
+  }
+
+  // EFFECT: floods the board with the palette color c all at once, which ends
+  // as startMove followed by every step would
+  void move(int c) {
+    this.fill(c, this.reached);
+    this.addedSize = 0;
+    this.paint(this.reached, c);
+    // the flood is joined from now on if the move reached every flooded cell
+    this.joined = this.joined || Arrays.equals(this.reached, this.flooded);
+    Arrays.fill(this.wave, 0);
+    this.waveSize = 0;
+  }
+
+  // returns how many cells a move of the palette color c would flood that are
+  // not flooded yet
+  int gain(int c) {
+    this.fill(c, this.scratch);
+    int ans = 0;
+    for (int w = 0; w < this.scratch.length; w++) {
+      ans = ans + Long.bitCount(this.scratch[w] & ~this.flooded[w]);
+    }
+    return ans;
+  }
+
+  // returns the palette colors a move of which would flood at least one more
+  // cell, in order
+  int[] usefulMoves() {
+    this.neighbors(this.flooded, this.scratch);
+    int n = 0;
+    int[] ans = new int[this.planes.length];
+    for (int c = 0; c < this.planes.length; c++) {
+      long[] plane = this.planes[c];
+      boolean useful = false;
+      for (int w = 0; w < plane.length && !useful; w++) {
+        useful = (this.scratch[w] & plane[w] & ~this.flooded[w]) != 0;
+      }
+      if (useful) {
+        ans[n] = c;
+        n = n + 1;
+      }
+    }
+    return Arrays.copyOf(ans, n);
+  }
+
+  // EFFECT: puts in into the cells a move of the palette color c would reach,
+  // which are the top left cell and the cells joined to it through cells that are
+  // flooded or of color c, or through flooded cells alone if c is -1
+  // only the rows with an open cell next to a reached one are looked at, and a
+  // row is looked at again whenever a row next to it reaches more, so once the
+  // flood is joined and reached already, the work goes to the rows the move
+  // floods rather than to the whole board
+  void fill(int c, long[] into) {
+    if (this.joined) {
+      System.arraycopy(this.flooded, 0, into, 0, into.length);
+    }
+    else {
+      Arrays.fill(into, 0);
+    }
+    into[0] |= 1L;
+    long[] plane = c < 0 ? new long[into.length] : this.planes[c];
+    int top = 0;
+    for (int y = 0; y < this.size; y++) {
+      if (this.canSpread(into, plane, y)) {
+        this.rows[top] = y;
+        this.waiting[y] = true;
+        top = top + 1;
+      }
+    }
+    while (top > 0) {
+      top = top - 1;
+      int y = this.rows[top];
+      this.waiting[y] = false;
+      if (this.fillRow(into, plane, y)) {
+        for (int near = y - 1; near <= y + 1; near = near + 2) {
+          if (near >= 0 && near < this.size && !this.waiting[near]) {
+            this.rows[top] = near;
+            this.waiting[near] = true;
+            top = top + 1;
+          }
+        }
+      }
+    }
+  }
+
+  // checks if a cell of row y that is open, being flooded, of the color of plane
+  // or the top left cell, is next to a cell of reached without being in it
+  boolean canSpread(long[] reached, long[] plane, int y) {
+    int rw = this.rowWords;
+    int row = y * rw;
+    for (int k = 0; k < rw; k++) {
+      int w = row + k;
+      long left = (this.flooded[w] | plane[w] | (w == 0 ? 1L : 0)) & ~reached[w];
+      if (left != 0) {
+        long near = (reached[w] << 1) | (reached[w] >>> 1);
+        if (k > 0) {
+          near |= reached[w - 1] >>> 63;
+        }
+        if (k < rw - 1) {
+          near |= reached[w + 1] << 63;
+        }
+        if (y > 0) {
+          near |= reached[w - rw];
+        }
+        if (y < this.size - 1) {
+          near |= reached[w + rw];
+        }
+        if ((near & left) != 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // EFFECT: adds to row y of reached the open cells above or below reached ones,
+  // then every open cell of row y joined along the row to a reached one, where a
+  // cell is open if it is flooded, of the color of plane, or the top left cell
+  // returns whether any cell was added
+  boolean fillRow(long[] reached, long[] plane, int y) {
+    int rw = this.rowWords;
+    int row = y * rw;
+    boolean changed = false;
+    // spreading right, carrying into the next word
+    long carry = 0;
+    for (int k = 0; k < rw; k++) {
+      int w = row + k;
+      long open = this.flooded[w] | plane[w] | (w == 0 ? 1L : 0);
+      long seed = reached[w] | carry;
+      if (y > 0) {
+        seed |= reached[w - rw];
+      }
+      if (y < this.size - 1) {
+        seed |= reached[w + rw];
+      }
+      seed &= open;
+      // adding the seeds to the open cells carries each seed through the run of
+      // open cells above it, clearing them, so the cleared cells are the run
+      long run = ((seed + open) ^ open) & open | seed;
+      carry = run >>> 63;
+      if ((run & ~reached[w]) != 0) {
+        changed = true;
+        reached[w] |= run;
+      }
+    }
+    // spreading left, which is spreading right with the bits of each word reversed
+    carry = 0;
+    for (int k = rw - 1; k >= 0; k--) {
+      int w = row + k;
+      long open = Long.reverse(this.flooded[w] | plane[w] | (w == 0 ? 1L : 0));
+      long seed = (Long.reverse(reached[w]) | carry) & open;
+      long run = Long.reverse(((seed + open) ^ open) & open | seed);
+      carry = run & 1L;
+      if ((run & ~reached[w]) != 0) {
+        changed = true;
+        reached[w] |= run;
+      }
+    }
+    return changed;
+  }
+
+  // EFFECT: floods the given cells and changes them to the palette color c
+  // returns how many cells are given
+  int paint(long[] cells, int c) {
+    int ans = 0;
+    for (int w = 0; w < cells.length; w++) {
+      long bits = cells[w];
+      if (bits != 0) {
+        ans = ans + Long.bitCount(bits);
+        this.floodedCount = this.floodedCount + Long.bitCount(bits & ~this.flooded[w]);
+        this.addCells(w, bits & ~this.flooded[w]);
+        this.flooded[w] |= bits;
+        for (int d = 0; d < this.planes.length; d++) {
+          this.planes[d][w] &= ~bits;
+        }
+        if (c >= 0) {
+          this.planes[c][w] |= bits;
+        }
+      }
+    }
+    return ans;
+  }
+
+  // EFFECT: adds the cells of the given bits of word w to the cells the current
+  // move flooded
+  void addCells(int w, long bits) {
+    int y = w / this.rowWords;
+    int x0 = (w % this.rowWords) << 6;
+    while (bits != 0) {
+      if (this.addedSize == this.added.length) {
+        this.added = Arrays.copyOf(this.added, this.addedSize * 2);
+      }
+      this.added[this.addedSize] = y * this.size + x0 + Long.numberOfTrailingZeros(bits);
+      this.addedSize = this.addedSize + 1;
+      bits = bits & (bits - 1);
+    }
+  }
+
+  // EFFECT: takes back a move that flooded the cells at the given board indexes
+  // of cells, from index 1 on, and changed the flood from the palette color old
+  // assumes the flood was joined and of one color before the move
+  void undoMove(int[] cells, int old) {
+    for (int k = 1; k < cells.length; k++) {
+      int x = cells[k] % this.size;
+      int y = cells[k] / this.size;
+      this.flooded[this.word(x, y)] &= ~(1L << x);
+    }
+    this.floodedCount = this.floodedCount - (cells.length - 1);
+    for (int w = 0; w < this.flooded.length; w++) {
+      long f = this.flooded[w];
+      if (f != 0) {
+        for (int d = 0; d < this.planes.length; d++) {
+          this.planes[d][w] &= ~f;
+        }
+        this.planes[old][w] |= f;
+      }
+    }
+    Arrays.fill(this.wave, 0);
+    this.waveSize = 0;
+  }
+
+  // EFFECT: floods and changes to the palette color c the cells of the given
+  // board in the last wave, the way floodStep would
+  void paintWave(FloodBoard board, int c) {
+    for (int y = 0; y < this.size; y++) {
+      for (int k = 0; k < this.rowWords; k++) {
+        long bits = this.wave[y * this.rowWords + k];
+        while (bits != 0) {
+          int i = board.index((k << 6) + Long.numberOfTrailingZeros(bits), y);
+          board.flood(i);
+          board.updateColor(i, c);
+          bits = bits & (bits - 1);
+        }
+      }
+    }
+  }
+
+  // EFFECT: changes the colors and flooded cells of the given board to match
+  // these bits
+  void paintBoard(FloodBoard board) {
+    Arrays.fill(board.flooded, 0);
+    for (int y = 0; y < this.size; y++) {
+      for (int x = 0; x < this.size; x++) {
+        int i = board.index(x, y);
+        board.colors[i] = (byte) this.colorAt(x, y);
+        if ((this.flooded[this.word(x, y)] & (1L << x)) != 0) {
+          board.flooded[i >> 6] |= 1L << i;
+        }
+      }
+    }
+    board.floodedCount = this.floodedCount;
+    board.allDirty = true;
+  }
+}
+
+class ExamplesBitBoard {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  // a 3x3 board
+  // red green blue
+  // red red blue
+  // green red red
+  FloodBoard board3() {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    b.floodStart();
+    return b;
+  }
+
+  // checks that the given bits hold the same cells as the given board
+  boolean same(BitBoard bits, FloodBoard b) {
+    FloodBoard painted = new FloodBoard(b.size, b.palette);
+    bits.paintBoard(painted);
+    return Arrays.equals(painted.colors, b.colors) && Arrays.equals(painted.flooded, b.flooded)
+        && painted.floodedCount == b.floodedCount;
+  }
+
+  void testPlanes(Tester t) {
+    BitBoard bits = new BitBoard(this.board3());
+    t.checkExpect(bits.rowWords, 1);
+    t.checkExpect(bits.lastMask, 7L);
+    t.checkExpect(bits.planes[0], new long[] { 1, 3, 6 });
+    t.checkExpect(bits.planes[1], new long[] { 2, 0, 1 });
+    t.checkExpect(bits.flooded, new long[] { 1, 3, 6 });
+    t.checkExpect(bits.floodedCount, 5);
+    t.checkExpect(bits.colorAt(2, 1), 2);
+    t.checkExpect(bits.usefulMoves(), new int[] { 1, 2 });
+    t.checkExpect(bits.gain(2), 2);
+    t.checkExpect(bits.gain(1), 2);
+    t.checkExpect(new BitBoard(new FloodBoard(64, this.colors)).lastMask, -1L);
+    t.checkExpect(new BitBoard(new FloodBoard(65, this.colors)).rowWords, 2);
+  }
+
+  void testNeighbors(Tester t) {
+    BitBoard bits = new BitBoard(new FloodBoard(70, this.colors));
+    long[] from = new long[bits.flooded.length];
+    long[] into = new long[bits.flooded.length];
+    // the cell at (63, 1)
+    from[2] = 1L << 63;
+    bits.neighbors(from, into);
+    t.checkExpect(into[0], 1L << 63);
+    t.checkExpect(into[2], 1L << 62);
+    t.checkExpect(into[3], 1L);
+    t.checkExpect(into[4], 1L << 63);
+    // cells past the end of a row are never neighbors
+    Arrays.fill(from, 0);
+    from[1] = 1L << 5;
+    bits.neighbors(from, into);
+    t.checkExpect(into[1], 1L << 4);
+    t.checkExpect(into[3], 1L << 5);
+  }
+
+  void testMoveMatchesBoard(Tester t) {
+    for (int seed = 0; seed < 40; seed++) {
+      Random rand = new Random(seed);
+      int size = 1 + rand.nextInt(seed < 20 ? 20 : 150);
+      FloodBoard b = new FloodBoard(size, rand, this.colors);
+      BitBoard stepped = new BitBoard(b);
+      BitBoard moved = new BitBoard(b);
+      boolean same = true;
+      for (int m = 0; m < 30 && !b.allFlooded(); m++) {
+        int c = rand.nextInt(3);
+        int gain = moved.gain(c);
+        int before = b.floodedCount;
+        b.flood(0);
+        b.updateColor(0, c);
+        b.startWave();
+        stepped.startMove(c);
+        boolean more = true;
+        while (more) {
+          more = b.floodStep(c);
+          same = same && stepped.step(c) == more && stepped.waveSize == b.waveSize;
+        }
+        moved.move(c);
+        same = same && gain == b.floodedCount - before;
+      }
+      t.checkExpect(same && this.same(stepped, b) && this.same(moved, b), true);
+    }
+  }
+
+  void testPaintWave(Tester t) {
+    FloodBoard b = this.board3();
+    BitBoard bits = new BitBoard(b);
+    FloodBoard legacy = this.board3();
+    legacy.flood(0);
+    legacy.updateColor(0, 2);
+    legacy.startWave();
+    b.flood(0);
+    b.updateColor(0, 2);
+    bits.startMove(2);
+    while (legacy.floodStep(2)) {
+      bits.step(2);
+      bits.paintWave(b, 2);
+    }
+    t.checkExpect(b.colors, legacy.colors);
+    t.checkExpect(b.flooded, legacy.flooded);
+    t.checkExpect(b.floodedCount, 7);
+  }
+
+  void testCopy(Tester t) {
+    BitBoard bits = new BitBoard(this.board3());
+    BitBoard other = new BitBoard(bits);
+    other.move(1);
+    t.checkExpect(bits.floodedCount, 5);
+    t.checkExpect(other.floodedCount, 7);
+    t.checkExpect(bits.planes[1], new long[] { 2, 0, 1 });
+  }
+}
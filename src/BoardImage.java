@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import tester.Tester;
+import java.awt.Color;
+import javalib.worldimages.*;
+
+// A picture of a board that is kept from frame to frame
+// only the cells whose color changed since the last frame are painted again,
+// so drawing a frame costs as much as the cells that changed, not the board
+class BoardImage {
+  // the board this was last drawn from
+  FloodBoard board;
+  // the width and height of a cell in pixels
+  int cellSize;
+  ComputedPixelImage image;
+  // how many cells were painted for the last frame
+  int lastPainted;
+
+  BoardImage(FloodBoard board, int cellSize) {
+    this.board = board;
+    this.cellSize = cellSize;
+    this.image = new ComputedPixelImage(board.size * cellSize, board.size * cellSize);
+    this.lastPainted = 0;
+  }
+
+  // EFFECT: paints the cells of the given board that changed since the last
+  // frame, or every cell if it is a different board
+  // returns the picture of the board
+  WorldImage draw(FloodBoard b) {
+    if (b.size != this.board.size) {
+      this.image = new ComputedPixelImage(b.size * this.cellSize, b.size * this.cellSize);
+    }
+    if (b != this.board || b.allDirty) {
+      this.board = b;
+      for (int i = 0; i < b.colors.length; i++) {
+        this.paintCell(i);
+      }
+      this.lastPainted = b.colors.length;
+    }
+    else {
+      for (int k = 0; k < b.dirtySize; k++) {
+        this.paintCell(b.dirty[k]);
+      }
+      this.lastPainted = b.dirtySize;
+    }
+    b.clearDirty();
+    return this.image;
+  }
+
+  // EFFECT: paints the given cell of the board with its color
+  void paintCell(int i) {
+    Color c = this.board.colorAt(i);
+    int left = (i % this.board.size) * this.cellSize;
+    int top = (i / this.board.size) * this.cellSize;
+    for (int y = top; y < top + this.cellSize; y++) {
+      for (int x = left; x < left + this.cellSize; x++) {
+        this.image.setPixel(x, y, c);
+      }
+    }
+  }
+}
+
+class ExamplesBoardImage {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  void testDraw(Tester t) {
+    FloodBoard b = new FloodBoard(4, this.colors);
+    BoardImage img = new BoardImage(b, 3);
+    WorldImage first = img.draw(b);
+    t.checkExpect(img.lastPainted, 16);
+    t.checkExpect(b.allDirty, false);
+
+    img.draw(b);
+    t.checkExpect(img.lastPainted, 0);
+
+    b.updateColor(5, 1);
+    b.updateColor(6, 2);
+    t.checkExpect(img.draw(b) == first, true);
+    t.checkExpect(img.lastPainted, 2);
+    t.checkExpect(b.dirtySize, 0);
+
+    // a new board of the same size is painted over the same picture
+    FloodBoard other = new FloodBoard(4, this.colors);
+    other.clearDirty();
+    t.checkExpect(img.draw(other) == first, true);
+    t.checkExpect(img.lastPainted, 16);
+    t.checkExpect(img.board, other);
+
+    FloodBoard bigger = new FloodBoard(5, this.colors);
+    t.checkExpect(img.draw(bigger) == first, false);
+    t.checkExpect(img.lastPainted, 25);
+  }
+
+  void testFloodRepaint(Tester t) {
+    FloodItWorld w = new FloodItWorld(10, 4, 71);
+    w.makeScene();
+    t.checkExpect(w.boardImage.lastPainted, 100);
+    w.onMouseClicked(new Posn(155, 175));
+    w.onTick();
+    w.makeScene();
+    t.checkExpect(w.boardImage.lastPainted > 0 && w.boardImage.lastPainted <= 3, true);
+  }
+}
@@ -1,7 +1,13 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
+import com.sun.management.ThreadMXBean;
 import tester.Tester;
 import javalib.impworld.*;
 import java.awt.Color;
@@ -128,25 +134,7 @@ class Cell extends ACell {
 
   // checks if this cell has the given Posn inside it
   boolean wasClicked(Posn pos, int boardSize) {
-    int xmin;
-    int xmax;
-    int ymin;
-    int ymax;
-    int half = boardSize / 2;
-    if (boardSize % 2 == 0) {
-      xmin = ((this.x - half) * 20) + 250;
-      xmax = ((this.x - half + 1) * 20) + 250;
-      ymin = ((this.y - half) * 20) + 250;
-      ymax = ((this.y - half + 1) * 20) + 250;
-    }
-    else {
-      xmin = ((this.x - (boardSize / 2)) * 20) + 250 - 10;
-      xmax = ((this.x - (boardSize / 2)) * 20) + 250 + 10;
-      ymin = ((this.y - (boardSize / 2)) * 20) + 250 - 10;
-      ymax = ((this.y - (boardSize / 2)) * 20) + 250 + 10;
-
-    }
-    return (pos.x >= xmin && pos.x < xmax) && (pos.y >= ymin && pos.y < ymax);
+    return new Utils().cellWasClicked(this.x, this.y, pos, boardSize);
   }
 
   // checks if this cell is adjacent to a cell that is flooded and has the given
@@ -164,260 +152,490 @@ class Cell extends ACell {
 }
 
 class FloodItWorld extends World {
-  // All the cells of the game
-  ArrayList<ArrayList<Cell>> board;
+  // the file the s key saves the game to
+  static final String SAVE_FILE = "floodit.save";
+  // how long the p key lets the solver take to find the par of each board
+  static final long PAR_MILLIS = 2000;
+  // the state of the game, which is played one wave of the flood per tick
+  FloodGame game;
   int size;
   int numOfColors;
-  ArrayList<Color> allColors = new ArrayList<Color>(Arrays.asList(Color.blue, Color.cyan,
-      Color.green, Color.magenta, Color.orange, Color.pink, Color.red, Color.yellow));
-  Random rand;
   boolean flooding;
   Color clicked;
-  int numClicks;
-  int maxClicks;
+  // whether the last click was on a color that floods no more cells, which still
+  // counts as a move
+  boolean wasted;
+  // what the last save said, shown until the next move, or "" if there is nothing
+  // to say
+  String status = "";
   long startTime = System.currentTimeMillis();
 
   // assumes numOfColors is below 8
   FloodItWorld(int size, int numOfColors) {
-    this.size = size;
-    this.numOfColors = numOfColors;
-    this.rand = new Random();
-    this.allColors = new Utils().randColorSet(this.rand, this.allColors, numOfColors);
-    this.flooding = false;
-    this.clicked = Color.white; // using white as a null color
-    this.numClicks = 0;
-    this.maxClicks = ((25 * (2 * size) * numOfColors) / 168) + 1;
-    this.board = this.makeBoard();
+    this(new FloodGame(size, numOfColors, new Random()));
   }
 
   // assumes numOfColors is below 8
   FloodItWorld(int size, int numOfColors, int seed) {
-    this.size = size;
-    this.numOfColors = numOfColors;
-    this.rand = new Random(seed);
-    this.allColors = new Utils().randColorSet(this.rand, this.allColors, numOfColors);
-    this.flooding = false;
-    this.clicked = Color.white;
-    this.numClicks = 0;
-    this.maxClicks = ((25 * (2 * size) * numOfColors) / 168) + 1;
-    this.board = this.makeBoard();
+    this(new FloodGame(size, numOfColors, new Random(seed)));
+  }
 
+  // assumes numOfColors is below 8
+  // draws each cell with the given width in pixels in a scene of the given width
+  // and height in pixels, so boards bigger than the default scene fit on screen
+  FloodItWorld(int size, int numOfColors, int cellSize, int sceneSize) {
+    this(size, numOfColors);
+    this.cellSize = cellSize;
+    this.sceneSize = sceneSize;
   }
 
   // assumes numOfColors is below 8
   FloodItWorld(ArrayList<ArrayList<Cell>> board, int size, int numOfColors) {
-    this.board = board;
-    this.size = size;
-    this.numOfColors = numOfColors;
-    this.rand = new Random();
-    this.allColors = new Utils().randColorSet(this.rand, this.allColors, numOfColors);
-    this.flooding = false;
-    this.clicked = Color.white;
-    this.numClicks = 0;
-    this.maxClicks = ((25 * (2 * size) * numOfColors) / 168) + 1;
-  }
-
-  // creates a random board
-  ArrayList<ArrayList<Cell>> makeBoard() {
-    ArrayList<ArrayList<Cell>> ans = new ArrayList<ArrayList<Cell>>();
-    for (int i = 0; i < this.size; i++) {
-      ans.add(this.makeColumn(i));
-    }
-    Cell topLeft = ans.get(0).get(0);
-    topLeft.flooded = true;
-    for (int x = 0; x < this.size; x++) {
-      for (int y = 0; y < this.size; y++) {
-        Cell cell = ans.get(x).get(y);
-        ACell left;
-        ACell right;
-        ACell top;
-        ACell bottom;
-        if (cell.x - 1 >= 0) {
-          left = ans.get(x - 1).get(y);
-        }
-        else {
-          left = new BorderCell();
-        }
-        if (cell.x + 1 < this.size) {
-          right = ans.get(x + 1).get(y);
-        }
-        else {
-          right = new BorderCell();
-        }
-        if (cell.y - 1 >= 0) {
-          top = ans.get(x).get(y - 1);
-        }
-        else {
-          top = new BorderCell();
-        }
-        if (cell.y + 1 < this.size) {
-          bottom = ans.get(x).get(y + 1);
-        }
-        else {
-          bottom = new BorderCell();
-        }
-        cell.updateAdjacent(left, right, top, bottom);
-        if (cell.sameColorAndFlooded(topLeft.color) && cell.color.equals(topLeft.color)) {
-          cell.flooded = true;
-        }
-      }
-    }
-    return ans;
+    this(new FloodGame(new FloodBoard(board), new Utils().randColorSet(new Random(),
+        new Utils().gameColors(), numOfColors), new Random()));
   }
 
-  // creates a random column
-  ArrayList<Cell> makeColumn(int x) {
-    ArrayList<Cell> ans = new ArrayList<Cell>();
-    for (int i = 0; i < this.size; i++) {
-      ans.add(new Cell(x, i, this.rand, this.allColors));
-    }
-    return ans;
+  // plays the given game
+  FloodItWorld(FloodGame game) {
+    this.game = game;
+    this.size = game.size;
+    this.numOfColors = game.allColors.size();
+    this.flooding = false;
+    this.clicked = Color.white; // using white as a null color
   }
 
+  // the width and height of the scene in pixels
   int sceneSize = 500;
+  // the width and height of a cell in pixels
+  int cellSize = 20;
+  // the picture of the board kept between frames
+  BoardImage boardImage;
+  // the panned or zoomed view of the board, or null while a board that fits the
+  // scene is drawn where it has always been
+  // a board that does not fit is always drawn through a view, so only the cells
+  // on screen are painted
+  Viewport view;
+  // where the mouse was pressed to drag the view, or null
+  Posn dragFrom;
+  // the last scene drawn of the game
+  WorldScene scene;
+  // what the last scene shows, so a frame puts a scene together again only when
+  // something besides the cells changed
+  WorldImage shownBoard;
+  long shownSeconds;
+  int shownMoves;
+  int shownMax;
+  int shownHint;
+  boolean shownWasted;
+  String shownStatus;
+  boolean shownLost;
+  // the texts of the last scene, made again only when what they say changes
+  WorldImage turnCounter;
+  WorldImage timer;
+  // what worldEnds says while the game goes on and the last scene is shown
+  WorldEnd going;
+  // measures the ticks, scenes, steps and moves of this world while enabled
+  FloodMetrics metrics = new FloodMetrics();
+  // decides how far the flood goes each tick and when to draw a new frame
+  FloodScheduler scheduler = new FloodScheduler();
+  // works out hints in the background while the player thinks
+  FloodHints hints = new FloodHints();
+  // the palette color hinted at for this position, or -1 if none is shown
+  int hint = -1;
+  // whether a hint was asked for and is not ready yet
+  boolean hintWanted;
+  // works out the par of each board in the background while it is used, or null
+  // to allow the usual number of clicks
+  FloodPar par;
   WorldScene background = new WorldScene(sceneSize, sceneSize);
 
   // draws this board
+  // EFFECT: paints the cells that changed since the last frame onto the picture
+  // of the board
   WorldImage drawBoard() {
-    ArrayList<Cell> column1 = this.board.get(0);
-    WorldImage ans = new Utils().drawColumn(column1);
-    for (ArrayList<Cell> column : this.board) {
-      if (column != column1) {
-        ans = new BesideImage(ans, new Utils().drawColumn(column));
-      }
+    if (this.view != null || !this.fits()) {
+      return this.view().draw(this.game.board());
     }
-    return ans;
+    if (this.boardImage == null) {
+      this.boardImage = new BoardImage(this.game.board(), this.cellSize);
+    }
+    return this.boardImage.draw(this.game.board());
   }
 
   // draws the game
+  // the last scene is handed back until the scheduler says a frame is due, and
+  // even then unless something it shows besides the cells changed, since the
+  // picture of the board in it is painted in place
   public WorldScene makeScene() {
-    WorldScene bg = new WorldScene(500, 500);
-    bg.placeImageXY(this.drawBoard(), 250, 250);
-    WorldImage turnCounter = new TextImage(this.numClicks + "/" + this.maxClicks, Color.black);
-    bg.placeImageXY(turnCounter, 250, 450);
-    WorldImage timer = new TextImage(
-        String.valueOf((System.currentTimeMillis() - this.startTime) / 1000) + " seconds",
-        Color.black);
-    bg.placeImageXY(timer, 250, 100);
-    if (this.numClicks > this.maxClicks) {
-      bg.placeImageXY(new TextImage("You Lose :(", 20, Color.black), 250, 475);
+    long now = System.nanoTime();
+    if (this.scene != null && !this.scheduler.frameDue(now)) {
+      return this.scene;
+    }
+    long start = this.metrics.start();
+    WorldImage board = this.drawBoard();
+    long seconds = (System.currentTimeMillis() - this.startTime) / 1000;
+    if (this.scene == null || board != this.shownBoard || seconds != this.shownSeconds
+        || this.game.movesUsed() != this.shownMoves || this.game.maxClicks != this.shownMax
+        || this.hint != this.shownHint || this.wasted != this.shownWasted
+        || !this.status.equals(this.shownStatus) || this.game.isLost() != this.shownLost) {
+      this.scene = this.compose(board, seconds);
     }
+    this.scheduler.drew(now);
+    this.metrics.render(start, "makeScene");
+    return this.scene;
+  }
+
+  // returns a new scene of the given picture of the board and the game as it is
+  // now, given how many seconds it has gone on for
+  // EFFECT: remembers what the scene shows, making a new text only where it
+  // changed
+  WorldScene compose(WorldImage board, long seconds) {
+    int center = this.sceneSize / 2;
+    WorldScene bg = new WorldScene(this.sceneSize, this.sceneSize);
+    bg.placeImageXY(board, center, center);
+    if (this.turnCounter == null || this.game.movesUsed() != this.shownMoves
+        || this.game.maxClicks != this.shownMax) {
+      this.turnCounter = new TextImage(this.game.movesUsed() + "/" + this.game.maxClicks,
+          Color.black);
+    }
+    bg.placeImageXY(this.turnCounter, center, this.sceneSize - 50);
+    if (this.hint != -1) {
+      bg.placeImageXY(new TextImage("hint", Color.black), center + 60, this.sceneSize - 50);
+      bg.placeImageXY(new RectangleImage(16, 16, "solid", this.hintColor()),
+          center + 90, this.sceneSize - 50);
+    }
+    if (this.timer == null || seconds != this.shownSeconds) {
+      this.timer = new TextImage(String.valueOf(seconds) + " seconds", Color.black);
+    }
+    bg.placeImageXY(this.timer, center, 100);
+    if (this.wasted) {
+      bg.placeImageXY(new TextImage("That color floods nothing", Color.red), center, 125);
+    }
+    if (!this.status.isEmpty()) {
+      bg.placeImageXY(new TextImage(this.status, Color.black), center, 150);
+    }
+    if (this.game.isLost()) {
+      bg.placeImageXY(new TextImage("You Lose :(", 20, Color.black), center,
+          this.sceneSize - 25);
+    }
+    this.shownBoard = board;
+    this.shownSeconds = seconds;
+    this.shownMoves = this.game.movesUsed();
+    this.shownMax = this.game.maxClicks;
+    this.shownHint = this.hint;
+    this.shownWasted = this.wasted;
+    this.shownStatus = this.status;
+    this.shownLost = this.game.isLost();
     return bg;
   }
 
   // updates board every tick
   // EFFECT: updates world state
   public void onTick() {
+    long start = this.metrics.start();
+    if (this.hints.running == null) {
+      this.hints.analyse(this.game);
+    }
     if (this.flooding) {
-      this.floodNext();
+      this.scheduler.tick(this, System.nanoTime());
     }
+    if (this.hintWanted) {
+      this.showHint();
+    }
+    if (this.par != null && this.par.apply(this.game)) {
+      this.scheduler.invalidate();
+    }
+    this.metrics.tick(start, this.flooding);
   }
 
   // EFFECT: changes the color of the next cells that need to be flooded to create
   // the waterfall effect
+  // only the cells next to the last wave can change, so the rest of the board is
+  // never looked at
   void floodNext() {
-    boolean wasChange = false;
-    for (int i = this.size - 1; i >= 0; i--) {
-      ArrayList<Cell> column = this.board.get(i);
-      for (int j = this.size - 1; j >= 0; j--) {
-        Cell cell = column.get(j);
-        if (cell.flooded && cell.color.equals(clicked)) {
-          // prevents the other branches of the else-if from occuring so that wasChange is
-          // not updated and we can leave the flooding state of the game
-        }
-        else if (cell.flooded && cell.sameColorAndFlooded(clicked)) {
-          cell.updateColor(clicked);
-          wasChange = true;
-        }
-        else if (cell.sameColorAndFlooded(clicked) && cell.color.equals(this.clicked)) {
-          cell.flooded = true;
-          wasChange = true;
-        }
-      }
-    }
-    if (!wasChange) {
+    long start = this.metrics.start();
+    boolean spread = this.game.step();
+    this.metrics.step(start, this.game.examined(), this.game.waveSize());
+    if (!spread) {
       this.flooding = false;
+      this.metrics.moveDone();
+    }
+  }
+
+  // handles mouse clicks, zooming in on the right button and out on the middle
+  // one
+  // EFFECT: updates world state
+  public void onMouseClicked(Posn pos, String button) {
+    if (button.equals("RightButton")) {
+      this.view().zoom(2, pos.x, pos.y);
+      this.scheduler.invalidate();
+    }
+    else if (button.equals("MiddleButton")) {
+      this.view().zoom(0.5, pos.x, pos.y);
+      this.scheduler.invalidate();
+    }
+    else {
+      this.onMouseClicked(pos);
+    }
+  }
+
+  // EFFECT: remembers where a drag of the view starts
+  public void onMousePressed(Posn pos) {
+    this.dragFrom = pos;
+  }
+
+  // EFFECT: moves the view as far as the mouse was dragged
+  public void onMouseReleased(Posn pos) {
+    if (this.dragFrom != null && (pos.x != this.dragFrom.x || pos.y != this.dragFrom.y)) {
+      this.view().pan(pos.x - this.dragFrom.x, pos.y - this.dragFrom.y);
+      this.scheduler.invalidate();
     }
+    this.dragFrom = null;
+  }
+
+  // returns the view of the board, starting from where the board has always been
+  // drawn, or from all of the board if it does not fit the scene that way
+  Viewport view() {
+    if (this.view == null) {
+      this.view = Viewport.fit(this.sceneSize, this.sceneSize, this.size, this.cellSize);
+    }
+    return this.view;
+  }
+
+  // checks if the whole board fits the scene with its cells cellSize pixels wide
+  boolean fits() {
+    return (long) this.size * this.cellSize <= this.sceneSize;
   }
 
   // handles mouse clicks
   // EFFECT: updates world state
   public void onMouseClicked(Posn pos) {
     if (!this.flooding) {
-      Color c = this.findClickedCellColor(pos);
-      if (c != Color.white) {
-        this.clicked = c;
+      int i = this.cellAt(pos);
+      if (i != FloodBoard.BORDER) {
+        this.clicked = this.game.board().colorAt(i);
         this.flooding = true;
-        this.numClicks = this.numClicks + 1;
-        this.board.get(0).get(0).flooded = true;
-        this.board.get(0).get(0).color = this.clicked;
+        this.hints.cancel();
+        int gain = this.game.gain(this.game.board().colors[i]);
+        this.game.startMove(this.game.board().colors[i]);
+        this.metrics.click(this.game.color);
+        this.scheduler.moveStarted(System.nanoTime());
+        this.moved();
+        // with tiles the move is flooded as it starts, which tells what it gained
+        this.wasted = (gain == -1 ? this.game.tileGain : gain) == 0;
       }
     }
   }
 
+  // checks if the player has won, which only looks at how many cells are flooded
+  // the regions of the board are flooded as soon as a move starts, so the game is
+  // not won until the flood on screen has caught up
   public WorldEnd worldEnds() {
-    if (this.numClicks <= this.maxClicks && this.allFlooded()) {
-      WorldScene bg = new WorldScene(500, 500);
-      bg.placeImageXY(new RectangleImage(500, 500, "solid", Color.green.darker()), 250, 250);
-      bg.placeImageXY(new TextImage("YOU WIN!!!", 50, Color.white), 250, 250);
-      bg.placeImageXY(new TextImage(":)", 75, Color.white), 250, 325);
+    if (!this.flooding && this.game.isWon()) {
+      long start = this.metrics.start();
+      int center = this.sceneSize / 2;
+      WorldScene bg = new WorldScene(this.sceneSize, this.sceneSize);
+      bg.placeImageXY(new RectangleImage(this.sceneSize, this.sceneSize, "solid",
+          Color.green.darker()), center, center);
+      bg.placeImageXY(new TextImage("YOU WIN!!!", 50, Color.white), center, center);
+      bg.placeImageXY(new TextImage(":)", 75, Color.white), center, center + 75);
       String finalTime = String.valueOf((System.currentTimeMillis() - this.startTime) / 1000)
           + " seconds";
-      bg.placeImageXY(new TextImage("It took " + finalTime, Color.white), 250, 400);
-      bg.placeImageXY(new TextImage("and " + this.numClicks + " clicks", Color.white), 250, 450);
+      bg.placeImageXY(new TextImage("It took " + finalTime, Color.white), center, center + 150);
+      bg.placeImageXY(new TextImage("and " + this.game.movesUsed() + " clicks", Color.white),
+          center, center + 200);
+      this.metrics.render(start, "worldEnds");
       return new WorldEnd(true, bg);
     }
-    else {
+    else if (this.scene == null) {
       return new WorldEnd(false, this.makeScene());
     }
+    else {
+      // the world is not over, so there is no need to draw it again, and the
+      // answer for the last scene is handed back while that scene is shown
+      if (this.going == null || this.going.lastScene != this.scene) {
+        this.going = new WorldEnd(false, this.scene);
+      }
+      return this.going;
+    }
   }
 
+  // returns the color of the cell at the given Posn, or white if the Posn is
+  // not on the board
   Color findClickedCellColor(Posn pos) {
-    for (ArrayList<Cell> column : this.board) {
-      for (Cell cell : column) {
-        if (cell.wasClicked(pos, this.size)) {
-          return cell.color;
-        }
-      }
+    int i = this.cellAt(pos);
+    if (i == FloodBoard.BORDER) {
+      return Color.white;
+    }
+    return this.game.board().colorAt(i);
+  }
+
+  // returns the index of the cell at the given Posn, or the border if the Posn is
+  // not on the board
+  // the board is drawn centered in the scene, so its top left corner is half the
+  // board's width up and left of the center of the scene
+  int cellAt(Posn pos) {
+    if (this.view != null || !this.fits()) {
+      return this.view().cellAt(pos);
+    }
+    int corner = (this.sceneSize / 2) - (this.size * this.cellSize) / 2;
+    int x = Math.floorDiv(pos.x - corner, this.cellSize);
+    int y = Math.floorDiv(pos.y - corner, this.cellSize);
+    if (x < 0 || x >= this.size || y < 0 || y >= this.size) {
+      return FloodBoard.BORDER;
     }
-    return Color.white;
+    return this.game.board().index(x, y);
   }
 
   // handles keystrokes
   // EFFECT: updates world state
   public void onKeyEvent(String k) {
     if (k.equals("r")) {
-      this.board = this.makeBoard();
+      this.game.reset();
+      if (this.par != null) {
+        this.game.maxClicks = this.game.usualMaxClicks();
+        this.par.start(this.game);
+      }
       this.flooding = false;
       this.clicked = Color.white;
-      this.numClicks = 0;
       this.startTime = System.currentTimeMillis();
+      this.scheduler.invalidate();
+      this.moved();
+    }
+    else if (k.equals("u") && !this.flooding) {
+      this.game.undo();
+      this.scheduler.invalidate();
+      this.moved();
+    }
+    else if (k.equals("y") && !this.flooding) {
+      this.game.redo();
+      this.scheduler.invalidate();
+      this.moved();
+    }
+    else if (k.equals("p")) {
+      this.usePar(this.par == null ? FloodItWorld.PAR_MILLIS : 0);
+    }
+    else if (k.equals("h")) {
+      this.hintWanted = true;
+      this.showHint();
+    }
+    else if (k.equals("s")) {
+      this.save(Path.of(FloodItWorld.SAVE_FILE));
+    }
+    else if (k.equals("left") || k.equals("right") || k.equals("up") || k.equals("down")) {
+      // the arrows move the view a quarter of the scene, showing what is that way
+      int step = this.sceneSize / 4;
+      this.view().pan(k.equals("left") ? step : k.equals("right") ? -step : 0,
+          k.equals("up") ? step : k.equals("down") ? -step : 0);
+      this.scheduler.invalidate();
+    }
+    else if (k.equals("+") || k.equals("=") || k.equals("-")) {
+      int center = this.sceneSize / 2;
+      this.view().zoom(k.equals("-") ? 0.5 : 2, center, center);
+      this.scheduler.invalidate();
+    }
+    else if (k.equals("0")) {
+      // back to all of the board, drawn where it has always been if it fits
+      this.view = Viewport.fit(this.sceneSize, this.sceneSize, this.size, this.cellSize);
+      this.boardImage = null;
+      this.scheduler.invalidate();
     }
   }
 
+  // EFFECT: forgets the hint shown, the wasted click and what the last save said,
+  // and starts working out the hint of the position the game moved to
+  // a move's regions are flooded as soon as it is clicked, so the search runs
+  // while the flood is still being drawn
+  void moved() {
+    this.wasted = false;
+    this.status = "";
+    this.hint = -1;
+    this.hintWanted = false;
+    this.hints.analyse(this.game);
+  }
+
+  // returns the color of the hint shown
+  // hints are colors of the board's palette, which on a board made by hand need
+  // not be the colors new boards are made of
+  Color hintColor() {
+    return this.game.board().palette.get(this.hint);
+  }
+
+  // EFFECT: shows the hint for this position once it is ready, without waiting
+  // for it
+  void showHint() {
+    this.hint = this.hints.hint(this.game);
+    if (this.hint != -1) {
+      this.hintWanted = false;
+      this.scheduler.invalidate();
+    }
+  }
+
+  // EFFECT: allows as many clicks as the solver needs for this board and every
+  // new one, giving it the given number of milliseconds a board, or the usual
+  // number of clicks for 0
+  // the usual number is allowed until the solver is done, so the world never
+  // waits for it
+  void usePar(long millis) {
+    if (this.par != null) {
+      this.par.cancel();
+    }
+    this.game.maxClicks = this.game.usualMaxClicks();
+    this.par = millis > 0 ? new FloodPar(millis) : null;
+    if (this.par != null) {
+      this.par.start(this.game);
+    }
+    this.scheduler.invalidate();
+  }
+
+  // EFFECT: writes the board this game started on and its moves so far to the
+  // given file, and shows in the scene whether it could
+  // a failed save leaves the game as it was, so it is not worth ending the game
+  void save(Path file) {
+    try {
+      new FloodSave(this.game).write(file);
+      this.status = "Saved the game to " + file.getFileName();
+    }
+    catch (IOException e) {
+      this.status = "Could not save the game: " + e.getMessage();
+    }
+    this.scheduler.invalidate();
+  }
+
   // checks if all cells are flooded in this board
   boolean allFlooded() {
-    for (ArrayList<Cell> column : this.board) {
-      for (Cell cell : column) {
-        if (!cell.flooded) {
-          return false;
-        }
-      }
-    }
-    return true;
+    return this.game.allFlooded();
   }
 }
 
 class Utils {
-  // draws a given list of cells in a column
-  WorldImage drawColumn(ArrayList<Cell> arr) {
-    WorldImage ans = arr.get(0).drawCell();
-    for (ACell c : arr) {
-      if (arr.get(0) != c) {
-        ans = new AboveImage(ans, c.drawCell());
-      }
+  // returns every color a game can be made of
+  ArrayList<Color> gameColors() {
+    return new ArrayList<Color>(Arrays.asList(Color.blue, Color.cyan, Color.green,
+        Color.magenta, Color.orange, Color.pink, Color.red, Color.yellow));
+  }
+
+  // checks if the cell at the given position of a board of the given size has the
+  // given Posn inside it
+  boolean cellWasClicked(int x, int y, Posn pos, int boardSize) {
+    int xmin;
+    int xmax;
+    int ymin;
+    int ymax;
+    int half = boardSize / 2;
+    if (boardSize % 2 == 0) {
+      xmin = ((x - half) * 20) + 250;
+      xmax = ((x - half + 1) * 20) + 250;
+      ymin = ((y - half) * 20) + 250;
+      ymax = ((y - half + 1) * 20) + 250;
     }
-    return ans;
+    else {
+      xmin = ((x - (boardSize / 2)) * 20) + 250 - 10;
+      xmax = ((x - (boardSize / 2)) * 20) + 250 + 10;
+      ymin = ((y - (boardSize / 2)) * 20) + 250 - 10;
+      ymax = ((y - (boardSize / 2)) * 20) + 250 + 10;
+    }
+    return (pos.x >= xmin && pos.x < xmax) && (pos.y >= ymin && pos.y < ymax);
   }
 
   // returns a random color in the given lsit
@@ -610,9 +828,9 @@ class ExamplesFloodItWorld {
 
   void testOnTick(Tester t) {
     this.reset();
-    t.checkExpect(floodIt1.board, board1);
+    t.checkExpect(floodIt1.game.board(), new FloodBoard(board1));
     floodIt1.onTick();
-    t.checkExpect(floodIt1.board, board1);
+    t.checkExpect(floodIt1.game.board(), new FloodBoard(board1));
     floodIt1.flooding = true;
     floodIt1.onTick();
     t.checkExpect(floodIt1.flooding, false);
@@ -622,15 +840,38 @@ class ExamplesFloodItWorld {
     this.reset();
     floodItWin.clicked = Color.red;
     floodItWin.floodNext();
-    t.checkExpect(floodItWin.board.get(0).get(1).color, Color.red);
-    t.checkExpect(floodItWin.board.get(1).get(0).color, Color.red);
-    t.checkExpect(floodItWin.board.get(1).get(1).color, Color.yellow);
+    FloodBoard b = floodItWin.game.board();
+    t.checkExpect(b.colorAt(b.index(0, 1)), Color.red);
+    t.checkExpect(b.colorAt(b.index(1, 0)), Color.red);
+    t.checkExpect(b.colorAt(b.index(1, 1)), Color.yellow);
+  }
+
+  void testFloodNextWaves(Tester t) {
+    this.reset();
+    FloodBoard b = floodIt1.game.board();
+    floodIt1.onMouseClicked(new Posn(215, 235));
+    t.checkExpect(floodIt1.clicked, Color.green);
+    t.checkExpect(b.colorAt(0), Color.green);
+    floodIt1.onTick();
+    t.checkExpect(b.isFlooded(b.index(0, 1)), true);
+    t.checkExpect(b.isFlooded(b.index(1, 1)), false);
+    floodIt1.onTick();
+    t.checkExpect(b.isFlooded(b.index(1, 1)), true);
+    t.checkExpect(b.isFlooded(b.index(2, 1)), false);
+    floodIt1.onTick();
+    t.checkExpect(b.isFlooded(b.index(2, 1)), true);
+    t.checkExpect(floodIt1.flooding, true);
+    floodIt1.onTick();
+    t.checkExpect(floodIt1.flooding, false);
+    t.checkExpect(b.isFlooded(b.index(3, 1)), false);
+    t.checkExpect(b.isFlooded(b.index(1, 0)), false);
+    t.checkExpect(b.floodedCount, 4);
   }
 
   void testOnMouseClicked(Tester t) {
     this.reset();
     floodIt1.onMouseClicked(new Posn(260, 280));
-    t.checkExpect(floodIt1.numClicks, 1);
+    t.checkExpect(floodIt1.game.movesUsed(), 1);
     t.checkExpect(floodIt1.flooding, true);
     t.checkExpect(floodIt1.clicked, Color.blue);
   }
@@ -647,6 +888,9 @@ class ExamplesFloodItWorld {
     end.placeImageXY(new TextImage("and 0 clicks", Color.white), 250, 450);
 
     t.checkExpect(floodItWin.worldEnds(), new WorldEnd(true, end));
+
+    WorldScene last = floodIt1.makeScene();
+    t.checkExpect(floodIt1.worldEnds().lastScene == last, true);
   }
 
   void testFindClickedCellColor(Tester t) {
@@ -660,26 +904,240 @@ class ExamplesFloodItWorld {
     t.checkExpect(floodIt2.findClickedCellColor(new Posn(268, 200)), Color.pink);
   }
 
+  void testCellAt(Tester t) {
+    this.reset();
+    t.checkExpect(floodIt1.cellAt(new Posn(215, 217)), 0);
+    t.checkExpect(floodIt1.cellAt(new Posn(260, 280)), floodIt1.game.board().index(2, 3));
+    t.checkExpect(floodIt1.cellAt(new Posn(209, 217)), FloodBoard.BORDER);
+    t.checkExpect(floodIt1.cellAt(new Posn(290, 217)), FloodBoard.BORDER);
+    // the same cells as wasClicked on both odd and even boards
+    for (int px = 190; px < 310; px = px + 3) {
+      for (int py = 190; py < 310; py = py + 7) {
+        Posn pos = new Posn(px, py);
+        int i = floodIt2.cellAt(pos);
+        t.checkExpect(i != FloodBoard.BORDER && new Utils().cellWasClicked(i % 5, i / 5, pos, 5),
+            i != FloodBoard.BORDER);
+        t.checkExpect(floodIt1.findClickedCellColor(pos) == Color.white,
+            floodIt1.cellAt(pos) == FloodBoard.BORDER);
+      }
+    }
+
+    FloodItWorld big = new FloodItWorld(100, 3, 8, 1000);
+    t.checkExpect(big.cellAt(new Posn(100, 100)), 0);
+    t.checkExpect(big.cellAt(new Posn(899, 899)), big.game.board().index(99, 99));
+    t.checkExpect(big.cellAt(new Posn(900, 100)), FloodBoard.BORDER);
+    t.checkExpect(big.cellAt(new Posn(115, 100)), 1);
+  }
+
   void testOnKeyEvent(Tester t) {
     this.reset();
+    FloodBoard before = floodIt1.game.board();
     floodIt1.onKeyEvent("e");
-    t.checkExpect(floodIt1.board == board1, true);
+    t.checkExpect(floodIt1.game.board() == before, true);
     floodIt1.flooding = true;
-    floodIt1.numClicks = 25;
+    floodIt1.game.moves = 25;
     floodIt1.onKeyEvent("r");
-    t.checkExpect(floodIt1.board == board1, false);
+    t.checkExpect(floodIt1.game.board() == before, false);
     t.checkExpect(floodIt1.flooding, false);
-    t.checkExpect(floodIt1.numClicks, 0);
+    t.checkExpect(floodIt1.game.movesUsed(), 0);
 
     t.checkExpect(floodItWin.allFlooded(), true);
     floodItWin.onKeyEvent("r");
     t.checkExpect(floodItWin.allFlooded(), false);
+    t.checkExpect(floodItWin.game.board().floodedCount < 4, true);
+  }
+
+  void testWastedClick(Tester t) {
+    this.checkWasted(t, new FloodItWorld(13, 5, 11));
+    // with no regions the cells of the board tell a wasted click too
+    FloodItWorld tiled = new FloodItWorld(13, 5, 11);
+    tiled.game.useTiles(ForkJoinPool.commonPool());
+    this.checkWasted(t, tiled);
+  }
+
+  // checks that a click on the given world's flood color, on a board of 13 cells
+  // a side, is a wasted move and a click on a useful color is not
+  void checkWasted(Tester t, FloodItWorld w) {
+    // the flood's own color never floods more
+    w.onMouseClicked(new Posn(125, 125));
+    t.checkExpect(w.wasted, true);
+    t.checkExpect(w.game.movesUsed(), 1);
+    w.makeScene();
+    while (w.flooding) {
+      w.onTick();
+    }
+    // a cell next to the flood that is not flooded has a useful color
+    FloodBoard b = w.game.board();
+    int i = 0;
+    while (b.isFlooded(i) || !b.nextToFlooded(i, b.colors[0])) {
+      i = i + 1;
+    }
+    w.onMouseClicked(new Posn(125 + 20 * (i % 13), 125 + 20 * (i / 13)));
+    t.checkExpect(w.wasted, false);
+    t.checkExpect(w.game.movesUsed(), 2);
+  }
+
+  // how many bytes a tick may allocate, on average, once the world is warmed up
+  // the timer's text is made again when its second changes, which a run of ticks
+  // may cross
+  static final int TICK_BYTES = 1;
+
+  // returns how many bytes this thread has allocated so far
+  long allocated() {
+    return ((ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getCurrentThreadAllocatedBytes();
+  }
+
+  // returns how many bytes the given world allocates on average over the given
+  // number of ticks, each drawn and checked for the end of the world, stopping
+  // early once a flood ends
+  double bytesPerTick(FloodItWorld w, int ticks, boolean flooding) {
+    long before = this.allocated();
+    int k = 0;
+    while (k < ticks && w.flooding == flooding) {
+      w.onTick();
+      w.worldEnds();
+      w.makeScene();
+      k = k + 1;
+    }
+    return (this.allocated() - before) / (double) Math.max(1, k);
+  }
+
+  void testIdleTickAllocations(Tester t) {
+    FloodItWorld w = new FloodItWorld(13, 5, 11);
+    w.hints = new FloodHints(1, 10);
+    this.bytesPerTick(w, 20000, false);
+    t.checkExpect(this.bytesPerTick(w, 10000, false) < TICK_BYTES, true);
+    // the scene and the answer of worldEnds are handed back as they were
+    WorldScene last = w.makeScene();
+    w.scheduler.invalidate();
+    t.checkExpect(w.makeScene() == last, true);
+    t.checkExpect(w.worldEnds() == w.worldEnds(), true);
+  }
+
+  void testFloodingTickAllocations(Tester t) {
+    FloodItWorld w = new FloodItWorld(new FloodGame(120, 4, new Random(3)));
+    w.cellSize = 4;
+    w.hints = new FloodHints(1, 10);
+    double most = 0;
+    for (int m = 0; m < 30; m++) {
+      WorldScene before = w.makeScene();
+      w.game.startMove(m % 4);
+      w.flooding = true;
+      // the first frame of a move shows the new count of moves
+      w.onTick();
+      t.checkExpect(w.makeScene() == before, false);
+      double bytes = this.bytesPerTick(w, Integer.MAX_VALUE, true);
+      if (m >= 10) {
+        most = Math.max(most, bytes);
+      }
+    }
+    // once the waves of the flood have had room to grow, the rest of a move's
+    // ticks allocate nothing
+    t.checkExpect(most < TICK_BYTES * 64, true);
+  }
+
+  void testUndoKeys(Tester t) {
+    this.reset();
+    byte[] before = floodIt2.game.board().colors.clone();
+    floodIt2.onMouseClicked(new Posn(250, 250));
+    floodIt2.onKeyEvent("u");
+    t.checkExpect(floodIt2.game.movesUsed(), 1);
+    while (floodIt2.flooding) {
+      floodIt2.onTick();
+    }
+    byte[] after = floodIt2.game.board().colors.clone();
+    floodIt2.onKeyEvent("u");
+    t.checkExpect(floodIt2.game.movesUsed(), 0);
+    t.checkExpect(floodIt2.game.board().colors, before);
+    floodIt2.onKeyEvent("y");
+    t.checkExpect(floodIt2.game.movesUsed(), 1);
+    t.checkExpect(floodIt2.game.board().colors, after);
+  }
+
+  void testHintColor(Tester t) {
+    // a board of more colors than the world makes new boards of
+    ArrayList<ArrayList<Cell>> cells = new ArrayList<ArrayList<Cell>>(Arrays.asList(
+        new ArrayList<Cell>(Arrays.asList(new Cell(0, 0, Color.red), new Cell(0, 1, Color.blue))),
+        new ArrayList<Cell>(Arrays.asList(new Cell(1, 0, Color.green),
+            new Cell(1, 1, Color.orange)))));
+    FloodItWorld w = new FloodItWorld(cells, 2, 2);
+    t.checkExpect(w.game.allColors.size(), 2);
+    w.hint = 1;
+    t.checkExpect(w.hintColor(), Color.blue);
+    w.hint = 3;
+    t.checkExpect(w.hintColor(), Color.orange);
+    // drawing the hint of a color new boards are not made of is fine too
+    w.scheduler.invalidate();
+    t.checkExpect(w.makeScene() != null, true);
+  }
+
+  void testParKey(Tester t) {
+    // small enough that the solver always finds the shortest solution in time
+    FloodItWorld w = new FloodItWorld(6, 3, 5);
+    int usual = w.game.maxClicks;
+    t.checkExpect(w.par, null);
+    w.onKeyEvent("p");
+    // the usual limit holds until the solver is done
+    t.checkExpect(w.game.maxClicks, usual);
+    w.par.join();
+    w.onTick();
+    t.checkExpect(w.game.maxClicks, new FloodSolver().solve(w.game, 1000).length);
+    // a new board is solved again, in the background
+    w.onKeyEvent("r");
+    t.checkExpect(w.game.maxClicks, usual);
+    w.par.join();
+    w.onTick();
+    t.checkExpect(w.game.maxClicks, new FloodSolver().solve(w.game, 1000).length);
+    w.onKeyEvent("p");
+    t.checkExpect(w.par, null);
+    t.checkExpect(w.game.maxClicks, usual);
+  }
+
+  void testParOfOldBoard(Tester t) {
+    FloodGame game = new FloodGame(8, 4, new Random(6));
+    int usual = game.maxClicks;
+    FloodPar par = new FloodPar(1000);
+    par.start(game);
+    game.reset();
+    par.join();
+    // the par of the board before is not the par of this one
+    t.checkExpect(par.apply(game), false);
+    t.checkExpect(game.maxClicks, usual);
+    par.start(game);
+    par.join();
+    t.checkExpect(par.apply(game), true);
+    t.checkExpect(par.apply(game), false);
+  }
+
+  void testSave(Tester t) throws IOException {
+    this.reset();
+    Path file = Files.createTempFile("floodit", ".save");
+    floodIt2.onMouseClicked(new Posn(250, 250));
+    while (floodIt2.flooding) {
+      floodIt2.onTick();
+    }
+    floodIt2.save(file);
+    FloodGame loaded = new FloodSave(file).replay();
+    t.checkExpect(loaded.board().colors, floodIt2.game.board().colors);
+    t.checkExpect(loaded.movesUsed(), 1);
+    t.checkExpect(floodIt2.status, "Saved the game to " + file.getFileName());
+    floodIt2.save(file.resolve("missing"));
+    // what the file system says is wrong follows the file's name
+    t.checkExpect(floodIt2.status.startsWith("Could not save the game: "
+        + file.resolve("missing")), true);
+    floodIt2.makeScene();
+    t.checkExpect(floodIt2.shownStatus, floodIt2.status);
+    // the next move clears it
+    floodIt2.onMouseClicked(new Posn(250, 250));
+    t.checkExpect(floodIt2.status, "");
+    Files.delete(file);
   }
 
   void testMakeBoard(Tester t) {
     this.reset();
     FloodItWorld floodIt3 = new FloodItWorld(9, 3);
-    t.checkExpect(floodIt3.allColors.size(), 3);
+    t.checkExpect(floodIt3.game.allColors.size(), 3);
 
     floodIt3.bigBang(500, 500, .1);
   }
@@ -0,0 +1,501 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import tester.Tester;
+import javalib.impworld.*;
+import java.awt.Color;
+import javalib.worldimages.*;
+
+// A board with no right or bottom edge, made a chunk of cells at a time as the
+// flood or the view gets to it
+// each chunk draws its colors from a random made from the seed and where the
+// chunk is, so a chunk comes out the same whenever and in whatever order it is
+// made, and one the flood has not got to can be forgotten and made again
+// a chunk every cell of which is flooded, with every cell around it flooded too,
+// can never change again, so all that is kept of it is that it is settled
+// the flood spreads from the flooded cells next to cells that are not, so a move
+// costs as much as that frontier and the cells it floods, and the board holds the
+// chunks near the frontier, however much of the board has been flooded
+class EndlessBoard {
+  // the width and height of a chunk in cells, so a row of a chunk is a word
+  static final int CHUNK = 64;
+  static final int CELLS = CHUNK * CHUNK;
+
+  long seed;
+  ArrayList<Color> palette;
+  // the chunks that are not settled, by where they are
+  HashMap<Long, Chunk> chunks;
+  // where the settled chunks are
+  HashSet<Long> settled;
+  // the chunk last looked at, since the flood mostly looks at cells near the last
+  Chunk last;
+
+  // the palette color of every flooded cell
+  int floodColor;
+  long floodedCount;
+  int moves;
+  // the flooded cells next to a cell that is not flooded
+  long[] frontier;
+  int frontierSize;
+  // the chunks every cell of which is flooded that are not settled yet
+  ArrayList<Chunk> full;
+  // the furthest column and row the flood has got to
+  int reachX;
+  int reachY;
+  // whether the board changed since it was last drawn
+  boolean changed;
+
+  // makes a board out of the given palette from the given seed, with the flood
+  // starting as every cell connected to the top left cell by its color
+  EndlessBoard(long seed, ArrayList<Color> palette) {
+    this.seed = seed;
+    this.palette = palette;
+    this.chunks = new HashMap<Long, Chunk>();
+    this.settled = new HashSet<Long>();
+    this.frontier = new long[16];
+    this.full = new ArrayList<Chunk>();
+    // read before the corner is flooded, since flooded cells show the flood color
+    this.floodColor = this.chunk(0, 0).colors[0];
+    this.flood(0, 0);
+    this.frontier[0] = 0;
+    this.frontierSize = 1;
+    this.spread(this.floodColor);
+  }
+
+  // returns where the chunk or cell at (x, y) is, as y times 2 ^ 32 plus x
+  static long key(int x, int y) {
+    return ((long) y << 32) | x;
+  }
+
+  // returns the chunk at (cx, cy) counted in chunks, made from the seed if it is
+  // not kept, or null if it is settled
+  Chunk chunk(int cx, int cy) {
+    if (this.last != null && this.last.cx == cx && this.last.cy == cy) {
+      this.last.used = this.moves;
+      return this.last;
+    }
+    long key = EndlessBoard.key(cx, cy);
+    Chunk c = this.chunks.get(key);
+    if (c == null) {
+      if (this.settled.contains(key)) {
+        return null;
+      }
+      c = new Chunk(cx, cy, this.random(cx, cy), this.palette.size());
+      this.chunks.put(key, c);
+    }
+    c.used = this.moves;
+    this.last = c;
+    return c;
+  }
+
+  // returns the random the colors of the chunk at (cx, cy) counted in chunks are
+  // drawn from, the same however many times it is made
+  SplittableRandom random(int cx, int cy) {
+    return new SplittableRandom(this.seed ^ (EndlessBoard.key(cx, cy) * 0x9E3779B97F4A7C15L));
+  }
+
+  // returns the chunk at (cx, cy) counted in chunks if it is kept and not
+  // settled, or null, without making it
+  Chunk kept(int cx, int cy) {
+    return this.chunks.get(EndlessBoard.key(cx, cy));
+  }
+
+  // checks if the cell at (x, y) is flooded
+  boolean isFlooded(int x, int y) {
+    Chunk c = this.chunk(x / CHUNK, y / CHUNK);
+    return c == null || c.isFlooded(x % CHUNK, y % CHUNK);
+  }
+
+  // returns the index in the palette of the color of the cell at (x, y)
+  int colorIndex(int x, int y) {
+    Chunk c = this.chunk(x / CHUNK, y / CHUNK);
+    if (c == null || c.isFlooded(x % CHUNK, y % CHUNK)) {
+      return this.floodColor;
+    }
+    return c.colors[(y % CHUNK) * CHUNK + x % CHUNK];
+  }
+
+  // returns the color of the cell at (x, y)
+  Color colorAt(int x, int y) {
+    return this.palette.get(this.colorIndex(x, y));
+  }
+
+  // returns the color of the cell at (x, y) if its chunk is kept or settled, or
+  // null if it would have to be made
+  Color peek(int x, int y) {
+    long key = EndlessBoard.key(x / CHUNK, y / CHUNK);
+    Chunk c = this.chunks.get(key);
+    if (c == null) {
+      return this.settled.contains(key) ? this.palette.get(this.floodColor) : null;
+    }
+    if (c.isFlooded(x % CHUNK, y % CHUNK)) {
+      return this.palette.get(this.floodColor);
+    }
+    return this.palette.get(c.colors[(y % CHUNK) * CHUNK + x % CHUNK]);
+  }
+
+  // EFFECT: floods the cell at (x, y), which is not flooded
+  void flood(int x, int y) {
+    Chunk c = this.chunk(x / CHUNK, y / CHUNK);
+    c.rows[y % CHUNK] |= 1L << (x % CHUNK);
+    c.floodedCount = c.floodedCount + 1;
+    if (c.floodedCount == CELLS) {
+      this.full.add(c);
+    }
+    this.floodedCount = this.floodedCount + 1;
+    this.reachX = Math.max(this.reachX, x);
+    this.reachY = Math.max(this.reachY, y);
+  }
+
+  // EFFECT: floods the board with the palette color c, settles the chunks that
+  // can no longer change, and forgets the chunks that were neither flooded nor
+  // looked at since the last move
+  // returns how many cells it flooded
+  long move(int c) {
+    this.moves = this.moves + 1;
+    this.floodColor = c;
+    long before = this.floodedCount;
+    this.spread(c);
+    this.settle();
+    this.trim();
+    this.changed = true;
+    return this.floodedCount - before;
+  }
+
+  // EFFECT: floods every cell of the palette color c connected to the flood by
+  // it, and keeps the cells of the frontier that are still next to one that is
+  // not flooded
+  void spread(int c) {
+    long[] queue = this.frontier;
+    int tail = this.frontierSize;
+    for (int head = 0; head < tail; head++) {
+      int x = (int) queue[head];
+      int y = (int) (queue[head] >>> 32);
+      for (int k = 0; k < 4; k++) {
+        int nx = x + (k == 0 ? -1 : k == 2 ? 1 : 0);
+        int ny = y + (k == 1 ? -1 : k == 3 ? 1 : 0);
+        if (nx >= 0 && ny >= 0 && !this.isFlooded(nx, ny) && this.colorIndex(nx, ny) == c) {
+          this.flood(nx, ny);
+          if (tail == queue.length) {
+            queue = Arrays.copyOf(queue, tail * 2);
+          }
+          queue[tail] = EndlessBoard.key(nx, ny);
+          tail = tail + 1;
+        }
+      }
+    }
+    int kept = 0;
+    for (int k = 0; k < tail; k++) {
+      int x = (int) queue[k];
+      int y = (int) (queue[k] >>> 32);
+      if ((x > 0 && !this.isFlooded(x - 1, y)) || (y > 0 && !this.isFlooded(x, y - 1))
+          || !this.isFlooded(x + 1, y) || !this.isFlooded(x, y + 1)) {
+        queue[kept] = queue[k];
+        kept = kept + 1;
+        this.chunk(x / CHUNK, y / CHUNK).frontierMove = this.moves;
+      }
+    }
+    this.frontier = queue;
+    this.frontierSize = kept;
+  }
+
+  // EFFECT: settles the chunks every cell of which is flooded that hold no cell
+  // of the frontier, since every cell around them is flooded too
+  void settle() {
+    Iterator<Chunk> it = this.full.iterator();
+    while (it.hasNext()) {
+      Chunk c = it.next();
+      if (c.frontierMove != this.moves) {
+        long key = EndlessBoard.key(c.cx, c.cy);
+        this.chunks.remove(key);
+        this.settled.add(key);
+        it.remove();
+        if (this.last == c) {
+          this.last = null;
+        }
+      }
+    }
+  }
+
+  // EFFECT: forgets the chunks with no flooded cell that nothing looked at since
+  // the last move, since they can be made again from the seed
+  void trim() {
+    Iterator<Chunk> it = this.chunks.values().iterator();
+    while (it.hasNext()) {
+      Chunk c = it.next();
+      if (c.floodedCount == 0 && c.used < this.moves) {
+        it.remove();
+        if (this.last == c) {
+          this.last = null;
+        }
+      }
+    }
+  }
+}
+
+// A square of CHUNK by CHUNK cells of an EndlessBoard, or what is left of one
+class Chunk {
+  int cx;
+  int cy;
+  // the index in the palette of the color of each cell, by row
+  byte[] colors;
+  // one word per row, with a bit set for each flooded cell
+  long[] rows;
+  int floodedCount;
+  // the last move it was looked at in
+  int used;
+  // the last move it held a cell of the frontier after
+  int frontierMove = -1;
+
+  // makes the chunk at (cx, cy) counted in chunks, drawing the colors of its
+  // cells row by row from the given random out of a palette of the given size
+  Chunk(int cx, int cy, SplittableRandom rand, int colors) {
+    this.cx = cx;
+    this.cy = cy;
+    this.colors = new byte[EndlessBoard.CELLS];
+    this.rows = new long[EndlessBoard.CHUNK];
+    for (int i = 0; i < this.colors.length; i++) {
+      this.colors[i] = (byte) rand.nextInt(colors);
+    }
+  }
+
+  // checks if the cell at (x, y) within this chunk is flooded
+  boolean isFlooded(int x, int y) {
+    return (this.rows[y] & (1L << x)) != 0;
+  }
+}
+
+// Plays an endless board, where a click on a cell floods the board with its
+// color and the score is how many cells are flooded
+// the board is seen through a view that can be panned and zoomed, and cells that
+// have not been made are made as the view gets to them, unless they are smaller
+// than a pixel
+class EndlessWorld extends World {
+  EndlessBoard board;
+  int sceneSize = 500;
+  Viewport view;
+  // where the mouse was pressed to drag the view, or null
+  Posn dragFrom;
+
+  // makes a world of a board of the given number of colors, with each cell 20
+  // pixels wide and the top left of the board in the top left of the scene
+  EndlessWorld(int numOfColors, long seed) {
+    this.board = new EndlessBoard(seed, new Utils().randColorSet(new Random(seed),
+        new Utils().gameColors(), numOfColors));
+    this.view = new Viewport(this.sceneSize, this.sceneSize, 0, 20);
+    this.view.originX = 0;
+    this.view.originY = 0;
+  }
+
+  // draws the board and the score
+  public WorldScene makeScene() {
+    int center = this.sceneSize / 2;
+    WorldScene bg = new WorldScene(this.sceneSize, this.sceneSize);
+    bg.placeImageXY(this.view.draw(this.board), center, center);
+    bg.placeImageXY(new TextImage(this.board.floodedCount + " cells in "
+        + this.board.moves + " moves", Color.black), center, this.sceneSize - 50);
+    return bg;
+  }
+
+  // handles mouse clicks, zooming in on the right button and out on the middle
+  // one
+  // EFFECT: updates world state
+  public void onMouseClicked(Posn pos, String button) {
+    if (button.equals("RightButton")) {
+      this.view.zoom(2, pos.x, pos.y);
+    }
+    else if (button.equals("MiddleButton")) {
+      this.view.zoom(0.5, pos.x, pos.y);
+    }
+    else {
+      this.onMouseClicked(pos);
+    }
+  }
+
+  // floods the board with the color of the clicked cell, if a cell was clicked
+  // EFFECT: updates world state
+  public void onMouseClicked(Posn pos) {
+    int x = (int) Math.floor((pos.x - this.view.originX) / this.view.cellPx);
+    int y = (int) Math.floor((pos.y - this.view.originY) / this.view.cellPx);
+    if (x >= 0 && y >= 0 && this.view.cellPx >= 1) {
+      this.board.move(this.board.colorIndex(x, y));
+    }
+  }
+
+  // EFFECT: remembers where a drag of the view starts
+  public void onMousePressed(Posn pos) {
+    this.dragFrom = pos;
+  }
+
+  // EFFECT: moves the view as far as the mouse was dragged
+  public void onMouseReleased(Posn pos) {
+    if (this.dragFrom != null && (pos.x != this.dragFrom.x || pos.y != this.dragFrom.y)) {
+      this.view.pan(pos.x - this.dragFrom.x, pos.y - this.dragFrom.y);
+    }
+    this.dragFrom = null;
+  }
+
+  // handles keystrokes, where the arrows move the view and + and - zoom it
+  // EFFECT: updates world state
+  public void onKeyEvent(String k) {
+    if (k.equals("left") || k.equals("right") || k.equals("up") || k.equals("down")) {
+      int step = this.sceneSize / 4;
+      this.view.pan(k.equals("left") ? step : k.equals("right") ? -step : 0,
+          k.equals("up") ? step : k.equals("down") ? -step : 0);
+    }
+    else if (k.equals("+") || k.equals("=") || k.equals("-")) {
+      int center = this.sceneSize / 2;
+      this.view.zoom(k.equals("-") ? 0.5 : 2, center, center);
+    }
+  }
+}
+
+class ExamplesEndlessBoard {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  // returns a board of the given size with the colors of the top left of the
+  // given endless board, flooded where it is
+  FloodBoard corner(EndlessBoard e, int size) {
+    FloodBoard b = new FloodBoard(size, this.colors);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        b.colors[b.index(x, y)] = (byte) e.colorIndex(x, y);
+        if (e.isFlooded(x, y)) {
+          b.flood(b.index(x, y));
+        }
+      }
+    }
+    return b;
+  }
+
+  void testSameChunks(Tester t) {
+    EndlessBoard one = new EndlessBoard(7, this.colors);
+    EndlessBoard other = new EndlessBoard(7, this.colors);
+    // made in another order, the chunks come out the same
+    int far = other.colorIndex(300, 200);
+    t.checkExpect(one.colorIndex(300, 200), far);
+    t.checkExpect(one.chunk(3, 4).colors, other.chunk(3, 4).colors);
+    // while another seed makes other colors
+    t.checkExpect(Arrays.equals(new EndlessBoard(8, this.colors).chunk(3, 4).colors,
+        one.chunk(3, 4).colors), false);
+    // and once forgotten, a chunk is made again just as it was
+    byte[] kept = one.chunk(9, 9).colors.clone();
+    one.move(1);
+    one.move(2);
+    t.checkExpect(one.kept(9, 9), null);
+    t.checkExpect(one.chunk(9, 9).colors, kept);
+  }
+
+  void testStart(Tester t) {
+    // seed 0 starts with the corner and the cell right of it the same color, so
+    // the start flood is more than the corner
+    for (long seed : new long[] { 0, 3 }) {
+      EndlessBoard e = new EndlessBoard(seed, this.colors);
+      // the colors the corner chunk was made with, before any cell was flooded
+      byte[] made = new Chunk(0, 0, e.random(0, 0), this.colors.size()).colors;
+      FloodBoard b = new FloodBoard(EndlessBoard.CHUNK, this.colors);
+      System.arraycopy(made, 0, b.colors, 0, made.length);
+      b.floodConnected();
+      t.checkExpect(this.corner(e, EndlessBoard.CHUNK).flooded, b.flooded);
+      t.checkExpect(e.floodedCount, (long) b.floodedCount);
+      t.checkExpect(e.floodColor, (int) made[0]);
+      t.checkExpect(e.colorIndex(0, 0), (int) made[0]);
+    }
+    t.checkExpect(new EndlessBoard(0, this.colors).floodedCount > 1, true);
+  }
+
+  void testMatchesBoard(Tester t) {
+    // while the flood stays inside a board the size of the corner, a move on the
+    // endless board floods what it would on the board
+    EndlessBoard e = new EndlessBoard(11, this.colors);
+    int size = 200;
+    FloodBoard b = this.corner(e, size);
+    boolean same = true;
+    for (int m = 0; m < 60 && e.reachX < size - 1 && e.reachY < size - 1; m++) {
+      int c = m % 3;
+      long flooded = e.move(c);
+      int before = b.floodedCount;
+      b.flood(0);
+      b.updateColor(0, c);
+      b.startWave();
+      while (b.floodStep(c)) {
+        // each step floods the next wave of the move
+      }
+      same = same && flooded == b.floodedCount - before && e.floodedCount == b.floodedCount
+          && Arrays.equals(this.corner(e, size).flooded, b.flooded);
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(e.moves > 10, true);
+  }
+
+  void testSettled(Tester t) {
+    EndlessBoard e = new EndlessBoard(5, this.colors);
+    int most = 0;
+    for (int m = 0; m < 300; m++) {
+      e.move(m % 3);
+      most = Math.max(most, e.chunks.size());
+    }
+    // the flood covers far more chunks than are kept
+    t.checkExpect(e.settled.size() > 20, true);
+    t.checkExpect(e.floodedCount > (long) 40 * EndlessBoard.CELLS, true);
+    t.checkExpect(e.chunks.size() < e.settled.size(), true);
+    // a settled chunk is all flood, and so are the cells around it
+    long key = e.settled.iterator().next();
+    int x = (int) key * EndlessBoard.CHUNK;
+    int y = (int) (key >>> 32) * EndlessBoard.CHUNK;
+    t.checkExpect(e.chunk((int) key, (int) (key >>> 32)), null);
+    t.checkExpect(e.isFlooded(x + 5, y + 9), true);
+    t.checkExpect(e.isFlooded(x + EndlessBoard.CHUNK, y), true);
+    t.checkExpect(e.colorAt(x, y), this.colors.get(e.floodColor));
+    // every cell of the frontier is flooded and next to a cell that is not
+    boolean frontier = true;
+    for (int k = 0; k < e.frontierSize; k++) {
+      int fx = (int) e.frontier[k];
+      int fy = (int) (e.frontier[k] >>> 32);
+      frontier = frontier && e.isFlooded(fx, fy) && (!e.isFlooded(fx + 1, fy)
+          || !e.isFlooded(fx, fy + 1) || (fx > 0 && !e.isFlooded(fx - 1, fy))
+          || (fy > 0 && !e.isFlooded(fx, fy - 1)));
+    }
+    t.checkExpect(frontier, true);
+  }
+
+  void testPeek(Tester t) {
+    EndlessBoard e = new EndlessBoard(5, this.colors);
+    t.checkExpect(e.peek(1000, 1000), null);
+    t.checkExpect(e.peek(0, 0), this.colors.get(e.floodColor));
+    Color far = e.colorAt(1000, 1000);
+    t.checkExpect(e.peek(1000, 1000), far);
+  }
+
+  void testWorld(Tester t) {
+    EndlessWorld w = new EndlessWorld(3, 4);
+    w.makeScene();
+    t.checkExpect(w.board.changed, false);
+    // the cell at (1, 0) is 20 pixels wide, starting 20 pixels from the left
+    int c = w.board.colorIndex(1, 0);
+    long before = w.board.floodedCount;
+    w.onMouseClicked(new Posn(30, 10));
+    t.checkExpect(w.board.moves, 1);
+    t.checkExpect(w.board.floodColor, c);
+    t.checkExpect(w.board.floodedCount >= before, true);
+    t.checkExpect(w.board.isFlooded(1, 0), true);
+    w.makeScene();
+    // zoomed right out, no chunk is made just to be drawn
+    for (int k = 0; k < 10; k++) {
+      w.onKeyEvent("-");
+    }
+    int kept = w.board.chunks.size();
+    w.makeScene();
+    t.checkExpect(w.board.chunks.size(), kept);
+    w.onKeyEvent("right");
+    w.onMouseClicked(new Posn(-5, 10));
+    t.checkExpect(w.board.moves, 1);
+  }
+}
@@ -0,0 +1,281 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tester.Tester;
+
+// Plays many seeded games with no display, spread over every core, and reports
+// how fast they went, how many were won and how many moves they took
+// usage: java FloodBatch [games] [firstSeed] [size] [colors] [strategy] [threads]
+// [engine]
+// where strategy is random, greedy or lookahead<depth>, and engine is regions,
+// or bits to play on the bits of the board, which lookahead cannot
+// game number k is played on the same board as new FloodItWorld(size, colors,
+// firstSeed + k), so the results only depend on the seeds and never on how the
+// games are shared out between threads
+public class FloodBatch {
+  // how many games each thread plays before taking more
+  int chunkSize = 256;
+  // whether games are played on the bits of their boards instead of the regions
+  boolean bits;
+
+  public static void main(String[] args) {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int firstSeed = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+    int size = args.length > 2 ? Integer.parseInt(args[2]) : 13;
+    int colors = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+    AMoveStrategy strategy = new FloodBatch().strategy(args.length > 4 ? args[4] : "greedy");
+    int threads = args.length > 5 ? Integer.parseInt(args[5])
+        : Runtime.getRuntime().availableProcessors();
+    FloodBatch batch = new FloodBatch();
+    batch.bits = args.length > 6 && batch.engine(args[6]);
+
+    long start = System.nanoTime();
+    BatchStats stats = batch.run(games, firstSeed, size, colors, strategy, threads);
+    long nanos = System.nanoTime() - start;
+    System.out.println(size + "x" + size + ", " + colors + " colors, " + strategy.name()
+        + ", " + threads + " threads" + (batch.bits ? ", bits" : ""));
+    System.out.print(stats.report(nanos));
+  }
+
+  // returns the strategy with the given name
+  AMoveStrategy strategy(String name) {
+    if (name.equals("random")) {
+      return new RandomStrategy();
+    }
+    if (name.equals("greedy")) {
+      return new GreedyStrategy();
+    }
+    if (name.startsWith("lookahead")) {
+      String depth = name.substring("lookahead".length());
+      return new LookaheadStrategy(depth.isEmpty() ? 2 : Integer.parseInt(depth));
+    }
+    throw new IllegalArgumentException("Unknown strategy: " + name);
+  }
+
+  // returns whether the engine with the given name plays on bits
+  boolean engine(String name) {
+    if (name.equals("regions")) {
+      return false;
+    }
+    if (name.equals("bits")) {
+      return true;
+    }
+    throw new IllegalArgumentException("Unknown engine: " + name);
+  }
+
+  // returns the results of playing the given number of games with the given
+  // strategy on the given number of threads, starting from the given seed
+  BatchStats run(int games, int firstSeed, int size, int colors, AMoveStrategy strategy,
+      int threads) {
+    if (this.bits && strategy instanceof LookaheadStrategy) {
+      throw new IllegalArgumentException(strategy.name() + " cannot play on bits");
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      ArrayList<Future<BatchStats>> chunks = new ArrayList<Future<BatchStats>>();
+      for (int from = 0; from < games; from += this.chunkSize) {
+        int first = firstSeed + from;
+        int count = Math.min(this.chunkSize, games - from);
+        chunks.add(pool.submit(() -> this.playAll(first, count, size, colors, strategy)));
+      }
+      BatchStats ans = new BatchStats();
+      for (Future<BatchStats> chunk : chunks) {
+        ans.merge(chunk.get());
+      }
+      return ans;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Batch was interrupted", e);
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("A game failed", e.getCause());
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // returns the results of playing the given number of games in a row, starting
+  // from the given seed
+  BatchStats playAll(int firstSeed, int count, int size, int colors,
+      AMoveStrategy strategy) {
+    BatchStats ans = new BatchStats();
+    for (int k = 0; k < count; k++) {
+      ans.add(this.play(firstSeed + k, size, colors, strategy));
+    }
+    return ans;
+  }
+
+  // returns the game with the given seed played until every cell is flooded
+  // the strategy gets its own random made from the seed, so its random choices
+  // are the same whichever thread plays the game
+  FloodGame play(int seed, int size, int colors, AMoveStrategy strategy) {
+    FloodGame game = new FloodGame(size, colors, new Random(seed));
+    if (this.bits) {
+      game.useBits();
+    }
+    Random rand = new Random(-1L - seed);
+    while (!game.allFlooded()) {
+      game.applyMove(strategy.chooseMove(game, rand));
+    }
+    return game;
+  }
+}
+
+// The totals of a batch of finished games
+// adding up the same games in any order gives the same totals
+class BatchStats {
+  long games;
+  long wins;
+  long totalMoves;
+  // how many games took each number of moves
+  long[] movesHistogram;
+
+  BatchStats() {
+    this.movesHistogram = new long[64];
+  }
+
+  // EFFECT: counts the given finished game
+  void add(FloodGame game) {
+    this.games = this.games + 1;
+    if (game.isWon()) {
+      this.wins = this.wins + 1;
+    }
+    int moves = game.movesUsed();
+    this.totalMoves = this.totalMoves + moves;
+    this.grow(moves + 1);
+    this.movesHistogram[moves] = this.movesHistogram[moves] + 1;
+  }
+
+  // EFFECT: counts every game counted by the given stats
+  void merge(BatchStats other) {
+    this.games = this.games + other.games;
+    this.wins = this.wins + other.wins;
+    this.totalMoves = this.totalMoves + other.totalMoves;
+    this.grow(other.movesHistogram.length);
+    for (int m = 0; m < other.movesHistogram.length; m++) {
+      this.movesHistogram[m] = this.movesHistogram[m] + other.movesHistogram[m];
+    }
+  }
+
+  // EFFECT: makes room in the histogram for games of up to length - 1 moves
+  void grow(int length) {
+    if (length > this.movesHistogram.length) {
+      this.movesHistogram = Arrays.copyOf(this.movesHistogram,
+          Math.max(length, this.movesHistogram.length * 2));
+    }
+  }
+
+  // returns the fewest moves taken by at least the given fraction of the games
+  int percentile(double p) {
+    long target = (long) Math.ceil(p * this.games);
+    long seen = 0;
+    for (int m = 0; m < this.movesHistogram.length; m++) {
+      seen = seen + this.movesHistogram[m];
+      if (seen >= Math.max(target, 1)) {
+        return m;
+      }
+    }
+    return 0;
+  }
+
+  // returns the fraction of games won
+  double winRate() {
+    return this.games == 0 ? 0 : (double) this.wins / this.games;
+  }
+
+  // returns the average number of moves per game
+  double meanMoves() {
+    return this.games == 0 ? 0 : (double) this.totalMoves / this.games;
+  }
+
+  // returns these totals as lines of text, given how long the games took
+  String report(long nanos) {
+    StringBuilder ans = new StringBuilder();
+    ans.append(String.format("%d games in %.3f s (%.0f games/s)%n", this.games,
+        nanos / 1e9, this.games / Math.max(nanos / 1e9, 1e-9)));
+    ans.append(String.format("won %d (%.2f%%)%n", this.wins, 100 * this.winRate()));
+    ans.append(String.format("moves: mean %.2f, p50 %d, p90 %d, p99 %d%n",
+        this.meanMoves(), this.percentile(0.5), this.percentile(0.9),
+        this.percentile(0.99)));
+    for (int m = 0; m < this.movesHistogram.length; m++) {
+      if (this.movesHistogram[m] > 0) {
+        ans.append(String.format("%4d moves: %d%n", m, this.movesHistogram[m]));
+      }
+    }
+    return ans.toString();
+  }
+}
+
+class ExamplesFloodBatch {
+
+  void testPlay(Tester t) {
+    FloodBatch b = new FloodBatch();
+    FloodGame g = b.play(7, 8, 4, new GreedyStrategy());
+    t.checkExpect(g.allFlooded(), true);
+    t.checkExpect(g.board().colors, b.play(7, 8, 4, new GreedyStrategy()).board().colors);
+    t.checkExpect(g.movesUsed(), b.play(7, 8, 4, new GreedyStrategy()).movesUsed());
+  }
+
+  void testStrategy(Tester t) {
+    FloodBatch b = new FloodBatch();
+    t.checkExpect(b.strategy("random").name(), "random");
+    t.checkExpect(b.strategy("greedy").name(), "greedy");
+    t.checkExpect(b.strategy("lookahead").name(), "lookahead2");
+    t.checkExpect(b.strategy("lookahead3").name(), "lookahead3");
+    t.checkException(new IllegalArgumentException("Unknown strategy: best"), b,
+        "strategy", "best");
+  }
+
+  void testSameForAnyThreads(Tester t) {
+    FloodBatch b = new FloodBatch();
+    b.chunkSize = 7;
+    AMoveStrategy[] strategies = new AMoveStrategy[] { new RandomStrategy(),
+        new GreedyStrategy(), new LookaheadStrategy(2) };
+    for (AMoveStrategy s : strategies) {
+      BatchStats one = b.run(50, 100, 8, 4, s, 1);
+      BatchStats four = b.run(50, 100, 8, 4, s, 4);
+      t.checkExpect(one.games, 50L);
+      t.checkExpect(four, one);
+    }
+  }
+
+  void testBits(Tester t) {
+    FloodBatch regions = new FloodBatch();
+    FloodBatch bits = new FloodBatch();
+    bits.bits = true;
+    AMoveStrategy[] strategies = new AMoveStrategy[] { new RandomStrategy(),
+        new GreedyStrategy() };
+    for (AMoveStrategy s : strategies) {
+      t.checkExpect(bits.run(40, 5, 20, 5, s, 2), regions.run(40, 5, 20, 5, s, 2));
+    }
+    t.checkExpect(bits.engine("bits"), true);
+    t.checkExpect(bits.engine("regions"), false);
+    t.checkException(new IllegalArgumentException("Unknown engine: cells"), bits, "engine",
+        "cells");
+  }
+
+  void testStats(Tester t) {
+    BatchStats s = new BatchStats();
+    FloodBatch b = new FloodBatch();
+    FloodGame g = b.play(3, 6, 3, new GreedyStrategy());
+    s.add(g);
+    s.add(g);
+    BatchStats m = new BatchStats();
+    m.merge(s);
+    t.checkExpect(m, s);
+    t.checkExpect(m.games, 2L);
+    t.checkExpect(m.percentile(0.5), g.movesUsed());
+    t.checkExpect(m.meanMoves(), (double) g.movesUsed());
+    t.checkExpect(m.winRate(), g.isWon() ? 1.0 : 0.0);
+    t.checkExpect(new BatchStats().winRate(), 0.0);
+    s.add(new FloodBatch().play(3, 30, 8, new RandomStrategy()));
+    t.checkExpect(s.movesHistogram.length >= 64, true);
+  }
+}
@@ -0,0 +1,626 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import tester.Tester;
+import java.awt.Color;
+
+// Represents the cells of a game as packed arrays instead of linked Cell objects
+// the cell at (x, y) lives at index y * size + x, and its adjacent cells are
+// worked out from that index
+class FloodBoard {
+  // the index of every position past the edge of the board
+  static final int BORDER = -1;
+
+  int size;
+  // the colors the cells of this board can have
+  ArrayList<Color> palette;
+  // the index in the palette of the color of each cell
+  byte[] colors;
+  // one bit per cell, set if the cell is flooded
+  long[] flooded;
+  // how many cells are flooded
+  int floodedCount;
+
+  // the cells the flood reached on its last step
+  int[] wave;
+  int waveSize;
+  // the cells the flood reaches on its current step
+  int[] next;
+  int nextSize;
+  // one bit per cell, set if the current flood has reached the cell
+  long[] reached;
+  // how many cells the last step looked at
+  int examined;
+  // the cells the steps of the current move flooded that were not flooded, in the
+  // order they were flooded
+  int[] added;
+  int addedSize;
+
+  // the cells whose color changed since the board was last drawn, unless more
+  // changed than are worth listing, in which case every cell needs drawing
+  int[] dirty;
+  int dirtySize;
+  boolean allDirty;
+  // the zoomed out picture of this board kept up to date as cells flood, or null
+  // if the board has never been drawn zoomed out
+  BoardPyramid pyramid;
+
+  // makes an unflooded board where every cell has the first color of the palette
+  FloodBoard(int size, ArrayList<Color> palette) {
+    this.size = size;
+    this.palette = palette;
+    this.colors = new byte[size * size];
+    this.flooded = new long[(size * size + 63) / 64];
+    this.reached = new long[this.flooded.length];
+    this.wave = new int[16];
+    this.next = new int[16];
+    this.added = new int[16];
+    this.dirty = new int[16];
+    this.allDirty = true;
+    this.startWave();
+  }
+
+  // makes a board with the same colors and flooded cells as the given board
+  FloodBoard(FloodBoard other) {
+    this(other.size, other.palette);
+    System.arraycopy(other.colors, 0, this.colors, 0, this.colors.length);
+    System.arraycopy(other.flooded, 0, this.flooded, 0, this.flooded.length);
+    this.floodedCount = other.floodedCount;
+  }
+
+  // makes a board with a copy of the given colors and flooded cells
+  FloodBoard(int size, ArrayList<Color> palette, byte[] colors, long[] flooded) {
+    this(size, palette);
+    System.arraycopy(colors, 0, this.colors, 0, this.colors.length);
+    System.arraycopy(flooded, 0, this.flooded, 0, this.flooded.length);
+    for (long word : flooded) {
+      this.floodedCount = this.floodedCount + Long.bitCount(word);
+    }
+  }
+
+  // makes a random board out of the given palette, drawing colors column by
+  // column from the given random so that seeded games get the same board they
+  // always have
+  FloodBoard(int size, Random rand, ArrayList<Color> palette) {
+    this(size, palette);
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        this.colors[this.index(x, y)] = (byte) rand.nextInt(palette.size());
+      }
+    }
+    this.floodStart();
+  }
+
+  // makes a random board out of the given palette, with its rows filled at once
+  // by the given pool
+  // each row draws its colors from its own stream split off a random made from
+  // the seed, so the same seed gives the same board however many threads fill it
+  // the flood starts as every cell connected to the top left cell by its color
+  FloodBoard(int size, long seed, ArrayList<Color> palette, ForkJoinPool pool) {
+    this(size, palette);
+    SplittableRandom root = new SplittableRandom(seed);
+    SplittableRandom[] rows = new SplittableRandom[size];
+    for (int y = 0; y < size; y++) {
+      rows[y] = root.split();
+    }
+    pool.invoke(new FillRows(this, rows, 0, size));
+    this.floodConnected();
+  }
+
+  // makes a board with the same colors and flooded cells as the given columns of
+  // cells
+  FloodBoard(ArrayList<ArrayList<Cell>> cells) {
+    this(cells.size(), new ArrayList<Color>());
+    for (ArrayList<Cell> column : cells) {
+      for (Cell cell : column) {
+        int i = this.index(cell.x, cell.y);
+        if (!this.palette.contains(cell.color)) {
+          this.palette.add(cell.color);
+        }
+        this.colors[i] = (byte) this.palette.indexOf(cell.color);
+        if (cell.flooded) {
+          this.flood(i);
+        }
+      }
+    }
+  }
+
+  // EFFECT: floods the top left cell and every cell of its color that a
+  // flooded cell was next to when the cell was first looked at
+  void floodStart() {
+    int start = this.colors[0];
+    this.flood(0);
+    for (int x = 0; x < this.size; x++) {
+      for (int y = 0; y < this.size; y++) {
+        int i = this.index(x, y);
+        if (this.colors[i] == start && this.nextToFlooded(i, start)) {
+          this.flood(i);
+        }
+      }
+    }
+  }
+
+  // EFFECT: floods every cell connected to the top left cell by its color
+  void floodConnected() {
+    int start = this.colors[0];
+    this.flood(0);
+    this.startWave();
+    while (this.floodStep(start)) {
+      // each step floods the next wave of cells of the starting color
+    }
+    this.startWave();
+  }
+
+  // returns the index of the cell at the given position
+  int index(int x, int y) {
+    return y * this.size + x;
+  }
+
+  // returns the index of the cell left of the given cell
+  int left(int i) {
+    if (i % this.size == 0) {
+      return BORDER;
+    }
+    return i - 1;
+  }
+
+  // returns the index of the cell right of the given cell
+  int right(int i) {
+    if (i % this.size == this.size - 1) {
+      return BORDER;
+    }
+    return i + 1;
+  }
+
+  // returns the index of the cell above the given cell
+  int top(int i) {
+    if (i < this.size) {
+      return BORDER;
+    }
+    return i - this.size;
+  }
+
+  // returns the index of the cell below the given cell
+  int bottom(int i) {
+    if (i >= this.colors.length - this.size) {
+      return BORDER;
+    }
+    return i + this.size;
+  }
+
+  // returns the color of the given cell
+  Color colorAt(int i) {
+    return this.palette.get(this.colors[i]);
+  }
+
+  // checks if the given cell is flooded
+  boolean isFlooded(int i) {
+    return (this.flooded[i >> 6] & (1L << i)) != 0;
+  }
+
+  // EFFECT: floods the given cell
+  void flood(int i) {
+    if (!this.isFlooded(i)) {
+      this.flooded[i >> 6] |= 1L << i;
+      this.floodedCount = this.floodedCount + 1;
+      if (this.pyramid != null) {
+        this.pyramid.flood(i);
+      }
+    }
+  }
+
+  // EFFECT: makes the given cell not flooded, for taking a move back
+  void unflood(int i) {
+    if (this.isFlooded(i)) {
+      this.flooded[i >> 6] &= ~(1L << i);
+      this.floodedCount = this.floodedCount - 1;
+      if (this.pyramid != null) {
+        this.pyramid.unflood(i);
+      }
+    }
+  }
+
+  // EFFECT: changes the color of the given cell to the palette color c
+  void updateColor(int i, int c) {
+    if (this.colors[i] != c) {
+      this.colors[i] = (byte) c;
+      this.markDirty(i);
+    }
+  }
+
+  // EFFECT: remembers that the given cell needs drawing again
+  // once a quarter of the board has changed, the whole board is drawn instead
+  void markDirty(int i) {
+    if (this.allDirty) {
+      return;
+    }
+    if (this.dirtySize >= this.colors.length / 4) {
+      this.allDirty = true;
+      return;
+    }
+    if (this.dirtySize == this.dirty.length) {
+      this.dirty = Arrays.copyOf(this.dirty, this.dirtySize * 2);
+    }
+    this.dirty[this.dirtySize] = i;
+    this.dirtySize = this.dirtySize + 1;
+  }
+
+  // EFFECT: forgets every cell that needed drawing
+  void clearDirty() {
+    this.dirtySize = 0;
+    this.allDirty = false;
+  }
+
+  // checks if the given cell is flooded and has the palette color c, where the
+  // border is never flooded
+  boolean sameColorAndFloodedHelp(int i, int c) {
+    return i != BORDER && this.isFlooded(i) && this.colors[i] == c;
+  }
+
+  // checks if the given cell is next to a flooded cell with the palette color c
+  boolean nextToFlooded(int i, int c) {
+    return this.sameColorAndFloodedHelp(this.left(i), c)
+        || this.sameColorAndFloodedHelp(this.top(i), c)
+        || this.sameColorAndFloodedHelp(this.right(i), c)
+        || this.sameColorAndFloodedHelp(this.bottom(i), c);
+  }
+
+  // checks if every cell of this board is flooded
+  boolean allFlooded() {
+    return this.floodedCount == this.colors.length;
+  }
+
+  // EFFECT: changes every flooded cell joined to the top left cell through
+  // flooded cells to the palette color c, which is every flooded cell when the
+  // flood is joined
+  // costs as much as the cells changed, using the same scratch space as gain
+  void recolorFlood(int c) {
+    this.walkFlood(c);
+  }
+
+  // checks if every flooded cell is joined to the top left cell through flooded
+  // cells and has its color, which every move then keeps true
+  // EFFECT: restarts the wave of the flood from the top left cell
+  boolean floodJoined() {
+    int n = this.walkFlood(-1);
+    boolean ans = n > 0 && n == this.floodedCount;
+    for (int k = 0; k < n && ans; k++) {
+      ans = this.colors[this.next[k]] == this.colors[0];
+    }
+    this.startWave();
+    return ans;
+  }
+
+  // returns how many flooded cells are joined to the top left cell through
+  // flooded cells, changing each of them to the palette color c unless c is -1
+  // EFFECT: uses the reached cells and next wave of the flood as scratch space
+  int walkFlood(int c) {
+    if (!this.isFlooded(0)) {
+      return 0;
+    }
+    Arrays.fill(this.reached, 0);
+    this.reached[0] = 1L;
+    this.next[0] = 0;
+    this.nextSize = 1;
+    for (int k = 0; k < this.nextSize; k++) {
+      int i = this.next[k];
+      if (c >= 0) {
+        this.updateColor(i, c);
+      }
+      this.walkHelp(this.left(i));
+      this.walkHelp(this.top(i));
+      this.walkHelp(this.right(i));
+      this.walkHelp(this.bottom(i));
+    }
+    int ans = this.nextSize;
+    this.nextSize = 0;
+    return ans;
+  }
+
+  // EFFECT: queues the given cell in the next wave if it is flooded and not yet
+  // reached
+  void walkHelp(int i) {
+    if (i != BORDER && this.isFlooded(i) && (this.reached[i >> 6] & (1L << i)) == 0) {
+      this.reached[i >> 6] |= 1L << i;
+      if (this.nextSize == this.next.length) {
+        this.next = Arrays.copyOf(this.next, this.nextSize * 2);
+      }
+      this.next[this.nextSize] = i;
+      this.nextSize = this.nextSize + 1;
+    }
+  }
+
+  // returns how many cells a move of the palette color c would flood that are
+  // not flooded yet
+  // the cells the flood would reach are found as floodStep would reach them, from
+  // the top left cell through cells that are flooded or of the color c
+  // EFFECT: uses the reached cells and next wave of the flood as scratch space,
+  // so it is only for between moves, and startWave sets them up again
+  int gain(int c) {
+    Arrays.fill(this.reached, 0);
+    this.reached[0] = 1L;
+    this.next[0] = 0;
+    this.nextSize = 1;
+    int ans = 0;
+    for (int k = 0; k < this.nextSize; k++) {
+      int i = this.next[k];
+      ans = ans + this.gainHelp(this.left(i), c) + this.gainHelp(this.top(i), c)
+          + this.gainHelp(this.right(i), c) + this.gainHelp(this.bottom(i), c);
+    }
+    this.nextSize = 0;
+    return ans;
+  }
+
+  // EFFECT: if the flood of the palette color c can reach the given cell and has
+  // not yet reached it, marks it reached and queues it in the next wave
+  // returns 1 if it was queued and is not flooded, and 0 otherwise
+  int gainHelp(int i, int c) {
+    if (i == BORDER || (this.reached[i >> 6] & (1L << i)) != 0
+        || !(this.isFlooded(i) || this.colors[i] == c)) {
+      return 0;
+    }
+    this.reached[i >> 6] |= 1L << i;
+    if (this.nextSize == this.next.length) {
+      this.next = Arrays.copyOf(this.next, this.nextSize * 2);
+    }
+    this.next[this.nextSize] = i;
+    this.nextSize = this.nextSize + 1;
+    return this.isFlooded(i) ? 0 : 1;
+  }
+
+  // EFFECT: floods the board with the palette color c all at once on the given
+  // pool, a tile of the board per task, ending as flood(0), updateColor(0, c),
+  // startWave and every floodStep after it would
+  // returns the cells the move flooded that were not flooded
+  int[] floodTiles(int c, ForkJoinPool pool) {
+    TileFlood f = new TileFlood(this, c);
+    f.run(pool);
+    return f.added();
+  }
+
+  // EFFECT: restarts the wave of the flood from the top left cell
+  void startWave() {
+    this.addedSize = 0;
+    Arrays.fill(this.reached, 0);
+    this.reached[0] |= 1L;
+    this.wave[0] = 0;
+    this.waveSize = 1;
+  }
+
+  // EFFECT: spreads the flood of the palette color c from the last wave to the
+  // cells next to it, which become the new wave
+  // returns whether the flood reached any cell
+  // the flood passes through cells that are already flooded and cells of the
+  // flooding color, so nothing changes if c is not in the palette
+  boolean floodStep(int c) {
+    this.nextSize = 0;
+    this.examined = 0;
+    if (c >= 0) {
+      for (int k = 0; k < this.waveSize; k++) {
+        int i = this.wave[k];
+        this.spreadHelp(this.left(i), c);
+        this.spreadHelp(this.top(i), c);
+        this.spreadHelp(this.right(i), c);
+        this.spreadHelp(this.bottom(i), c);
+      }
+    }
+    int[] last = this.wave;
+    this.wave = this.next;
+    this.waveSize = this.nextSize;
+    this.next = last;
+    return this.waveSize > 0;
+  }
+
+  // EFFECT: counts the given cell as looked at, and if the flood of the palette
+  // color c can reach it and has not yet reached it, floods it, changes it to c
+  // and adds it to the next wave
+  void spreadHelp(int i, int c) {
+    if (i == BORDER) {
+      return;
+    }
+    this.examined = this.examined + 1;
+    if ((this.isFlooded(i) || this.colors[i] == c) && (this.reached[i >> 6] & (1L << i)) == 0) {
+      this.reached[i >> 6] |= 1L << i;
+      if (!this.isFlooded(i)) {
+        if (this.addedSize == this.added.length) {
+          this.added = Arrays.copyOf(this.added, this.addedSize * 2);
+        }
+        this.added[this.addedSize] = i;
+        this.addedSize = this.addedSize + 1;
+      }
+      this.flood(i);
+      this.updateColor(i, c);
+      if (this.nextSize == this.next.length) {
+        this.next = Arrays.copyOf(this.next, this.nextSize * 2);
+      }
+      this.next[this.nextSize] = i;
+      this.nextSize = this.nextSize + 1;
+    }
+  }
+}
+
+// Fills the given rows of a board with random colors, splitting the rows between
+// tasks until each has few enough cells to fill by itself
+// every row has its own random and its own part of the colors, so the tasks
+// share nothing they write
+@SuppressWarnings("serial")
+class FillRows extends RecursiveAction {
+  // about how many cells a task fills by itself
+  static final int CELLS = 1 << 16;
+
+  FloodBoard board;
+  SplittableRandom[] rows;
+  int from;
+  int to;
+
+  // fills rows from to to - 1 of the given board, where row y draws from rows[y]
+  FillRows(FloodBoard board, SplittableRandom[] rows, int from, int to) {
+    this.board = board;
+    this.rows = rows;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: fills the rows of this task
+  protected void compute() {
+    if ((long) (this.to - this.from) * this.board.size <= CELLS || this.to - this.from == 1) {
+      for (int y = this.from; y < this.to; y++) {
+        this.fillRow(y);
+      }
+    }
+    else {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new FillRows(this.board, this.rows, this.from, mid),
+          new FillRows(this.board, this.rows, mid, this.to));
+    }
+  }
+
+  // EFFECT: gives every cell of row y a random color from row y's random
+  void fillRow(int y) {
+    SplittableRandom rand = this.rows[y];
+    int n = this.board.palette.size();
+    byte[] colors = this.board.colors;
+    for (int i = y * this.board.size; i < (y + 1) * this.board.size; i++) {
+      colors[i] = (byte) rand.nextInt(n);
+    }
+  }
+}
+
+class ExamplesFloodBoard {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  // a 3x3 board
+  // red green blue
+  // red red blue
+  // green red red
+  FloodBoard board3() {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    b.flood(0);
+    return b;
+  }
+
+  void testNeighbors(Tester t) {
+    FloodBoard b = this.board3();
+    t.checkExpect(b.index(1, 2), 7);
+    t.checkExpect(b.left(3), FloodBoard.BORDER);
+    t.checkExpect(b.left(4), 3);
+    t.checkExpect(b.right(5), FloodBoard.BORDER);
+    t.checkExpect(b.right(4), 5);
+    t.checkExpect(b.top(2), FloodBoard.BORDER);
+    t.checkExpect(b.top(4), 1);
+    t.checkExpect(b.bottom(7), FloodBoard.BORDER);
+    t.checkExpect(b.bottom(4), 7);
+  }
+
+  void testColorAndFlooded(Tester t) {
+    FloodBoard b = this.board3();
+    t.checkExpect(b.colorAt(1), Color.green);
+    t.checkExpect(b.isFlooded(0), true);
+    t.checkExpect(b.isFlooded(3), false);
+    t.checkExpect(b.nextToFlooded(3, 0), true);
+    t.checkExpect(b.nextToFlooded(3, 1), false);
+    t.checkExpect(b.nextToFlooded(4, 0), false);
+    t.checkExpect(b.allFlooded(), false);
+    t.checkExpect(b.floodedCount, 1);
+    b.flood(0);
+    t.checkExpect(b.floodedCount, 1);
+    for (int i = 0; i < 9; i++) {
+      b.flood(i);
+    }
+    t.checkExpect(b.floodedCount, 9);
+    t.checkExpect(b.allFlooded(), true);
+  }
+
+  void testFloodStart(Tester t) {
+    FloodBoard b = this.board3();
+    b.floodStart();
+    t.checkExpect(b.isFlooded(3), true);
+    t.checkExpect(b.isFlooded(4), true);
+    t.checkExpect(b.isFlooded(7), true);
+    t.checkExpect(b.isFlooded(8), true);
+    t.checkExpect(b.isFlooded(1), false);
+    t.checkExpect(b.isFlooded(6), false);
+  }
+
+  void testRandomBoard(Tester t) {
+    FloodBoard b = new FloodBoard(5, new Random(3), this.colors);
+    Random rand = new Random(3);
+    for (int x = 0; x < 5; x++) {
+      for (int y = 0; y < 5; y++) {
+        t.checkExpect(b.colorAt(b.index(x, y)), this.colors.get(rand.nextInt(3)));
+      }
+    }
+    t.checkExpect(b.isFlooded(0), true);
+  }
+
+  void testDirty(Tester t) {
+    FloodBoard b = new FloodBoard(8, this.colors);
+    t.checkExpect(b.allDirty, true);
+    b.clearDirty();
+    b.updateColor(5, 0);
+    t.checkExpect(b.dirtySize, 0);
+    b.updateColor(5, 1);
+    b.updateColor(9, 2);
+    t.checkExpect(b.dirtySize, 2);
+    t.checkExpect(b.dirty[1], 9);
+    t.checkExpect(b.allDirty, false);
+    for (int i = 10; i < 30; i++) {
+      b.updateColor(i, 1);
+    }
+    t.checkExpect(b.allDirty, true);
+    b.clearDirty();
+    t.checkExpect(b.dirtySize, 0);
+    t.checkExpect(b.allDirty, false);
+  }
+
+  void testFloodStep(Tester t) {
+    FloodBoard b = this.board3();
+    b.updateColor(0, 1);
+    t.checkExpect(b.floodStep(1), true);
+    // the top left cell has only two neighbors on the board
+    t.checkExpect(b.examined, 2);
+    t.checkExpect(b.colorAt(1), Color.green);
+    t.checkExpect(b.isFlooded(1), true);
+    t.checkExpect(b.isFlooded(3), false);
+    t.checkExpect(b.floodStep(1), false);
+    t.checkExpect(b.examined, 3);
+
+    b = this.board3();
+    b.updateColor(0, 2);
+    b.floodStep(2);
+    t.checkExpect(b.isFlooded(1), false);
+    t.checkExpect(b.floodStep(-1), false);
+    t.checkExpect(b.examined, 0);
+  }
+
+  void testParallelBoard(Tester t) {
+    FloodBoard one = new FloodBoard(300, 77, this.colors, new ForkJoinPool(1));
+    FloodBoard four = new FloodBoard(300, 77, this.colors, new ForkJoinPool(4));
+    t.checkExpect(four.colors, one.colors);
+    t.checkExpect(four.flooded, one.flooded);
+    t.checkExpect(Arrays.equals(new FloodBoard(300, 78, this.colors,
+        ForkJoinPool.commonPool()).colors, one.colors), false);
+    int[] counts = new int[3];
+    for (byte c : one.colors) {
+      counts[c] = counts[c] + 1;
+    }
+    t.checkExpect(counts[0] > 29000 && counts[1] > 29000 && counts[2] > 29000, true);
+  }
+
+  void testFloodConnected(Tester t) {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    b.floodConnected();
+    t.checkExpect(b.floodedCount, 5);
+    t.checkExpect(b.isFlooded(8), true);
+    t.checkExpect(b.isFlooded(6), false);
+    t.checkExpect(new RegionGraph(b).coversFlood(b), true);
+  }
+}
@@ -0,0 +1,689 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import tester.Tester;
+
+// Plays many seeded games with no display, spread over every core, and writes a
+// record of every position met to a dataset file, for training and judging move
+// strategies away from the game
+// usage: java FloodDataset file [games] [firstSeed] [size] [colors] [strategy]
+// [threads] [compress]
+// where strategy is as for FloodBatch, and compress is true or false
+// each record holds a position before a move: the seed of its game, how many
+// moves into the game it is, the palette color of every cell, which cells are
+// flooded, the move the strategy made there, how many moves the game took from
+// there, and whether the game was won
+// files are written as, in order and big endian:
+// - the int MAGIC and the short VERSION
+// - the int size of the boards, the byte number of colors, and the byte 1 if the
+// columns are compressed or 0 if not
+// - chunks of records, each the records of a run of games, as the int number of
+// records, then for each of the COLUMNS the int length it is stored in and the
+// int length it has once read, then the columns one after another
+// the columns are, for each record in turn: the int seed, the short number of
+// moves made, the colors two cells to a byte with the first cell in the high four
+// bits, the flooded cells as longs, the byte move, the short moves left and the
+// byte 1 if won or 0 if not
+// each column of a chunk is deflated on its own when compressed
+// chunks are written by whichever thread finished them, at the end of the file
+// as it was when they finished, so the chunks of a file come in no set order but
+// hold the same records however many threads wrote them
+public class FloodDataset {
+  static final int MAGIC = 0x464C4453;
+  static final short VERSION = 1;
+  static final int HEADER = 4 + 2 + 4 + 1 + 1;
+  // how many columns a chunk has
+  static final int COLUMNS = 7;
+
+  // how many games each chunk holds
+  int chunkGames = 256;
+  // how many finished chunks can be waiting to be written before the threads
+  // playing games wait for them
+  int inFlight = 16;
+  boolean compress = true;
+  // whether games are played on the bits of their boards instead of the regions
+  boolean bits;
+
+  public static void main(String[] args) throws IOException {
+    Path file = Path.of(args[0]);
+    int games = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    int firstSeed = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+    int size = args.length > 3 ? Integer.parseInt(args[3]) : 13;
+    int colors = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+    AMoveStrategy strategy = new FloodBatch().strategy(args.length > 5 ? args[5] : "greedy");
+    int threads = args.length > 6 ? Integer.parseInt(args[6])
+        : Runtime.getRuntime().availableProcessors();
+    FloodDataset data = new FloodDataset();
+    data.compress = args.length <= 7 || Boolean.parseBoolean(args[7]);
+
+    long start = System.nanoTime();
+    long records = data.write(file, games, firstSeed, size, colors, strategy, threads);
+    long nanos = System.nanoTime() - start;
+    System.out.println(size + "x" + size + ", " + colors + " colors, " + strategy.name()
+        + ", " + threads + " threads" + (data.compress ? ", compressed" : ""));
+    System.out.println(String.format("%d positions in %.3f s (%.0f positions/min), %d bytes",
+        records, nanos / 1e9, records / Math.max(nanos / 6e10, 1e-12), Files.size(file)));
+  }
+
+  // EFFECT: writes the positions of the given number of games, played with the
+  // given strategy on the given number of threads starting from the given seed,
+  // to the given file, replacing anything already there
+  // returns how many records were written
+  long write(Path file, int games, int firstSeed, int size, int colors,
+      AMoveStrategy strategy, int threads) throws IOException {
+    if (colors > 16) {
+      throw new IllegalArgumentException("Only games of up to 16 colors can be written");
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try (DatasetWriter out = new DatasetWriter(file, size, colors, this.compress,
+        this.inFlight)) {
+      ArrayList<Future<Long>> chunks = new ArrayList<Future<Long>>();
+      for (int from = 0; from < games; from += this.chunkGames) {
+        int first = firstSeed + from;
+        int count = Math.min(this.chunkGames, games - from);
+        chunks.add(pool.submit(() -> out.write(
+            this.playAll(first, count, size, colors, strategy))));
+      }
+      long ans = 0;
+      for (Future<Long> chunk : chunks) {
+        ans = ans + chunk.get();
+      }
+      return ans;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Writing the dataset was interrupted", e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("A game failed", e.getCause());
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // returns the records of playing the given number of games in a row, starting
+  // from the given seed
+  DatasetChunk playAll(int firstSeed, int count, int size, int colors,
+      AMoveStrategy strategy) {
+    DatasetChunk ans = new DatasetChunk(size);
+    for (int k = 0; k < count; k++) {
+      this.play(firstSeed + k, size, colors, strategy, ans);
+    }
+    return ans;
+  }
+
+  // EFFECT: adds to the given chunk a record of every position of the game with
+  // the given seed played until every cell is flooded, as FloodBatch plays it
+  void play(int seed, int size, int colors, AMoveStrategy strategy, DatasetChunk into) {
+    FloodGame game = new FloodGame(size, colors, new Random(seed));
+    if (this.bits) {
+      game.useBits();
+    }
+    Random rand = new Random(-1L - seed);
+    int first = into.records;
+    while (!game.allFlooded()) {
+      int move = strategy.chooseMove(game, rand);
+      into.add(seed, game.movesUsed(), game.board(), move);
+      game.applyMove(move);
+    }
+    into.finish(first, game.movesUsed(), game.isWon());
+  }
+}
+
+// The records of a run of games, kept a column at a time
+class DatasetChunk {
+  int size;
+  // how many bytes the colors of a record take, and how many longs its flooded
+  // cells
+  int colorBytes;
+  int floodedWords;
+  int records;
+  int[] seeds;
+  short[] plies;
+  byte[] colors;
+  long[] flooded;
+  byte[] moves;
+  short[] left;
+  byte[] won;
+
+  // makes a chunk with no records of boards of the given size
+  DatasetChunk(int size) {
+    this.size = size;
+    this.colorBytes = (size * size + 1) / 2;
+    this.floodedWords = (size * size + 63) / 64;
+    this.grow(64);
+  }
+
+  // EFFECT: makes room for at least the given number of records
+  void grow(int capacity) {
+    if (this.seeds != null && capacity <= this.seeds.length) {
+      return;
+    }
+    int n = this.seeds == null ? capacity : Math.max(capacity, this.seeds.length * 2);
+    this.seeds = this.seeds == null ? new int[n] : Arrays.copyOf(this.seeds, n);
+    this.plies = this.plies == null ? new short[n] : Arrays.copyOf(this.plies, n);
+    this.colors = this.colors == null ? new byte[n * this.colorBytes]
+        : Arrays.copyOf(this.colors, n * this.colorBytes);
+    this.flooded = this.flooded == null ? new long[n * this.floodedWords]
+        : Arrays.copyOf(this.flooded, n * this.floodedWords);
+    this.moves = this.moves == null ? new byte[n] : Arrays.copyOf(this.moves, n);
+    this.left = this.left == null ? new short[n] : Arrays.copyOf(this.left, n);
+    this.won = this.won == null ? new byte[n] : Arrays.copyOf(this.won, n);
+  }
+
+  // EFFECT: adds a record of the given board, the given number of moves into the
+  // game with the given seed, where the given move was made
+  // how the game ends is filled in by finish
+  void add(int seed, int ply, FloodBoard b, int move) {
+    this.grow(this.records + 1);
+    int r = this.records;
+    this.seeds[r] = seed;
+    this.plies[r] = (short) ply;
+    int at = r * this.colorBytes;
+    for (int i = 0; i < b.colors.length; i += 2) {
+      int high = b.colors[i] << 4;
+      int low = i + 1 < b.colors.length ? b.colors[i + 1] : 0;
+      this.colors[at + i / 2] = (byte) (high | low);
+    }
+    System.arraycopy(b.flooded, 0, this.flooded, r * this.floodedWords, this.floodedWords);
+    this.moves[r] = (byte) move;
+    this.records = r + 1;
+  }
+
+  // EFFECT: fills in how the game whose records start at the given record ended,
+  // after the given number of moves
+  void finish(int first, int moves, boolean won) {
+    for (int r = first; r < this.records; r++) {
+      this.left[r] = (short) (moves - this.plies[r]);
+      this.won[r] = (byte) (won ? 1 : 0);
+    }
+  }
+
+  // returns each column of this chunk as the bytes it is written as
+  ByteBuffer[] columns() {
+    int n = this.records;
+    ByteBuffer[] ans = new ByteBuffer[FloodDataset.COLUMNS];
+    ans[0] = ByteBuffer.allocate(4 * n);
+    ans[0].asIntBuffer().put(this.seeds, 0, n);
+    ans[1] = ByteBuffer.allocate(2 * n);
+    ans[1].asShortBuffer().put(this.plies, 0, n);
+    ans[2] = ByteBuffer.wrap(this.colors, 0, n * this.colorBytes).slice();
+    ans[3] = ByteBuffer.allocate(8 * n * this.floodedWords);
+    ans[3].asLongBuffer().put(this.flooded, 0, n * this.floodedWords);
+    ans[4] = ByteBuffer.wrap(this.moves, 0, n).slice();
+    ans[5] = ByteBuffer.allocate(2 * n);
+    ans[5].asShortBuffer().put(this.left, 0, n);
+    ans[6] = ByteBuffer.wrap(this.won, 0, n).slice();
+    return ans;
+  }
+
+  // returns this chunk as it is written to a file, deflating each column if
+  // asked to
+  ByteBuffer encode(boolean compress) {
+    ByteBuffer[] columns = this.columns();
+    int[] raw = new int[columns.length];
+    int length = 4 + 8 * columns.length;
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      for (int k = 0; k < columns.length; k++) {
+        raw[k] = columns[k].remaining();
+        if (compress) {
+          columns[k] = ByteBuffer.wrap(this.deflate(deflater, columns[k]));
+        }
+        length = length + columns[k].remaining();
+      }
+    }
+    finally {
+      deflater.end();
+    }
+    ByteBuffer out = ByteBuffer.allocate(length);
+    out.putInt(this.records);
+    for (int k = 0; k < columns.length; k++) {
+      out.putInt(columns[k].remaining());
+      out.putInt(raw[k]);
+    }
+    for (ByteBuffer column : columns) {
+      out.put(column);
+    }
+    return out.flip();
+  }
+
+  // returns the given column deflated with the given deflater, which is reset
+  byte[] deflate(Deflater deflater, ByteBuffer column) {
+    deflater.reset();
+    deflater.setInput(column.array(), column.arrayOffset(), column.remaining());
+    deflater.finish();
+    byte[] out = new byte[Math.max(64, column.remaining() / 2)];
+    int n = 0;
+    while (!deflater.finished()) {
+      if (n == out.length) {
+        out = Arrays.copyOf(out, out.length * 2);
+      }
+      n = n + deflater.deflate(out, n, out.length - n);
+    }
+    return Arrays.copyOf(out, n);
+  }
+}
+
+// Writes the chunks of a dataset file as they are finished, from any thread
+// each chunk gets the next stretch of the file as soon as it is finished, and
+// is written there by the channel in the background while its thread goes back
+// to playing games, unless inFlight chunks are still being written
+class DatasetWriter implements AutoCloseable {
+  AsynchronousFileChannel channel;
+  // whether each column of a chunk is deflated
+  boolean compress;
+  // where the next chunk goes
+  AtomicLong end;
+  // one permit for each chunk that can be written at once
+  Semaphore slots;
+  int inFlight;
+  // the first write that failed, if any
+  AtomicReference<Throwable> failed;
+
+  // makes a writer of a new dataset of boards of the given size and number of
+  // colors, replacing anything already in the given file
+  DatasetWriter(Path file, int size, int colors, boolean compress, int inFlight)
+      throws IOException {
+    this.channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.inFlight = inFlight;
+    this.slots = new Semaphore(inFlight);
+    this.failed = new AtomicReference<Throwable>();
+    ByteBuffer header = ByteBuffer.allocate(FloodDataset.HEADER);
+    header.putInt(FloodDataset.MAGIC);
+    header.putShort(FloodDataset.VERSION);
+    header.putInt(size);
+    header.put((byte) colors);
+    header.put((byte) (compress ? 1 : 0));
+    header.flip();
+    this.end = new AtomicLong(FloodDataset.HEADER);
+    this.compress = compress;
+    this.start(header, 0);
+  }
+
+  // EFFECT: starts writing the given chunk at the end of the file
+  // returns how many records it holds
+  long write(DatasetChunk chunk) throws IOException {
+    ByteBuffer bytes = chunk.encode(this.compress);
+    this.start(bytes, this.end.getAndAdd(bytes.remaining()));
+    return chunk.records;
+  }
+
+  // EFFECT: starts writing the given bytes at the given place in the file, once
+  // fewer than inFlight writes are going on
+  void start(ByteBuffer bytes, long position) throws IOException {
+    this.check();
+    this.slots.acquireUninterruptibly();
+    this.channel.write(bytes, position, bytes, new ChunkWrite(this, position));
+  }
+
+  // EFFECT: throws the first failed write, if any, as an IOException
+  void check() throws IOException {
+    Throwable e = this.failed.get();
+    if (e != null) {
+      throw new IOException("Could not write the dataset", e);
+    }
+  }
+
+  // EFFECT: waits for every write to finish and closes the file
+  public void close() throws IOException {
+    this.slots.acquireUninterruptibly(this.inFlight);
+    try {
+      this.check();
+    }
+    finally {
+      this.channel.close();
+    }
+  }
+}
+
+// Carries on writing a chunk of a dataset until all of it is written, then lets
+// another chunk be written
+class ChunkWrite implements CompletionHandler<Integer, ByteBuffer> {
+  DatasetWriter writer;
+  // where in the file the first byte of the chunk left to write goes
+  long position;
+
+  ChunkWrite(DatasetWriter writer, long position) {
+    this.writer = writer;
+    this.position = position;
+  }
+
+  // EFFECT: writes the rest of the chunk, or frees its place once it is written
+  public void completed(Integer written, ByteBuffer bytes) {
+    this.position = this.position + written;
+    if (bytes.hasRemaining()) {
+      this.writer.channel.write(bytes, this.position, bytes, this);
+    }
+    else {
+      this.writer.slots.release();
+    }
+  }
+
+  // EFFECT: keeps the first failure to be thrown later, and frees the chunk's
+  // place
+  public void failed(Throwable e, ByteBuffer bytes) {
+    this.writer.failed.compareAndSet(null, e);
+    this.writer.slots.release();
+  }
+}
+
+// Reads the records of a dataset file one at a time, a chunk at a time, so a
+// file of any size is read in the memory of its largest chunk
+// each call to next moves on to the next record, whose fields are then set
+// the colors and flooded arrays are reused from record to record
+class DatasetReader implements AutoCloseable {
+  Path file;
+  FileChannel channel;
+  int size;
+  int numColors;
+  boolean compressed;
+
+  // the chunk being read and which of its records is next
+  ByteBuffer[] columns;
+  int records;
+  int next;
+
+  // the record read last
+  int seed;
+  int ply;
+  byte[] colors;
+  long[] flooded;
+  int move;
+  int left;
+  boolean won;
+
+  // opens the dataset in the given file
+  DatasetReader(Path file) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = this.read(FloodDataset.HEADER);
+      if (header == null || header.getInt() != FloodDataset.MAGIC) {
+        throw new IOException(file + " is not a dataset");
+      }
+      short version = header.getShort();
+      if (version != FloodDataset.VERSION) {
+        throw new IOException(file + " was written by an unknown version " + version);
+      }
+      this.size = header.getInt();
+      this.numColors = header.get();
+      this.compressed = header.get() == 1;
+      this.colors = new byte[this.size * this.size];
+      this.flooded = new long[(this.size * this.size + 63) / 64];
+    }
+    catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  // returns the next given number of bytes of the file, or null if the file ends
+  // first
+  ByteBuffer read(int length) throws IOException {
+    ByteBuffer ans = ByteBuffer.allocate(length);
+    while (ans.hasRemaining()) {
+      if (this.channel.read(ans) < 0) {
+        return null;
+      }
+    }
+    return ans.flip();
+  }
+
+  // EFFECT: moves on to the next record, reading the next chunk if need be
+  // returns whether there was one
+  boolean next() throws IOException {
+    while (this.next == this.records) {
+      if (!this.readChunk()) {
+        return false;
+      }
+    }
+    int r = this.next;
+    this.seed = this.columns[0].getInt(4 * r);
+    this.ply = this.columns[1].getShort(2 * r);
+    int colorBytes = (this.colors.length + 1) / 2;
+    for (int i = 0; i < this.colors.length; i++) {
+      int b = this.columns[2].get(r * colorBytes + i / 2);
+      this.colors[i] = (byte) (i % 2 == 0 ? (b >> 4) & 0xF : b & 0xF);
+    }
+    for (int w = 0; w < this.flooded.length; w++) {
+      this.flooded[w] = this.columns[3].getLong(8 * (r * this.flooded.length + w));
+    }
+    this.move = this.columns[4].get(r);
+    this.left = this.columns[5].getShort(2 * r);
+    this.won = this.columns[6].get(r) == 1;
+    this.next = r + 1;
+    return true;
+  }
+
+  // EFFECT: reads the next chunk of the file
+  // returns whether there was one
+  boolean readChunk() throws IOException {
+    ByteBuffer head = this.read(4 + 8 * FloodDataset.COLUMNS);
+    if (head == null) {
+      return false;
+    }
+    int count = head.getInt();
+    long[] expected = this.columnLengths(count);
+    int[] stored = new int[FloodDataset.COLUMNS];
+    int[] raw = new int[FloodDataset.COLUMNS];
+    long total = 0;
+    for (int k = 0; k < FloodDataset.COLUMNS; k++) {
+      stored[k] = head.getInt();
+      raw[k] = head.getInt();
+      if (stored[k] < 0 || raw[k] != expected[k] || (!this.compressed && stored[k] != raw[k])) {
+        throw new IOException(this.file + " has a damaged chunk");
+      }
+      total = total + stored[k];
+    }
+    if (total > Integer.MAX_VALUE) {
+      throw new IOException(this.file + " has a damaged chunk");
+    }
+    ByteBuffer body = this.read((int) total);
+    if (body == null) {
+      throw new IOException(this.file + " ends in the middle of a chunk");
+    }
+    this.columns = new ByteBuffer[FloodDataset.COLUMNS];
+    for (int k = 0; k < FloodDataset.COLUMNS; k++) {
+      byte[] bytes = new byte[stored[k]];
+      body.get(bytes);
+      this.columns[k] = ByteBuffer.wrap(this.compressed ? this.inflate(bytes, raw[k]) : bytes);
+    }
+    this.records = count;
+    this.next = 0;
+    return true;
+  }
+
+  // returns how many bytes each column of a chunk of the given number of
+  // positions holds before it is deflated, or -1 for each if the number cannot
+  // be right
+  long[] columnLengths(int count) {
+    long[] ans = new long[FloodDataset.COLUMNS];
+    if (count < 0) {
+      Arrays.fill(ans, -1);
+      return ans;
+    }
+    long n = count;
+    ans[0] = 4 * n;
+    ans[1] = 2 * n;
+    ans[2] = n * ((this.colors.length + 1) / 2);
+    ans[3] = 8 * n * this.flooded.length;
+    ans[4] = n;
+    ans[5] = 2 * n;
+    ans[6] = n;
+    return ans;
+  }
+
+  // returns the given deflated bytes inflated back to the given length
+  byte[] inflate(byte[] bytes, int length) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes);
+      byte[] ans = new byte[length];
+      int n = 0;
+      while (n < length && !inflater.finished()) {
+        int got = inflater.inflate(ans, n, length - n);
+        if (got == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        n = n + got;
+      }
+      if (n != length) {
+        throw new IOException(this.file + " has a damaged chunk");
+      }
+      return ans;
+    }
+    catch (DataFormatException e) {
+      throw new IOException(this.file + " has a damaged chunk", e);
+    }
+    finally {
+      inflater.end();
+    }
+  }
+
+  // EFFECT: closes the file
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
+
+class ExamplesFloodDataset {
+
+  // returns a dataset writer that puts a few games in each chunk
+  FloodDataset small(boolean compress) {
+    FloodDataset d = new FloodDataset();
+    d.chunkGames = 3;
+    d.inFlight = 2;
+    d.compress = compress;
+    return d;
+  }
+
+  // checks that every record of the given file is the position it says it is,
+  // that the records of each game are all there, and returns how many there are
+  long checkRecords(Tester t, Path file, int games, int firstSeed, int size, int colors)
+      throws IOException {
+    long count = 0;
+    boolean same = true;
+    int[] plies = new int[games];
+    try (DatasetReader in = new DatasetReader(file)) {
+      t.checkExpect(in.size, size);
+      t.checkExpect(in.numColors, colors);
+      while (in.next()) {
+        count = count + 1;
+        FloodGame g = new FloodBatch().play(in.seed, size, colors, new GreedyStrategy());
+        FloodGame at = new FloodSave(g).replay(in.ply);
+        same = same && Arrays.equals(in.colors, at.board().colors)
+            && Arrays.equals(in.flooded, at.board().flooded)
+            && in.move == g.movesMade()[in.ply] && in.left == g.movesUsed() - in.ply
+            && in.won == g.isWon();
+        plies[in.seed - firstSeed] = plies[in.seed - firstSeed] + 1;
+        same = same && plies[in.seed - firstSeed] <= g.movesUsed();
+      }
+    }
+    t.checkExpect(same, true);
+    return count;
+  }
+
+  void testRoundTrip(Tester t) throws IOException {
+    Path file = Files.createTempFile("floodit", ".data");
+    long written = this.small(true).write(file, 10, 40, 9, 4, new GreedyStrategy(), 3);
+    long moves = 0;
+    for (int seed = 40; seed < 50; seed++) {
+      moves = moves + new FloodBatch().play(seed, 9, 4, new GreedyStrategy()).movesUsed();
+    }
+    t.checkExpect(written, moves);
+    t.checkExpect(this.checkRecords(t, file, 10, 40, 9, 4), moves);
+    Files.delete(file);
+  }
+
+  void testUncompressed(Tester t) throws IOException {
+    Path packed = Files.createTempFile("floodit", ".data");
+    Path plain = Files.createTempFile("floodit", ".data");
+    this.small(true).write(packed, 12, 0, 13, 5, new GreedyStrategy(), 1);
+    long written = this.small(false).write(plain, 12, 0, 13, 5, new GreedyStrategy(), 4);
+    t.checkExpect(this.checkRecords(t, plain, 12, 0, 13, 5), written);
+    t.checkExpect(Files.size(packed) < Files.size(plain), true);
+    // a board of an odd number of cells leaves the last color byte half empty
+    t.checkExpect(new DatasetChunk(13).colorBytes, 85);
+    Files.delete(packed);
+    Files.delete(plain);
+  }
+
+  void testBadFiles(Tester t) throws IOException {
+    Path file = Files.createTempFile("floodit", ".data");
+    Files.write(file, new byte[] { 1, 2, 3 });
+    t.checkException(new IOException(file + " is not a dataset"), this, "open", file);
+    this.small(true).write(file, 4, 0, 6, 3, new GreedyStrategy(), 1);
+    byte[] whole = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(whole, whole.length - 5));
+    t.checkExpect(this.fails(file), true);
+    Files.delete(file);
+    t.checkException(new IllegalArgumentException(
+        "Only games of up to 16 colors can be written"), new FloodDataset(), "write", file,
+        1, 0, 6, 17, new GreedyStrategy(), 1);
+  }
+
+  void testDamagedColumns(Tester t) throws IOException {
+    Path file = Files.createTempFile("floodit", ".data");
+    this.small(false).write(file, 4, 0, 6, 3, new GreedyStrategy(), 1);
+    byte[] whole = Files.readAllBytes(file);
+    t.checkExpect(this.fails(file), false);
+    // each column in turn says it holds a byte less than its positions need,
+    // stored and raw alike, and then stored and raw differ
+    for (int k = 0; k < FloodDataset.COLUMNS; k++) {
+      ByteBuffer b = ByteBuffer.wrap(whole.clone());
+      int at = FloodDataset.HEADER + 4 + 8 * k;
+      b.putInt(at, b.getInt(at) - 1);
+      b.putInt(at + 4, b.getInt(at + 4) - 1);
+      Files.write(file, b.array());
+      t.checkExpect(this.fails(file), true);
+      b = ByteBuffer.wrap(whole.clone());
+      b.putInt(at + 4, b.getInt(at + 4) + 1);
+      Files.write(file, b.array());
+      t.checkExpect(this.fails(file), true);
+    }
+    Files.delete(file);
+  }
+
+  // returns the dataset in the given file, opened
+  DatasetReader open(Path file) throws IOException {
+    return new DatasetReader(file);
+  }
+
+  // checks if reading every record of the given file fails
+  boolean fails(Path file) {
+    try (DatasetReader in = new DatasetReader(file)) {
+      while (in.next()) {
+        // every record is read, to reach the damage
+      }
+      return false;
+    }
+    catch (IOException e) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,715 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import tester.Tester;
+import java.awt.Color;
+import javalib.worldimages.*;
+
+// Plays many seeded boards and clicks on the game as it was first written, with
+// linked Cells flooded by scanning the whole board every tick, and on each of the
+// faster engines since, and reports every case where an engine's cells, clicks or
+// win differ from the first game's after any click
+// usage: java FloodFuzz [cases] [firstSeed] [maxSize] [threads]
+// each case that fails is shrunk to the smallest board and fewest clicks that
+// still fail before it is reported
+// case number k is the same for firstSeed + k however the cases are shared out
+// between threads
+public class FloodFuzz {
+  // how many cases each thread plays before taking more
+  int chunkSize = 512;
+
+  public static void main(String[] args) {
+    int cases = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    long firstSeed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+    int maxSize = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+    int threads = args.length > 3 ? Integer.parseInt(args[3])
+        : Runtime.getRuntime().availableProcessors();
+    long start = System.nanoTime();
+    FuzzReport report = new FloodFuzz().run(cases, firstSeed, maxSize, threads);
+    long nanos = System.nanoTime() - start;
+    System.out.println(String.format("%d cases of up to %dx%d on %d threads in %.3f s "
+        + "(%.0f cases/s)", report.cases, maxSize, maxSize, threads, nanos / 1e9,
+        report.cases / Math.max(nanos / 1e9, 1e-9)));
+    for (FuzzFailure f : report.failures) {
+      System.out.println(f);
+    }
+    if (report.failures.isEmpty()) {
+      System.out.println("every engine matched the reference");
+    }
+  }
+
+  // returns a new one of each engine checked against the reference
+  ArrayList<AFloodEngine> engines() {
+    return new ArrayList<AFloodEngine>(Arrays.asList(new WorldEngine(), new GameEngine(false),
+        new GameEngine(true), new TileEngine()));
+  }
+
+  // returns what was found playing the given number of cases of boards up to the
+  // given size on the given number of threads, starting from the given seed
+  FuzzReport run(int cases, long firstSeed, int maxSize, int threads) {
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      ArrayList<Future<FuzzReport>> chunks = new ArrayList<Future<FuzzReport>>();
+      for (int from = 0; from < cases; from += this.chunkSize) {
+        long first = firstSeed + from;
+        int count = Math.min(this.chunkSize, cases - from);
+        chunks.add(pool.submit(() -> this.runAll(first, count, maxSize, this.engines())));
+      }
+      FuzzReport ans = new FuzzReport();
+      for (Future<FuzzReport> chunk : chunks) {
+        ans.merge(chunk.get());
+      }
+      return ans;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Fuzzing was interrupted", e);
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("A case failed to run", e.getCause());
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // returns what was found playing the given number of cases in a row on the
+  // given engines, starting from the given seed
+  FuzzReport runAll(long firstSeed, int count, int maxSize, ArrayList<AFloodEngine> engines) {
+    FuzzReport ans = new FuzzReport();
+    for (int k = 0; k < count; k++) {
+      FuzzFailure f = this.check(new FuzzCase(firstSeed + k, maxSize), engines);
+      ans.cases = ans.cases + 1;
+      if (f != null) {
+        ans.failures.add(this.shrink(f));
+      }
+    }
+    return ans;
+  }
+
+  // returns how the first of the given engines to differ from the reference on
+  // the given case differs, or null if none does
+  // the engines are played click for click alongside the reference
+  FuzzFailure check(FuzzCase c, ArrayList<AFloodEngine> engines) {
+    ReferenceEngine ref = new ReferenceEngine();
+    ref.start(c);
+    for (AFloodEngine e : engines) {
+      e.start(c);
+    }
+    for (int k = 0; k <= c.clicks.length; k++) {
+      if (k > 0) {
+        int i = c.clicks[k - 1];
+        ref.click(i % c.size, i / c.size);
+        for (AFloodEngine e : engines) {
+          e.click(i % c.size, i / c.size);
+        }
+      }
+      for (AFloodEngine e : engines) {
+        String diff = this.diff(c, ref, e);
+        if (diff != null) {
+          return new FuzzFailure(c, e, k, diff);
+        }
+      }
+    }
+    return null;
+  }
+
+  // returns how the given engine differs from the reference on the given case as
+  // they are now, or null if it does not
+  String diff(FuzzCase c, AFloodEngine ref, AFloodEngine e) {
+    for (int y = 0; y < c.size; y++) {
+      for (int x = 0; x < c.size; x++) {
+        if (!ref.colorAt(x, y).equals(e.colorAt(x, y))) {
+          return "cell (" + x + ", " + y + ") is " + e.colorAt(x, y) + " instead of "
+              + ref.colorAt(x, y);
+        }
+        if (ref.isFlooded(x, y) != e.isFlooded(x, y)) {
+          return "cell (" + x + ", " + y + ") is " + (e.isFlooded(x, y) ? "" : "not ")
+              + "flooded";
+        }
+      }
+    }
+    if (ref.clicks() != e.clicks()) {
+      return e.clicks() + " clicks instead of " + ref.clicks();
+    }
+    if (ref.isWon() != e.isWon()) {
+      return e.isWon() ? "won" : "not won";
+    }
+    return null;
+  }
+
+  // returns the given failure on the smallest case found that the same engine
+  // still fails on
+  // each round tries fewer clicks, then a smaller board, then fewer colors, and
+  // keeps the first smaller case that still fails, until none does
+  FuzzFailure shrink(FuzzFailure f) {
+    ArrayList<AFloodEngine> engine = new ArrayList<AFloodEngine>(Arrays.asList(f.engine));
+    FuzzFailure ans = f;
+    boolean shrunk = true;
+    while (shrunk) {
+      shrunk = false;
+      for (FuzzCase smaller : ans.fuzz.smaller()) {
+        FuzzFailure again = this.check(smaller, engine);
+        if (again != null) {
+          ans = again;
+          shrunk = true;
+          break;
+        }
+      }
+    }
+    return ans;
+  }
+}
+
+// A board and the cells clicked on it, in order
+// the colors are indexes into the palette, with the cell at (x, y) at index
+// y * size + x, and the board starts flooded as the first game flooded it
+class FuzzCase {
+  int size;
+  ArrayList<Color> palette;
+  byte[] colors;
+  int[] clicks;
+  // the seed the board was made from, if it was not changed since
+  int seed;
+  boolean seeded;
+
+  // makes the case with the given seed, of a board of up to the given size made
+  // just as new FloodItWorld(size, colors, seed) makes it for a seed of its own,
+  // and up to three clicks a row of random cells
+  FuzzCase(long caseSeed, int maxSize) {
+    Random rand = new Random(caseSeed);
+    this.size = 1 + rand.nextInt(maxSize);
+    int numColors = 1 + rand.nextInt(8);
+    this.seed = rand.nextInt();
+    this.seeded = true;
+    this.clicks = new int[rand.nextInt(3 * this.size + 1)];
+    for (int k = 0; k < this.clicks.length; k++) {
+      this.clicks[k] = rand.nextInt(this.size * this.size);
+    }
+    Random board = new Random(this.seed);
+    Utils u = new Utils();
+    this.palette = u.randColorSet(board, u.gameColors(), numColors);
+    this.colors = new byte[this.size * this.size];
+    for (int x = 0; x < this.size; x++) {
+      for (int y = 0; y < this.size; y++) {
+        this.colors[y * this.size + x] = (byte) this.palette.indexOf(
+            u.randColor(board, this.palette));
+      }
+    }
+  }
+
+  // makes a case of the given board and clicks
+  FuzzCase(int size, ArrayList<Color> palette, byte[] colors, int[] clicks) {
+    this.size = size;
+    this.palette = palette;
+    this.colors = colors;
+    this.clicks = clicks;
+  }
+
+  // returns the cells of this board, linked and flooded as the first game's
+  // makeBoard linked and flooded them
+  ArrayList<ArrayList<Cell>> cells() {
+    ArrayList<ArrayList<Cell>> ans = new ArrayList<ArrayList<Cell>>();
+    for (int x = 0; x < this.size; x++) {
+      ArrayList<Cell> column = new ArrayList<Cell>();
+      for (int y = 0; y < this.size; y++) {
+        column.add(new Cell(x, y, this.palette.get(this.colors[y * this.size + x])));
+      }
+      ans.add(column);
+    }
+    Cell topLeft = ans.get(0).get(0);
+    topLeft.flooded = true;
+    for (int x = 0; x < this.size; x++) {
+      for (int y = 0; y < this.size; y++) {
+        Cell cell = ans.get(x).get(y);
+        cell.updateAdjacent(x > 0 ? ans.get(x - 1).get(y) : new BorderCell(),
+            x + 1 < this.size ? ans.get(x + 1).get(y) : new BorderCell(),
+            y > 0 ? ans.get(x).get(y - 1) : new BorderCell(),
+            y + 1 < this.size ? ans.get(x).get(y + 1) : new BorderCell());
+        if (cell.sameColorAndFlooded(topLeft.color) && cell.color.equals(topLeft.color)) {
+          cell.flooded = true;
+        }
+      }
+    }
+    return ans;
+  }
+
+  // returns the point of the scene the first game drew the middle of the cell at
+  // (x, y) at
+  Posn posn(int x, int y) {
+    int corner = 250 - (this.size * 20) / 2;
+    return new Posn(corner + 20 * x + 10, corner + 20 * y + 10);
+  }
+
+  // returns the most clicks the first game allowed on this board
+  int maxClicks() {
+    return ((25 * (2 * this.size) * this.palette.size()) / 168) + 1;
+  }
+
+  // returns the cases one step smaller than this one, smallest first: without
+  // the last clicks, without each click, on the board without its last row and
+  // column, and with each color or cell changed to the first color
+  ArrayList<FuzzCase> smaller() {
+    ArrayList<FuzzCase> ans = new ArrayList<FuzzCase>();
+    for (int n = 0; n < this.clicks.length; n++) {
+      ans.add(new FuzzCase(this.size, this.palette, this.colors, Arrays.copyOf(this.clicks, n)));
+    }
+    for (int k = 0; k < this.clicks.length; k++) {
+      int[] fewer = new int[this.clicks.length - 1];
+      System.arraycopy(this.clicks, 0, fewer, 0, k);
+      System.arraycopy(this.clicks, k + 1, fewer, k, fewer.length - k);
+      ans.add(new FuzzCase(this.size, this.palette, this.colors, fewer));
+    }
+    if (this.size > 1) {
+      ans.add(this.cropped());
+    }
+    for (int c = 1; c < this.palette.size(); c++) {
+      byte[] merged = this.colors.clone();
+      boolean used = false;
+      for (int i = 0; i < merged.length; i++) {
+        if (merged[i] == c) {
+          merged[i] = 0;
+          used = true;
+        }
+      }
+      if (used) {
+        ans.add(new FuzzCase(this.size, this.palette, merged, this.clicks));
+      }
+    }
+    for (int i = 0; i < this.colors.length; i++) {
+      if (this.colors[i] != 0) {
+        byte[] plainer = this.colors.clone();
+        plainer[i] = 0;
+        ans.add(new FuzzCase(this.size, this.palette, plainer, this.clicks));
+      }
+    }
+    return ans;
+  }
+
+  // returns this case without the last row and column of the board, and without
+  // the clicks on them
+  FuzzCase cropped() {
+    int n = this.size - 1;
+    byte[] smaller = new byte[n * n];
+    for (int y = 0; y < n; y++) {
+      System.arraycopy(this.colors, y * this.size, smaller, y * n, n);
+    }
+    int[] kept = new int[this.clicks.length];
+    int count = 0;
+    for (int i : this.clicks) {
+      if (i % this.size < n && i / this.size < n) {
+        kept[count] = (i / this.size) * n + i % this.size;
+        count = count + 1;
+      }
+    }
+    return new FuzzCase(n, this.palette, smaller, Arrays.copyOf(kept, count));
+  }
+
+  // returns this case as lines of text: the board a row at a time as palette
+  // indexes, then the cells clicked as (x, y)
+  public String toString() {
+    StringBuilder ans = new StringBuilder();
+    ans.append(this.size + "x" + this.size + ", " + this.palette.size() + " colors"
+        + (this.seeded ? ", seed " + this.seed : "") + "\n");
+    for (int y = 0; y < this.size; y++) {
+      for (int x = 0; x < this.size; x++) {
+        ans.append(this.colors[y * this.size + x]);
+      }
+      ans.append("\n");
+    }
+    ans.append("clicks:");
+    for (int i : this.clicks) {
+      ans.append(" (" + (i % this.size) + ", " + (i / this.size) + ")");
+    }
+    return ans.toString();
+  }
+}
+
+// A case an engine played differently from the reference
+class FuzzFailure {
+  FuzzCase fuzz;
+  AFloodEngine engine;
+  // how many clicks in the difference showed
+  int clicks;
+  String diff;
+
+  FuzzFailure(FuzzCase fuzz, AFloodEngine engine, int clicks, String diff) {
+    this.fuzz = fuzz;
+    this.engine = engine;
+    this.clicks = clicks;
+    this.diff = diff;
+  }
+
+  // returns the failure as lines of text
+  public String toString() {
+    return this.engine.name() + " after " + this.clicks + " clicks: " + this.diff + "\n"
+        + this.fuzz;
+  }
+}
+
+// The totals of a run of cases
+class FuzzReport {
+  long cases;
+  ArrayList<FuzzFailure> failures = new ArrayList<FuzzFailure>();
+
+  // EFFECT: counts every case counted by the given report
+  void merge(FuzzReport other) {
+    this.cases = this.cases + other.cases;
+    this.failures.addAll(other.failures);
+  }
+}
+
+// A way of playing a board, which can be started again on any case
+abstract class AFloodEngine {
+  // returns what the engine is called in reports
+  abstract String name();
+
+  // EFFECT: starts playing the given case's board, with no clicks made
+  abstract void start(FuzzCase c);
+
+  // EFFECT: clicks the cell at (x, y) and floods until the move is done
+  abstract void click(int x, int y);
+
+  // returns the color of the cell at (x, y)
+  abstract Color colorAt(int x, int y);
+
+  // checks if the cell at (x, y) is flooded
+  abstract boolean isFlooded(int x, int y);
+
+  // returns how many clicks were counted
+  abstract int clicks();
+
+  // checks if the game is won
+  abstract boolean isWon();
+}
+
+// The game as it was first written, kept as the meaning of every faster engine
+// each tick scans every cell from the bottom right, changing cells in place, so
+// a cell can see what the cells scanned before it in the same tick became
+class ReferenceEngine extends AFloodEngine {
+  FuzzCase fuzz;
+  ArrayList<ArrayList<Cell>> board;
+  boolean flooding;
+  Color clicked;
+  int numClicks;
+
+  String name() {
+    return "reference";
+  }
+
+  void start(FuzzCase c) {
+    this.fuzz = c;
+    this.board = c.cells();
+    this.flooding = false;
+    this.clicked = Color.white;
+    this.numClicks = 0;
+  }
+
+  // clicks the cell by the point of the scene it was drawn at, as the first game
+  // found the cell clicked
+  void click(int x, int y) {
+    Posn pos = this.fuzz.posn(x, y);
+    Color c = Color.white;
+    for (ArrayList<Cell> column : this.board) {
+      for (Cell cell : column) {
+        if (cell.wasClicked(pos, this.fuzz.size)) {
+          c = cell.color;
+        }
+      }
+    }
+    if (c != Color.white) {
+      this.clicked = c;
+      this.flooding = true;
+      this.numClicks = this.numClicks + 1;
+      this.board.get(0).get(0).flooded = true;
+      this.board.get(0).get(0).color = this.clicked;
+    }
+    while (this.flooding) {
+      this.floodNext();
+    }
+  }
+
+  // EFFECT: floods the next cells, as one tick of the first game did
+  void floodNext() {
+    boolean wasChange = false;
+    for (int i = this.fuzz.size - 1; i >= 0; i--) {
+      ArrayList<Cell> column = this.board.get(i);
+      for (int j = this.fuzz.size - 1; j >= 0; j--) {
+        Cell cell = column.get(j);
+        if (cell.flooded && cell.color.equals(this.clicked)) {
+          // already flooded with the color clicked, so nothing changes
+        }
+        else if (cell.flooded && cell.sameColorAndFlooded(this.clicked)) {
+          cell.updateColor(this.clicked);
+          wasChange = true;
+        }
+        else if (cell.sameColorAndFlooded(this.clicked) && cell.color.equals(this.clicked)) {
+          cell.flooded = true;
+          wasChange = true;
+        }
+      }
+    }
+    if (!wasChange) {
+      this.flooding = false;
+    }
+  }
+
+  Color colorAt(int x, int y) {
+    return this.board.get(x).get(y).color;
+  }
+
+  boolean isFlooded(int x, int y) {
+    return this.board.get(x).get(y).flooded;
+  }
+
+  int clicks() {
+    return this.numClicks;
+  }
+
+  boolean isWon() {
+    for (ArrayList<Cell> column : this.board) {
+      for (Cell cell : column) {
+        if (!cell.flooded) {
+          return false;
+        }
+      }
+    }
+    return this.numClicks <= this.fuzz.maxClicks();
+  }
+}
+
+// The game as it is played today: clicks at points of the scene and ticks until
+// the flood on screen is done
+// a seeded case is played on the world's own board for the seed, so the way
+// boards are made is checked too
+class WorldEngine extends AFloodEngine {
+  FuzzCase fuzz;
+  FloodItWorld world;
+
+  String name() {
+    return "world";
+  }
+
+  void start(FuzzCase c) {
+    this.fuzz = c;
+    if (c.seeded) {
+      this.world = new FloodItWorld(c.size, c.palette.size(), c.seed);
+    }
+    else {
+      this.world = new FloodItWorld(c.cells(), c.size, c.palette.size());
+    }
+    // no hints are worked out, so no search is started on each click
+    this.world.hints = new FloodHints(0, 0);
+  }
+
+  void click(int x, int y) {
+    this.world.onMouseClicked(this.fuzz.posn(x, y));
+    while (this.world.flooding) {
+      this.world.onTick();
+    }
+  }
+
+  Color colorAt(int x, int y) {
+    return this.world.game.board().colorAt(this.world.game.board().index(x, y));
+  }
+
+  boolean isFlooded(int x, int y) {
+    return this.world.game.board().isFlooded(this.world.game.board().index(x, y));
+  }
+
+  int clicks() {
+    return this.world.game.movesUsed();
+  }
+
+  boolean isWon() {
+    return this.world.game.isWon();
+  }
+}
+
+// A headless game of the case's board, played on its regions or its bits
+class GameEngine extends AFloodEngine {
+  boolean bits;
+  FloodGame game;
+
+  GameEngine(boolean bits) {
+    this.bits = bits;
+  }
+
+  String name() {
+    return this.bits ? "bits" : "regions";
+  }
+
+  void start(FuzzCase c) {
+    this.game = new FloodGame(new FloodBoard(c.cells()), c.palette, new Random(0));
+    if (this.bits) {
+      this.game.useBits();
+    }
+  }
+
+  void click(int x, int y) {
+    FloodBoard b = this.game.board();
+    this.game.applyMove(b.colors[b.index(x, y)]);
+  }
+
+  Color colorAt(int x, int y) {
+    return this.game.board().colorAt(this.game.board().index(x, y));
+  }
+
+  boolean isFlooded(int x, int y) {
+    return this.game.board().isFlooded(this.game.board().index(x, y));
+  }
+
+  int clicks() {
+    return this.game.movesUsed();
+  }
+
+  boolean isWon() {
+    return this.game.isWon();
+  }
+}
+
+// The case's board flooded a tile at a time, with tiles a few cells wide so that
+// even small boards have floods that cross between tiles
+class TileEngine extends AFloodEngine {
+  FuzzCase fuzz;
+  FloodBoard board;
+  int tile;
+  int numClicks;
+
+  String name() {
+    return "tiles";
+  }
+
+  void start(FuzzCase c) {
+    this.fuzz = c;
+    this.board = new FloodBoard(c.cells());
+    this.tile = 1 + c.size % 4;
+    this.numClicks = 0;
+  }
+
+  void click(int x, int y) {
+    this.numClicks = this.numClicks + 1;
+    new TileFlood(this.board, this.board.colors[this.board.index(x, y)], this.tile)
+        .run(ForkJoinPool.commonPool());
+  }
+
+  Color colorAt(int x, int y) {
+    return this.board.colorAt(this.board.index(x, y));
+  }
+
+  boolean isFlooded(int x, int y) {
+    return this.board.isFlooded(this.board.index(x, y));
+  }
+
+  int clicks() {
+    return this.numClicks;
+  }
+
+  boolean isWon() {
+    return this.board.allFlooded() && this.numClicks <= this.fuzz.maxClicks();
+  }
+}
+
+class ExamplesFloodFuzz {
+
+  // An engine that loses track of the bottom right cell of boards of three or
+  // more cells a side, to be caught and shrunk
+  class BrokenEngine extends GameEngine {
+    BrokenEngine() {
+      super(false);
+    }
+
+    boolean isFlooded(int x, int y) {
+      int n = this.game.size;
+      return super.isFlooded(x, y) && (n < 3 || x != n - 1 || y != n - 1);
+    }
+  }
+
+  void testCampaign(Tester t) {
+    FloodFuzz f = new FloodFuzz();
+    f.chunkSize = 50;
+    FuzzReport r = f.run(600, 1000, 12, 4);
+    t.checkExpect(r.cases, 600L);
+    t.checkExpect(r.failures.size(), 0);
+  }
+
+  void testSeededBoard(Tester t) {
+    FuzzCase c = new FuzzCase(42, 20);
+    FloodItWorld w = new FloodItWorld(c.size, c.palette.size(), c.seed);
+    t.checkExpect(w.game.board().colors, c.colors);
+    t.checkExpect(w.game.allColors, c.palette);
+    t.checkExpect(new FuzzCase(42, 20).clicks, c.clicks);
+    // the reference starts flooded as the world does
+    ReferenceEngine ref = new ReferenceEngine();
+    ref.start(c);
+    t.checkExpect(ref.isFlooded(0, 0), true);
+    t.checkExpect(new FloodFuzz().diff(c, ref, this.started(new WorldEngine(), c)), null);
+  }
+
+  // returns the given engine started on the given case
+  AFloodEngine started(AFloodEngine e, FuzzCase c) {
+    e.start(c);
+    return e;
+  }
+
+  void testReference(Tester t) {
+    // red green
+    // green blue, clicked on green then blue
+    ArrayList<Color> palette = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+        Color.blue));
+    FuzzCase c = new FuzzCase(2, palette, new byte[] { 0, 1, 1, 2 }, new int[] { 1, 3 });
+    ReferenceEngine ref = new ReferenceEngine();
+    ref.start(c);
+    t.checkExpect(ref.isFlooded(1, 0), false);
+    ref.click(1, 0);
+    t.checkExpect(ref.isFlooded(1, 0), true);
+    t.checkExpect(ref.isFlooded(0, 1), true);
+    t.checkExpect(ref.colorAt(0, 0), Color.green);
+    t.checkExpect(ref.isWon(), false);
+    ref.click(1, 1);
+    t.checkExpect(ref.clicks(), 2);
+    t.checkExpect(ref.colorAt(1, 0), Color.blue);
+    t.checkExpect(ref.isWon(), true);
+    t.checkExpect(new FloodFuzz().check(c, new FloodFuzz().engines()), null);
+  }
+
+  void testShrink(Tester t) {
+    FloodFuzz f = new FloodFuzz();
+    FuzzFailure found = null;
+    long seed = 0;
+    while (found == null) {
+      FuzzCase c = new FuzzCase(seed, 9);
+      found = f.check(c, new ArrayList<AFloodEngine>(Arrays.asList(new BrokenEngine())));
+      seed = seed + 1;
+    }
+    FuzzFailure shrunk = f.shrink(found);
+    t.checkExpect(shrunk.engine, found.engine);
+    t.checkExpect(shrunk.fuzz.size, 3);
+    t.checkExpect(shrunk.fuzz.clicks.length, 0);
+    t.checkExpect(shrunk.fuzz.colors, new byte[9]);
+    t.checkExpect(shrunk.diff, "cell (2, 2) is not flooded");
+    t.checkExpect(shrunk.fuzz.toString(), "3x3, " + found.fuzz.palette.size()
+        + " colors\n000\n000\n000\nclicks:");
+  }
+
+  void testSmaller(Tester t) {
+    ArrayList<Color> palette = new ArrayList<Color>(Arrays.asList(Color.red, Color.green));
+    FuzzCase c = new FuzzCase(2, palette, new byte[] { 0, 1, 1, 1 }, new int[] { 3, 1 });
+    ArrayList<FuzzCase> s = c.smaller();
+    // no clicks, one click, each click left out, the 1x1 board, green made red,
+    // then each green cell made red
+    t.checkExpect(s.size(), 2 + 2 + 1 + 1 + 3);
+    t.checkExpect(s.get(0).clicks, new int[0]);
+    t.checkExpect(s.get(3).clicks, new int[] { 3 });
+    t.checkExpect(s.get(4).size, 1);
+    t.checkExpect(s.get(4).clicks, new int[0]);
+    t.checkExpect(s.get(5).colors, new byte[4]);
+    t.checkExpect(s.get(6).colors, new byte[] { 0, 0, 1, 1 });
+  }
+}
@@ -0,0 +1,917 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import tester.Tester;
+import java.awt.Color;
+
+// A game of Flood-It with no display
+// a move can flood the board all at once with applyMove, or one wave at a time
+// with startMove and step, which is how FloodItWorld animates it
+// applyMove floods the graph of regions of the board and leaves the cells of
+// the board to be brought up to date when they are next looked at
+// after useBits, moves are played on the bits of the board instead, which floods
+// 64 cells at a time and suits playing many games on large boards
+// after useTiles, each move floods the cells of the board all at once, a tile
+// of the board per task, which suits boards too large for regions or one core
+class FloodGame {
+  // the colors new boards of this game are made of
+  ArrayList<Color> allColors;
+  Random rand;
+  // the pool that fills the rows of new boards, or null to draw new boards from
+  // rand one cell at a time the way seeded games always have
+  ForkJoinPool pool;
+  int size;
+  FloodBoard board;
+  // the regions of the board, or null if the board's flood cannot be followed
+  // by regions
+  RegionGraph regions;
+  // the bits of the board, if moves are played on them instead of the regions,
+  // or null
+  BitBoard bits;
+  // the pool each move is flooded on a tile at a time, or null
+  ForkJoinPool tiles;
+  // whether moves were made on the regions since the cells of the board were
+  // last brought up to date
+  boolean stale;
+  // the colors and flooded cells of the board before any move was made on it,
+  // which are never changed
+  byte[] startColors;
+  long[] startFlooded;
+  // the palette color of every move made, where moves is how many there are
+  byte[] log;
+  int moves;
+  // what each move that can be taken back changed, newest last: what the regions
+  // returned for it, or for a move made on the cells, bits or tiles, -1 minus the
+  // color the flood had followed by the cells the move flooded, or nothing if the
+  // move has to be taken back by playing the game again
+  // only the last historyLimit moves can be taken back
+  ArrayDeque<int[]> undos;
+  // the palette colors of the moves taken back that can be made again, newest last
+  ArrayDeque<Integer> redos;
+  int historyLimit = 1000;
+  int maxClicks;
+  // how long in milliseconds the solver may take to set maxClicks for each new
+  // board, or 0 to use the usual formula
+  long parMillis;
+  // the palette color the flood is spreading
+  int color;
+  // how many cells the last move made with tiles flooded that were not flooded
+  int tileGain;
+  // whether the flood is joined to the top left cell and of one color, which
+  // every move keeps, so a move on the cells, bits or tiles can be taken back
+  // from the cells it flooded
+  boolean joined;
+  // the color the flood had before the move on the cells or bits whose steps are
+  // going, or -1 if no such move waits for what it changed to be kept
+  int stepping = -1;
+
+  // makes a random board out of numOfColors colors picked at random
+  // assumes numOfColors is below 8
+  FloodGame(int size, int numOfColors, Random rand) {
+    this(size, new Utils().randColorSet(rand, new Utils().gameColors(), numOfColors), rand);
+  }
+
+  // makes a random board out of the given colors
+  FloodGame(int size, ArrayList<Color> allColors, Random rand) {
+    this(new FloodBoard(size, rand, allColors), allColors, rand);
+  }
+
+  // makes a random board out of the given colors with its rows filled by the
+  // given pool, taking the seed of each new board from rand
+  FloodGame(int size, ArrayList<Color> allColors, Random rand, ForkJoinPool pool) {
+    this(new FloodBoard(size, rand.nextLong(), allColors, pool), allColors, rand);
+    this.pool = pool;
+  }
+
+  // plays on the given board, where new boards are made of the given colors
+  FloodGame(FloodBoard board, ArrayList<Color> allColors, Random rand) {
+    this.allColors = allColors;
+    this.rand = rand;
+    this.size = board.size;
+    this.moves = 0;
+    this.maxClicks = this.usualMaxClicks();
+    this.useBoard(board);
+  }
+
+  // returns the most moves allowed on a board of this game's size and colors
+  // when no solver sets them
+  int usualMaxClicks() {
+    return ((25 * (2 * this.size) * this.allColors.size()) / 168) + 1;
+  }
+
+  // EFFECT: plays the rest of the game on the given board
+  void useBoard(FloodBoard b) {
+    this.board = b;
+    this.startColors = b.colors.clone();
+    this.startFlooded = b.flooded.clone();
+    this.log = new byte[16];
+    this.undos = new ArrayDeque<int[]>();
+    this.redos = new ArrayDeque<Integer>();
+    this.color = b.colors[0];
+    this.stale = false;
+    this.joined = b.floodJoined();
+    this.stepping = -1;
+    if (this.bits != null) {
+      this.bits = new BitBoard(b);
+      this.regions = null;
+      return;
+    }
+    if (this.tiles != null) {
+      this.regions = null;
+      return;
+    }
+    this.regions = new RegionGraph(b);
+    if (!this.regions.coversFlood(b)) {
+      this.regions = null;
+    }
+  }
+
+  // EFFECT: plays the rest of the game, and every new board, on the bits of the
+  // board instead of its regions
+  // the moves made so far can still be taken back, by playing the game again
+  void useBits() {
+    this.bits = new BitBoard(this.board());
+    this.regions = null;
+    this.tiles = null;
+    this.replayUndos();
+  }
+
+  // EFFECT: floods each move of the rest of the game, and of every new board, all
+  // at once on the given pool, with the cells of the board split into tiles
+  // the moves made so far can still be taken back, by playing the game again
+  void useTiles(ForkJoinPool pool) {
+    this.board();
+    this.tiles = pool;
+    this.regions = null;
+    this.bits = null;
+    this.replayUndos();
+  }
+
+  // EFFECT: makes every move that can be taken back be taken back by playing the
+  // game again, for when the regions they changed are gone
+  void replayUndos() {
+    int n = this.undos.size();
+    this.undos.clear();
+    for (int k = 0; k < n; k++) {
+      this.undos.addLast(new int[0]);
+    }
+  }
+
+  // returns the board with every move made so far
+  // EFFECT: brings the cells of the board up to date with the regions
+  FloodBoard board() {
+    if (this.stale && this.bits != null) {
+      this.bits.paintBoard(this.board);
+      this.stale = false;
+    }
+    if (this.stale) {
+      this.regions.paint(this.board);
+      this.stale = false;
+    }
+    return this.board;
+  }
+
+  // returns how many moves have been made
+  int movesUsed() {
+    return this.moves;
+  }
+
+  // checks if every cell is flooded within the allowed number of moves
+  boolean isWon() {
+    return this.allFlooded() && this.moves <= this.maxClicks;
+  }
+
+  // checks if every cell is flooded
+  boolean allFlooded() {
+    if (this.bits != null) {
+      return this.bits.allFlooded();
+    }
+    if (this.regions == null) {
+      return this.board.allFlooded();
+    }
+    return this.regions.allFlooded();
+  }
+
+  // checks if more moves were made than allowed
+  boolean isLost() {
+    return this.moves > this.maxClicks;
+  }
+
+  // EFFECT: floods the board with the palette color c all at once
+  void applyMove(int c) {
+    this.redos.clear();
+    this.play(c);
+  }
+
+  // EFFECT: floods the board with the palette color c all at once, keeping the
+  // moves that were taken back
+  void play(int c) {
+    if (this.bits != null) {
+      this.record(c);
+      int old = this.color;
+      this.color = c;
+      this.bits.move(c);
+      this.remember(this.cellDelta(old, this.bits.added, this.bits.addedSize));
+      this.stale = true;
+    }
+    else if (this.regions == null) {
+      this.startMoveHelp(c);
+      while (this.step()) {
+        // each step floods the next wave of the move
+      }
+    }
+    else {
+      this.record(c);
+      this.color = c;
+      this.remember(this.regions.move(c));
+      this.stale = true;
+    }
+  }
+
+  // EFFECT: counts a move with the palette color c and changes the top left cell
+  // to it, so that the flood can spread from there one step at a time
+  // the regions are flooded at once, and the cells catch up as the steps go
+  void startMove(int c) {
+    this.redos.clear();
+    this.startMoveHelp(c);
+  }
+
+  // EFFECT: starts a move with the palette color c, keeping the moves that were
+  // taken back
+  void startMoveHelp(int c) {
+    this.board();
+    if (this.tiles != null) {
+      this.record(c);
+      int old = this.color;
+      this.color = c;
+      int[] cells = this.board.floodTiles(c, this.tiles);
+      this.remember(this.cellDelta(old, cells, cells.length));
+      this.tileGain = cells.length;
+      return;
+    }
+    if (this.regions != null) {
+      this.remember(this.regions.move(c));
+    }
+    else {
+      // what the move changes is known once its last step is done
+      this.remember(new int[0]);
+      this.stepping = this.joined ? this.color : -1;
+    }
+    this.record(c);
+    this.color = c;
+    this.board.flood(0);
+    this.board.updateColor(0, c);
+    this.board.startWave();
+    if (this.bits != null) {
+      this.bits.startMove(c);
+    }
+  }
+
+  // EFFECT: adds a move with the palette color c to the log
+  void record(int c) {
+    if (this.moves >= this.log.length) {
+      this.log = Arrays.copyOf(this.log, (this.moves + 1) * 2);
+    }
+    this.log[this.moves] = (byte) c;
+    this.moves = this.moves + 1;
+  }
+
+  // returns what a move that changed the flood from the palette color old and
+  // flooded the first n of the given cells changed, or nothing if the flood is
+  // not joined, so the move has to be taken back by playing the game again
+  int[] cellDelta(int old, int[] cells, int n) {
+    if (!this.joined) {
+      return new int[0];
+    }
+    int[] ans = new int[n + 1];
+    ans[0] = -1 - old;
+    System.arraycopy(cells, 0, ans, 1, n);
+    return ans;
+  }
+
+  // EFFECT: keeps what a move changed so it can be taken back, forgetting the
+  // oldest move that can be taken back once there are more than historyLimit
+  void remember(int[] delta) {
+    if (this.undos.size() == this.historyLimit) {
+      this.undos.removeFirst();
+    }
+    this.undos.addLast(delta);
+  }
+
+  // EFFECT: takes back the last move, if it can be taken back
+  // returns whether it was
+  // a move is taken back by undoing what it changed in the regions or bits, and
+  // unless they are to catch up later, in the cells of the board, which costs as
+  // much as the regions or cells it flooded and the flood it changed the color of
+  boolean undo() {
+    if (this.undos.isEmpty()) {
+      return false;
+    }
+    this.stepping = -1;
+    int[] delta = this.undos.removeLast();
+    int c = this.log[this.moves - 1];
+    if (delta.length == 0) {
+      this.replay(this.moves - 1);
+    }
+    else if (delta[0] >= 0) {
+      this.regions.undo(delta);
+      if (!this.stale) {
+        this.regions.unpaintMove(this.board, delta);
+      }
+      this.moves = this.moves - 1;
+      this.color = this.regions.floodColor;
+    }
+    else {
+      int old = -1 - delta[0];
+      if (this.bits != null) {
+        this.bits.undoMove(delta, old);
+      }
+      if (!this.stale) {
+        for (int k = 1; k < delta.length; k++) {
+          this.board.unflood(delta[k]);
+        }
+        this.board.recolorFlood(old);
+      }
+      this.moves = this.moves - 1;
+      this.color = old;
+    }
+    this.redos.addLast(c);
+    return true;
+  }
+
+  // EFFECT: makes the last move taken back again, if there is one
+  // returns whether there was
+  // when the cells of the board were up to date, they are kept so by changing
+  // only the cells the move changes
+  boolean redo() {
+    if (this.redos.isEmpty()) {
+      return false;
+    }
+    boolean fresh = !this.stale;
+    this.play(this.redos.removeLast());
+    if (fresh) {
+      this.catchUp();
+    }
+    return true;
+  }
+
+  // EFFECT: brings the cells of the board up to date with the last move, made on
+  // the regions or bits, from what the move changed, if it kept what it changed
+  void catchUp() {
+    int[] delta = this.undos.peekLast();
+    if (!this.stale || delta == null || delta.length == 0) {
+      return;
+    }
+    if (delta[0] >= 0) {
+      this.regions.paintMove(this.board, delta);
+    }
+    else {
+      for (int k = 1; k < delta.length; k++) {
+        this.board.flood(delta[k]);
+      }
+      this.board.recolorFlood(this.color);
+    }
+    this.stale = false;
+  }
+
+  // EFFECT: goes back to the starting board and makes the first count moves of the
+  // log again, for boards whose flood cannot be followed by regions or that are
+  // played on bits
+  void replay(int count) {
+    FloodBoard b = new FloodBoard(this.size, this.board.palette, this.startColors,
+        this.startFlooded);
+    this.board = b;
+    this.color = b.colors[0];
+    this.moves = 0;
+    this.stale = false;
+    this.stepping = -1;
+    if (this.bits != null) {
+      this.bits = new BitBoard(b);
+    }
+    // the moves are played again with the ones before them already remembered
+    ArrayDeque<int[]> kept = this.undos;
+    this.undos = new ArrayDeque<int[]>();
+    for (int k = 0; k < count; k++) {
+      if (this.bits != null) {
+        this.play(this.log[k]);
+      }
+      else {
+        this.startMoveHelp(this.log[k]);
+        while (this.step()) {
+          // each step floods the next wave of the move
+        }
+      }
+    }
+    this.undos = kept;
+  }
+
+  // returns the palette colors of the moves made so far, in order
+  byte[] movesMade() {
+    return Arrays.copyOf(this.log, this.moves);
+  }
+
+  // EFFECT: spreads the flood of the current move one step
+  // returns whether the flood reached any cell
+  boolean step() {
+    if (this.tiles != null) {
+      // the move was flooded all at once when it started
+      return false;
+    }
+    boolean spread;
+    if (this.bits != null) {
+      spread = this.bits.step(this.color);
+      this.bits.paintWave(this.board, this.color);
+    }
+    else {
+      spread = this.board.floodStep(this.color);
+    }
+    if (!spread && this.stepping >= 0) {
+      // the move is done, so what it flooded is known
+      this.undos.removeLast();
+      if (this.bits != null) {
+        this.undos.addLast(this.cellDelta(this.stepping, this.bits.added, this.bits.addedSize));
+      }
+      else {
+        this.undos.addLast(this.cellDelta(this.stepping, this.board.added, this.board.addedSize));
+      }
+      this.stepping = -1;
+    }
+    return spread;
+  }
+
+  // returns how many more cells a move of the palette color c would flood, or -1
+  // with tiles, where tileGain says once the move is made
+  // the regions know at once, and the bits or, with neither, the cells of the
+  // board are looked at from the top left cell
+  // a tiles board is far too big to look at on one thread for every click
+  int gain(int c) {
+    if (this.tiles != null) {
+      return -1;
+    }
+    if (this.bits != null) {
+      return this.bits.gain(c);
+    }
+    if (this.regions != null) {
+      return this.regions.frontierCells[c];
+    }
+    return this.board().gain(c);
+  }
+
+  // returns how many cells the last step looked at, which is none with tiles
+  // since the whole move is flooded when it starts
+  int examined() {
+    if (this.tiles != null) {
+      return 0;
+    }
+    return this.bits != null ? this.bits.examined : this.board.examined;
+  }
+
+  // returns how many cells the last step flooded
+  int waveSize() {
+    return this.bits != null ? this.bits.waveSize : this.board.waveSize;
+  }
+
+  // EFFECT: starts over on a new random board
+  void reset() {
+    this.moves = 0;
+    this.useBoard(this.newBoard());
+    if (this.parMillis > 0) {
+      this.usePar(this.parMillis);
+    }
+  }
+
+  // returns a new random board of this game's size and colors
+  FloodBoard newBoard() {
+    if (this.pool == null) {
+      return new FloodBoard(this.size, this.rand, this.allColors);
+    }
+    return new FloodBoard(this.size, this.rand.nextLong(), this.allColors, this.pool);
+  }
+
+  // EFFECT: allows as many moves as the solver needs to flood this board and
+  // every new board, giving it the given number of milliseconds per board
+  void usePar(long millis) {
+    this.parMillis = millis;
+    this.maxClicks = this.moves + new FloodSolver().solve(this, millis).length;
+  }
+
+  // returns a game in the same state as this one that can be played without
+  // changing this one
+  FloodGame copy() {
+    FloodGame ans = new FloodGame(this.allColors, this.rand);
+    ans.pool = this.pool;
+    ans.size = this.size;
+    ans.board = new FloodBoard(this.board);
+    if (this.regions != null) {
+      ans.regions = new RegionGraph(this.regions);
+    }
+    if (this.bits != null) {
+      ans.bits = new BitBoard(this.bits);
+    }
+    ans.tiles = this.tiles;
+    ans.stale = this.stale;
+    ans.startColors = this.startColors;
+    ans.startFlooded = this.startFlooded;
+    ans.log = this.log.clone();
+    ans.undos = new ArrayDeque<int[]>();
+    ans.redos = new ArrayDeque<Integer>();
+    ans.historyLimit = this.historyLimit;
+    ans.moves = this.moves;
+    ans.maxClicks = this.maxClicks;
+    ans.parMillis = this.parMillis;
+    ans.color = this.color;
+    ans.joined = this.joined;
+    return ans;
+  }
+
+  // makes a game with no board yet, for copy to fill in
+  FloodGame(ArrayList<Color> allColors, Random rand) {
+    this.allColors = allColors;
+    this.rand = rand;
+  }
+}
+
+class ExamplesFloodGame {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  // a game on the 3x3 board
+  // red green blue
+  // red red blue
+  // green red red
+  FloodGame game3() {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    b.floodStart();
+    return new FloodGame(b, this.colors, new Random(5));
+  }
+
+  void testApplyMove(Tester t) {
+    FloodGame g = this.game3();
+    t.checkExpect(g.maxClicks, 3);
+    t.checkExpect(g.isWon(), false);
+    g.applyMove(2);
+    t.checkExpect(g.movesUsed(), 1);
+    t.checkExpect(g.board().floodedCount, 7);
+    t.checkExpect(g.board().colorAt(4), Color.blue);
+    t.checkExpect(g.isWon(), false);
+    g.applyMove(1);
+    t.checkExpect(g.isWon(), true);
+    t.checkExpect(g.isLost(), false);
+    g.applyMove(0);
+    g.applyMove(2);
+    t.checkExpect(g.isWon(), false);
+    t.checkExpect(g.isLost(), true);
+    t.checkExpect(g.movesMade(), new byte[] { 2, 1, 0, 2 });
+    t.checkExpect(g.startColors, this.game3().board.colors);
+  }
+
+  void testSteps(Tester t) {
+    FloodGame g = this.game3();
+    g.startMove(1);
+    t.checkExpect(g.board().colorAt(0), Color.green);
+    t.checkExpect(g.board().colorAt(3), Color.red);
+    t.checkExpect(g.step(), true);
+    t.checkExpect(g.board().colorAt(3), Color.green);
+    t.checkExpect(g.board().isFlooded(1), true);
+    while (g.step()) {
+      t.checkExpect(g.movesUsed(), 1);
+    }
+    t.checkExpect(g.board().isFlooded(6), true);
+    t.checkExpect(g.board().colorAt(8), Color.green);
+  }
+
+  void testCopy(Tester t) {
+    FloodGame g = this.game3();
+    g.applyMove(2);
+    FloodGame c = g.copy();
+    t.checkExpect(c.movesUsed(), 1);
+    c.applyMove(1);
+    t.checkExpect(c.isWon(), true);
+    t.checkExpect(g.isWon(), false);
+    t.checkExpect(g.board().colorAt(0), Color.blue);
+    t.checkExpect(g.movesUsed(), 1);
+  }
+
+  void testRegionsAndCells(Tester t) {
+    FloodGame g = this.game3();
+    t.checkExpect(g.regions == null, false);
+    g.applyMove(1);
+    t.checkExpect(g.stale, true);
+    t.checkExpect(g.board.colorAt(0), Color.red);
+    t.checkExpect(g.board().colorAt(0), Color.green);
+    t.checkExpect(g.stale, false);
+    t.checkExpect(g.board().floodedCount, 7);
+
+    // the same moves flooded one step at a time leave the same board
+    FloodGame h = this.game3();
+    h.startMove(1);
+    while (h.step()) {
+      t.checkExpect(h.regions.floodedCells, 7);
+    }
+    t.checkExpect(h.board().colors, g.board().colors);
+    t.checkExpect(h.board().flooded, g.board().flooded);
+  }
+
+  void testNoRegions(Tester t) {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    FloodGame g = new FloodGame(b, this.colors, new Random(5));
+    t.checkExpect(g.regions, null);
+    g.applyMove(0);
+    t.checkExpect(g.board().floodedCount, 5);
+    g.applyMove(1);
+    g.applyMove(2);
+    t.checkExpect(g.isWon(), true);
+  }
+
+  void testSeeded(Tester t) {
+    FloodGame g = new FloodGame(5, 3, new Random(23546798));
+    FloodItWorld w = new FloodItWorld(5, 3, 23546798);
+    t.checkExpect(g.board().colors, w.game.board().colors);
+    t.checkExpect(g.allColors, w.game.allColors);
+    g.reset();
+    t.checkExpect(g.movesUsed(), 0);
+    t.checkExpect(g.board().floodedCount >= 1, true);
+  }
+
+  void testParallelBoards(Tester t) {
+    FloodGame g = new FloodGame(40, this.colors, new Random(9), new ForkJoinPool(2));
+    FloodGame h = new FloodGame(40, this.colors, new Random(9), ForkJoinPool.commonPool());
+    t.checkExpect(g.board().colors, h.board().colors);
+    t.checkExpect(g.regions == null, false);
+    g.reset();
+    h.reset();
+    t.checkExpect(g.board().colors, h.board().colors);
+    t.checkExpect(g.copy().pool, g.pool);
+    t.checkExpect(g.newBoard().colors.length, 1600);
+  }
+
+  void testUndoRedo(Tester t) {
+    FloodGame g = this.game3();
+    t.checkExpect(g.undo(), false);
+    t.checkExpect(g.redo(), false);
+    g.applyMove(2);
+    byte[] afterFirst = g.board().colors.clone();
+    g.applyMove(1);
+    t.checkExpect(g.isWon(), true);
+    t.checkExpect(g.undo(), true);
+    t.checkExpect(g.movesUsed(), 1);
+    t.checkExpect(g.movesMade(), new byte[] { 2 });
+    t.checkExpect(g.isWon(), false);
+    t.checkExpect(g.board().colors, afterFirst);
+    t.checkExpect(g.board().floodedCount, 7);
+    t.checkExpect(g.redo(), true);
+    t.checkExpect(g.isWon(), true);
+    t.checkExpect(g.redo(), false);
+    g.undo();
+    g.undo();
+    t.checkExpect(g.movesUsed(), 0);
+    t.checkExpect(g.board().colors, this.game3().board().colors);
+    t.checkExpect(g.board().flooded, this.game3().board().flooded);
+    t.checkExpect(g.color, 0);
+    // a new move forgets the moves that were taken back
+    g.applyMove(1);
+    t.checkExpect(g.redo(), false);
+    t.checkExpect(g.board().floodedCount, 7);
+  }
+
+  void testUndoSteps(Tester t) {
+    FloodGame g = this.game3();
+    g.startMove(2);
+    while (g.step()) {
+      t.checkExpect(g.movesUsed(), 1);
+    }
+    t.checkExpect(g.undo(), true);
+    t.checkExpect(g.board().colors, this.game3().board().colors);
+    t.checkExpect(g.redo(), true);
+    t.checkExpect(g.board().floodedCount, 7);
+  }
+
+  void testUndoNoRegions(Tester t) {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    FloodGame g = new FloodGame(b, this.colors, new Random(5));
+    g.applyMove(0);
+    g.applyMove(1);
+    byte[] afterTwo = g.board().colors.clone();
+    g.applyMove(2);
+    t.checkExpect(g.isWon(), true);
+    t.checkExpect(g.undo(), true);
+    t.checkExpect(g.board().colors, afterTwo);
+    t.checkExpect(g.movesUsed(), 2);
+    t.checkExpect(g.undos.size(), 2);
+    t.checkExpect(g.redo(), true);
+    t.checkExpect(g.isWon(), true);
+  }
+
+  // checks that taking back every move of the given game and making them again
+  // goes through the same boards, changing only the cells each move changed
+  // rather than making a new board and playing the game again
+  void checkUndoInPlace(Tester t, FloodGame g, boolean stepped) {
+    Random rand = new Random(9);
+    ArrayList<byte[]> colors = new ArrayList<byte[]>();
+    ArrayList<long[]> flooded = new ArrayList<long[]>();
+    FloodBoard b = g.board();
+    for (int m = 0; m < 12; m++) {
+      colors.add(b.colors.clone());
+      flooded.add(b.flooded.clone());
+      if (stepped) {
+        g.startMove(rand.nextInt(4));
+        while (g.step()) {
+          // each step floods the next wave of the move
+        }
+      }
+      else {
+        g.applyMove(rand.nextInt(4));
+        g.board();
+      }
+    }
+    byte[] lastColors = b.colors.clone();
+    for (int m = 11; m >= 0; m--) {
+      t.checkExpect(g.undo(), true);
+      t.checkExpect(g.stale, false);
+      t.checkExpect(g.board() == b, true);
+      t.checkExpect(b.colors, colors.get(m));
+      t.checkExpect(b.flooded, flooded.get(m));
+      int count = 0;
+      for (long w : b.flooded) {
+        count = count + Long.bitCount(w);
+      }
+      t.checkExpect(b.floodedCount, count);
+    }
+    while (g.redo()) {
+      g.board();
+    }
+    t.checkExpect(g.board() == b, true);
+    t.checkExpect(b.colors, lastColors);
+    t.checkExpect(g.movesUsed(), 12);
+  }
+
+  void testUndoInPlace(Tester t) {
+    this.checkUndoInPlace(t, new FloodGame(20, 4, new Random(6)), false);
+    this.checkUndoInPlace(t, new FloodGame(20, 4, new Random(6)), true);
+    FloodGame bits = new FloodGame(20, 4, new Random(6));
+    bits.useBits();
+    this.checkUndoInPlace(t, bits, false);
+    bits = new FloodGame(20, 4, new Random(6));
+    bits.useBits();
+    this.checkUndoInPlace(t, bits, true);
+    ForkJoinPool pool = new ForkJoinPool(2);
+    FloodGame tiled = new FloodGame(20, 4, new Random(6));
+    tiled.useTiles(pool);
+    this.checkUndoInPlace(t, tiled, true);
+    pool.shutdown();
+  }
+
+  void testHistoryLimit(Tester t) {
+    FloodGame g = new FloodGame(12, 4, new Random(3));
+    g.historyLimit = 2;
+    g.applyMove(1);
+    g.applyMove(2);
+    g.applyMove(3);
+    t.checkExpect(g.undo(), true);
+    t.checkExpect(g.undo(), true);
+    t.checkExpect(g.undo(), false);
+    t.checkExpect(g.movesUsed(), 1);
+    g.reset();
+    t.checkExpect(g.undo(), false);
+  }
+
+  void testBits(Tester t) {
+    FloodGame regions = new FloodGame(30, 5, new Random(8));
+    FloodGame bits = new FloodGame(30, 5, new Random(8));
+    bits.useBits();
+    t.checkExpect(bits.regions, null);
+    AMoveStrategy greedy = new GreedyStrategy();
+    while (!regions.allFlooded()) {
+      t.checkExpect(greedy.usefulMoves(bits), greedy.usefulMoves(regions));
+      int c = greedy.chooseMove(regions, null);
+      t.checkExpect(greedy.chooseMove(bits, null), c);
+      regions.applyMove(c);
+      bits.applyMove(c);
+    }
+    t.checkExpect(bits.allFlooded(), true);
+    t.checkExpect(bits.board().colors, regions.board().colors);
+    t.checkExpect(bits.board().flooded, regions.board().flooded);
+    t.checkExpect(bits.movesMade(), regions.movesMade());
+    // moves are taken back by playing the game again
+    bits.undo();
+    regions.undo();
+    t.checkExpect(bits.allFlooded(), false);
+    t.checkExpect(bits.board().colors, regions.board().colors);
+    bits.redo();
+    t.checkExpect(bits.allFlooded(), true);
+    bits.reset();
+    t.checkExpect(bits.regions, null);
+    t.checkExpect(bits.bits.floodedCount, bits.board().floodedCount);
+  }
+
+  void testBitsSteps(Tester t) {
+    FloodGame regions = new FloodGame(20, 4, new Random(3));
+    FloodGame bits = new FloodGame(20, 4, new Random(3));
+    regions.applyMove(1);
+    bits.applyMove(1);
+    bits.useBits();
+    FloodGame copy = bits.copy();
+    for (int c = 0; c < 4; c++) {
+      regions.startMove(c);
+      bits.startMove(c);
+      boolean same = true;
+      boolean more = true;
+      while (more) {
+        more = regions.step();
+        same = same && bits.step() == more && bits.waveSize() == regions.waveSize();
+        same = same && Arrays.equals(bits.board.colors, regions.board.colors);
+      }
+      t.checkExpect(same, true);
+    }
+    t.checkExpect(bits.board().flooded, regions.board().flooded);
+    t.checkExpect(copy.movesUsed(), 1);
+    t.checkExpect(copy.bits.floodedCount < bits.bits.floodedCount, true);
+    // the move made before useBits can still be taken back
+    bits.undo();
+    bits.undo();
+    bits.undo();
+    bits.undo();
+    t.checkExpect(bits.undo(), true);
+    t.checkExpect(bits.movesUsed(), 0);
+    t.checkExpect(bits.board().colors, new FloodGame(20, 4, new Random(3)).board().colors);
+  }
+
+  void testGain(Tester t) {
+    FloodGame g = this.game3();
+    t.checkExpect(g.gain(0), 0);
+    t.checkExpect(g.gain(1), 2);
+    t.checkExpect(g.gain(2), 2);
+    g.useBits();
+    t.checkExpect(g.gain(1), 2);
+    t.checkExpect(g.gain(0), 0);
+    // with a flooded cell the regions do not cover, the cells of the board are
+    // looked at, passing through the stray flooded cell
+    FloodBoard b = this.game3().board();
+    b.flood(2);
+    FloodGame stray = new FloodGame(b, this.colors, new Random(5));
+    t.checkExpect(stray.regions, null);
+    t.checkExpect(stray.gain(1), 2);
+    t.checkExpect(stray.gain(2), 1);
+    t.checkExpect(stray.gain(0), 0);
+    FloodGame tiled = this.game3();
+    tiled.useTiles(ForkJoinPool.commonPool());
+    // with tiles the gain is known once the move is made
+    t.checkExpect(tiled.gain(1), -1);
+    tiled.startMove(1);
+    t.checkExpect(tiled.tileGain, 2);
+    tiled.startMove(1);
+    t.checkExpect(tiled.tileGain, 0);
+    // looking at the cells again uses the same scratch space, and the next move
+    // floods as it would have
+    int[] scratch = stray.board.next;
+    t.checkExpect(stray.gain(1), 2);
+    t.checkExpect(stray.board.next == scratch, true);
+    FloodGame plain = new FloodGame(new FloodBoard(b), this.colors, new Random(5));
+    stray.applyMove(2);
+    plain.applyMove(2);
+    t.checkExpect(stray.board().flooded, plain.board().flooded);
+  }
+
+  void testTiles(Tester t) {
+    ForkJoinPool pool = new ForkJoinPool(3);
+    FloodGame one = new FloodGame(200, 6, new Random(21));
+    FloodGame tiled = new FloodGame(200, 6, new Random(21));
+    one.applyMove(2);
+    tiled.applyMove(2);
+    tiled.useTiles(pool);
+    t.checkExpect(tiled.regions, null);
+    Random rand = new Random(4);
+    for (int m = 0; m < 40; m++) {
+      int c = rand.nextInt(6);
+      one.applyMove(c);
+      if (m % 2 == 0) {
+        tiled.applyMove(c);
+      }
+      else {
+        // a move started in the display is flooded all at once
+        tiled.startMove(c);
+        t.checkExpect(tiled.step(), false);
+      }
+    }
+    t.checkExpect(tiled.board().colors, one.board().colors);
+    t.checkExpect(tiled.board().flooded, one.board().flooded);
+    t.checkExpect(tiled.allFlooded(), one.allFlooded());
+    t.checkExpect(tiled.movesUsed(), 41);
+    tiled.undo();
+    one.undo();
+    t.checkExpect(tiled.board().colors, one.board().colors);
+    FloodGame copy = tiled.copy();
+    copy.applyMove(0);
+    t.checkExpect(tiled.movesUsed(), 40);
+    tiled.reset();
+    t.checkExpect(tiled.regions, null);
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,298 @@
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import tester.Tester;
+import javalib.worldimages.Posn;
+
+// Works out the best next color of a game on a thread of its own while the
+// player thinks, so a hint is usually ready before it is asked for
+// a search looks ahead one more move at a time up to maxDepth moves, spending
+// at most millis on a position, then does the same for each position the
+// player can move to next
+// what it finds is kept by the flooded regions of the position, so going back
+// to a position, by undo or otherwise, finds its hint again
+// asking for a hint never waits: until the search has got through one move of
+// the position, there is no hint
+class FloodHints {
+  // how many positions are kept before the cache starts over
+  static final int CACHE_LIMIT = 1 << 16;
+
+  // how many moves deep to search, where 0 searches for no hints at all
+  int maxDepth;
+  long millis;
+  // the hint for each position, as the depth it was found at times 256 plus its
+  // color, shared with the searches of the game
+  ConcurrentHashMap<RegionState, Integer> cache;
+  // the regions of the game the cache is for
+  int[] graph;
+  // made when the first search starts, and its thread ends when left idle
+  ThreadPoolExecutor worker;
+  // the search running or waiting to run, or null
+  HintSearch search;
+  Future<?> running;
+
+  FloodHints() {
+    this(5, 1000);
+  }
+
+  FloodHints(int maxDepth, long millis) {
+    this.maxDepth = maxDepth;
+    this.millis = millis;
+    this.cache = new ConcurrentHashMap<RegionState, Integer>();
+  }
+
+  // returns the thread searches run on, made the first time it is needed
+  // it never keeps a thread alive on its own, so idle games and finished tests
+  // cost nothing
+  ThreadPoolExecutor worker() {
+    if (this.worker == null) {
+      this.worker = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread t = new Thread(r, "flood-hints");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+          });
+    }
+    return this.worker;
+  }
+
+  // EFFECT: stops any search and starts one from the given game's position as it
+  // is now
+  // only the game's regions are copied here, so the caller waits for no search
+  void analyse(FloodGame game) {
+    this.cancel();
+    if (this.maxDepth <= 0 || game.regions == null || game.regions.allFlooded()) {
+      return;
+    }
+    if (game.regions.region != this.graph) {
+      // a new map rather than a cleared one, so a search of the old game still
+      // finishing cannot leave hints in it
+      this.cache = new ConcurrentHashMap<RegionState, Integer>();
+      this.graph = game.regions.region;
+    }
+    this.search = new HintSearch(this, new RegionGraph(game.regions));
+    this.running = this.worker().submit(this.search);
+  }
+
+  // EFFECT: stops the search, if any, without waiting for it
+  void cancel() {
+    if (this.search != null) {
+      this.search.stopped = true;
+      this.running.cancel(false);
+      this.search = null;
+    }
+  }
+
+  // EFFECT: waits for the search, if any, to finish
+  void join() {
+    if (this.running != null) {
+      try {
+        this.running.get();
+      }
+      catch (CancellationException | ExecutionException e) {
+        // a stopped search has nothing more to give
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // returns the best next color found for the given game's position, or -1 if
+  // none has been found yet
+  int hint(FloodGame game) {
+    return game.regions == null ? -1 : this.hint(game.regions);
+  }
+
+  // returns the best next color found for the given position, or -1 if none has
+  // been found yet
+  int hint(RegionGraph s) {
+    if (s.region != this.graph) {
+      return -1;
+    }
+    Integer found = this.cache.get(new RegionState(s.flooded));
+    return found == null ? -1 : found & 0xFF;
+  }
+
+}
+
+// A search for the hints of a position and the positions one move on from it
+// each position is searched on a copy of the game's regions of its own, since a
+// search that gives up leaves its copy part way through a move
+class HintSearch extends LookaheadStrategy implements Runnable {
+  FloodHints hints;
+  // the hints of the game being searched
+  ConcurrentHashMap<RegionState, Integer> cache;
+  RegionGraph state;
+  volatile boolean stopped;
+  // when the position being searched runs out of time
+  long deadline;
+
+  HintSearch(FloodHints hints, RegionGraph state) {
+    super(1);
+    this.hints = hints;
+    this.cache = hints.cache;
+    this.state = state;
+  }
+
+  // EFFECT: finds the hints of the position and then of each position after it,
+  // starting with the one hinted at, since it is the likeliest to be played
+  public void run() {
+    try {
+      this.analyse(new RegionGraph(this.state));
+      Integer found = this.cache.get(new RegionState(this.state.flooded));
+      int first = found == null ? -1 : found & 0xFF;
+      for (int k = -1; k < this.state.frontier.length; k++) {
+        int c = k == -1 ? first : k;
+        if (c >= 0 && (k == -1 || c != first) && this.state.frontierSize[c] > 0) {
+          RegionGraph next = new RegionGraph(this.state);
+          next.move(c);
+          this.analyse(next);
+        }
+      }
+    }
+    catch (CancellationException e) {
+      // stopped, with what was found so far kept
+    }
+  }
+
+  // EFFECT: finds the hint of the given position, one move deeper at a time until
+  // maxDepth or the time runs out, and plays moves on it
+  void analyse(RegionGraph s) {
+    if (s.allFlooded()) {
+      return;
+    }
+    RegionState key = new RegionState(s.flooded.clone());
+    this.deadline = System.nanoTime() + this.hints.millis * 1000000;
+    try {
+      for (int d = this.depth(key) + 1; d <= this.hints.maxDepth; d++) {
+        this.depth = d;
+        this.record(key, d, this.bestMove(s));
+      }
+    }
+    catch (CancellationException e) {
+      if (this.stopped) {
+        throw e;
+      }
+      // out of time on this position, with the deepest hint found kept
+    }
+  }
+
+  // returns how many moves ahead the hint for the given position was found, or 0
+  // if there is none
+  int depth(RegionState key) {
+    Integer found = this.cache.get(key);
+    return found == null ? 0 : found >> 8;
+  }
+
+  // EFFECT: keeps the given color as the hint for the given position, unless a
+  // hint looking further ahead is already kept
+  void record(RegionState key, int depth, int color) {
+    if (this.cache.size() >= FloodHints.CACHE_LIMIT) {
+      this.cache.clear();
+    }
+    this.cache.merge(key, (depth << 8) | color, (old, found) -> (found >> 8) > (old >> 8)
+        ? found : old);
+  }
+
+  // gives up once the search is stopped or out of time
+  long value(RegionGraph s, int movesLeft) {
+    if (this.stopped || System.nanoTime() - this.deadline > 0) {
+      throw new CancellationException();
+    }
+    return super.value(s, movesLeft);
+  }
+}
+
+class ExamplesFloodHints {
+
+  // waits up to the given time for the given world's hint to be ready
+  // EFFECT: ticks the world until then
+  void waitForHint(FloodItWorld w, long millis) throws InterruptedException {
+    long end = System.currentTimeMillis() + millis;
+    while (w.hint == -1 && System.currentTimeMillis() < end) {
+      w.onTick();
+      Thread.sleep(1);
+    }
+  }
+
+  void testHint(Tester t) {
+    FloodGame g = new FloodGame(10, 4, new Random(3));
+    FloodHints h = new FloodHints(3, 60000);
+    t.checkExpect(h.hint(g), -1);
+    h.analyse(g);
+    h.join();
+    t.checkExpect(h.hint(g), new LookaheadStrategy(3).chooseMove(g, new Random(1)));
+    // the positions one move on were searched too
+    FloodGame next = g.copy();
+    next.applyMove(0);
+    t.checkExpect(h.hint(next), new LookaheadStrategy(3).chooseMove(next, new Random(1)));
+    // and going back finds the first hint again
+    next.undo();
+    t.checkExpect(h.hint(next), h.hint(g));
+    // another game does not see this game's hints
+    FloodGame other = new FloodGame(10, 4, new Random(3));
+    t.checkExpect(h.hint(other), -1);
+    h.analyse(other);
+    t.checkExpect(h.hint(g), -1);
+    h.join();
+    t.checkExpect(h.hint(other), new LookaheadStrategy(3).chooseMove(g, new Random(1)));
+  }
+
+  void testCancel(Tester t) {
+    FloodGame g = new FloodGame(60, 8, new Random(2));
+    FloodHints h = new FloodHints(40, 60000);
+    h.analyse(g);
+    HintSearch s = h.search;
+    long start = System.nanoTime();
+    h.cancel();
+    h.join();
+    t.checkExpect(s.stopped, true);
+    t.checkExpect(h.running.isDone(), true);
+    t.checkExpect(h.search, null);
+    t.checkExpect(System.nanoTime() - start < 5000000000L, true);
+  }
+
+  void testTimeLimit(Tester t) {
+    FloodGame g = new FloodGame(60, 8, new Random(2));
+    FloodHints h = new FloodHints(40, 20);
+    h.analyse(g);
+    h.join();
+    // the search gave up deep down, but kept the hints of the shallower searches
+    t.checkExpect(h.hint(g) >= 0, true);
+    t.checkExpect(h.cache.get(new RegionState(g.regions.flooded)) >> 8 < 40, true);
+  }
+
+  void testNothingToHint(Tester t) {
+    FloodGame won = new FloodGame(2, 1, new Random(4));
+    FloodHints h = new FloodHints();
+    h.analyse(won);
+    t.checkExpect(h.search, null);
+    t.checkExpect(h.hint(won), -1);
+  }
+
+  void testHintKey(Tester t) throws InterruptedException {
+    FloodItWorld w = new FloodItWorld(13, 5, 7);
+    w.hints = new FloodHints(3, 60000);
+    w.onKeyEvent("h");
+    this.waitForHint(w, 10000);
+    t.checkExpect(w.hint, new LookaheadStrategy(3).chooseMove(w.game, new Random(1)));
+    w.makeScene();
+    // a click stops the search and the hint no longer holds
+    HintSearch s = w.hints.search;
+    w.onMouseClicked(new Posn(250, 250));
+    t.checkExpect(s.stopped, true);
+    t.checkExpect(w.hint, -1);
+    w.onKeyEvent("h");
+    this.waitForHint(w, 10000);
+    t.checkExpect(w.hint, new LookaheadStrategy(3).chooseMove(w.game, new Random(1)));
+    w.hints.join();
+  }
+}
@@ -0,0 +1,199 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tester.Tester;
+
+// Plays many games at once against a FloodServer on localhost, each session on a
+// virtual thread of its own, and reports how long moves took to answer
+// usage: java FloodLoadTest [sessions] [size] [colors] [port]
+// with no port, or port 0, it starts a server of its own in the same JVM
+// session k plays the board with seed k, clicking colors at random until the
+// game is won or lost
+public class FloodLoadTest {
+
+  public static void main(String[] args) throws IOException {
+    int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : 13;
+    int colors = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    int port = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+    FloodServer server = null;
+    if (port == 0) {
+      server = new FloodServer(0).start();
+      port = server.port();
+    }
+    long start = System.nanoTime();
+    LatencyStats stats = new FloodLoadTest().run(port, sessions, size, colors);
+    long nanos = System.nanoTime() - start;
+    System.out.println(sessions + " sessions, " + size + "x" + size + ", " + colors
+        + " colors");
+    System.out.print(stats.report(nanos));
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  // returns the time every move of the given number of sessions took to answer,
+  // playing games of the given size and colors against the server on the given
+  // port
+  LatencyStats run(int port, int sessions, int size, int colors) {
+    try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+      ArrayList<Future<LatencyStats>> played = new ArrayList<Future<LatencyStats>>();
+      for (int k = 0; k < sessions; k++) {
+        int seed = k;
+        played.add(pool.submit(() -> this.play(port, seed, size, colors)));
+      }
+      LatencyStats ans = new LatencyStats();
+      for (Future<LatencyStats> f : played) {
+        try {
+          ans.merge(f.get());
+        }
+        catch (ExecutionException e) {
+          ans.errors = ans.errors + 1;
+        }
+      }
+      return ans;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Load test was interrupted", e);
+    }
+  }
+
+  // returns the time each move of one session took to answer, playing the board
+  // with the given seed
+  LatencyStats play(int port, int seed, int size, int colors) throws IOException {
+    LatencyStats ans = new LatencyStats();
+    Random rand = new Random(seed);
+    try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+        BufferedWriter out = new BufferedWriter(
+            new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+      s.setTcpNoDelay(true);
+      String answer = this.ask(in, out, "NEW " + size + " " + colors + " " + seed);
+      if (!answer.startsWith("GAME")) {
+        throw new IOException(answer);
+      }
+      while (!answer.endsWith("WON") && !answer.endsWith("LOST")) {
+        long start = System.nanoTime();
+        answer = this.ask(in, out, "MOVE " + rand.nextInt(colors));
+        ans.add(System.nanoTime() - start);
+        if (!answer.startsWith("OK")) {
+          throw new IOException(answer);
+        }
+      }
+      out.write("QUIT\n");
+      out.flush();
+    }
+    return ans;
+  }
+
+  // returns the server's answer to the given line
+  String ask(BufferedReader in, BufferedWriter out, String line) throws IOException {
+    out.write(line);
+    out.write('\n');
+    out.flush();
+    String answer = in.readLine();
+    if (answer == null) {
+      throw new IOException("Server closed the session");
+    }
+    return answer;
+  }
+}
+
+// The times a number of requests took, in nanoseconds, and how many sessions
+// failed
+class LatencyStats {
+  long[] nanos;
+  int size;
+  // whether nanos is sorted up to size
+  boolean sorted;
+  long errors;
+
+  LatencyStats() {
+    this.nanos = new long[64];
+  }
+
+  // returns how many times were counted
+  int count() {
+    return this.size;
+  }
+
+  // EFFECT: counts a request that took the given time
+  void add(long time) {
+    if (this.size == this.nanos.length) {
+      this.nanos = Arrays.copyOf(this.nanos, this.size * 2);
+    }
+    this.nanos[this.size] = time;
+    this.size = this.size + 1;
+    this.sorted = false;
+  }
+
+  // EFFECT: counts every time and failure counted by the given stats
+  void merge(LatencyStats other) {
+    if (this.size + other.size > this.nanos.length) {
+      this.nanos = Arrays.copyOf(this.nanos,
+          Math.max(this.size + other.size, this.nanos.length * 2));
+    }
+    System.arraycopy(other.nanos, 0, this.nanos, this.size, other.size);
+    this.size = this.size + other.size;
+    this.errors = this.errors + other.errors;
+    this.sorted = false;
+  }
+
+  // returns the time at least the given fraction of requests took no longer than
+  long percentile(double p) {
+    if (this.size == 0) {
+      return 0;
+    }
+    if (!this.sorted) {
+      Arrays.sort(this.nanos, 0, this.size);
+      this.sorted = true;
+    }
+    int k = (int) Math.ceil(p * this.size) - 1;
+    return this.nanos[Math.max(0, Math.min(k, this.size - 1))];
+  }
+
+  // returns these times as lines of text, given how long the whole run took
+  String report(long runNanos) {
+    return String.format("%d moves in %.3f s (%.0f moves/s), %d failed sessions%n"
+        + "latency: p50 %.1f us, p99 %.1f us, max %.1f us%n", this.size, runNanos / 1e9,
+        this.size / Math.max(runNanos / 1e9, 1e-9), this.errors, this.percentile(0.5) / 1e3,
+        this.percentile(0.99) / 1e3, this.percentile(1) / 1e3);
+  }
+}
+
+class ExamplesFloodLoadTest {
+
+  void testLatencyStats(Tester t) {
+    LatencyStats s = new LatencyStats();
+    t.checkExpect(s.percentile(0.5), 0L);
+    for (int k = 100; k >= 1; k--) {
+      s.add(k);
+    }
+    t.checkExpect(s.count(), 100);
+    t.checkExpect(s.percentile(0.5), 50L);
+    t.checkExpect(s.percentile(0.99), 99L);
+    t.checkExpect(s.percentile(1), 100L);
+    LatencyStats other = new LatencyStats();
+    other.add(1000);
+    other.errors = 2;
+    s.merge(other);
+    t.checkExpect(s.count(), 101);
+    t.checkExpect(s.percentile(1), 1000L);
+    t.checkExpect(s.errors, 2L);
+  }
+}
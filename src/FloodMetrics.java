@@ -0,0 +1,437 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import tester.Tester;
+import javalib.worldimages.Posn;
+
+// Measures the game loop of a FloodItWorld, keeping totals to show over JMX and
+// recording each tick, scene, step and move as a JFR event
+// while it is disabled, start hands back OFF and every other method returns as
+// soon as it sees it, so a disabled world pays one field read per call
+// it is enabled by setEnabled over JMX, or from the start by running with
+// -Dfloodit.metrics=true
+// the totals are only written by the thread running the world, and are read by
+// JMX without locking, so they can lag behind by a tick
+class FloodMetrics implements FloodMetricsMBean {
+  // the time start returns when nothing is being measured
+  static final long OFF = Long.MIN_VALUE;
+
+  volatile boolean enabled;
+
+  long ticks;
+  long tickNanos;
+  long maxTickNanos;
+  long renders;
+  long renderNanos;
+  long maxRenderNanos;
+  long steps;
+  long cellsExamined;
+  long cellsChanged;
+  long moves;
+  long totalWaves;
+  long lastWaves;
+  long lastLatencyNanos;
+  long maxLatencyNanos;
+
+  // when the move being flooded was clicked, or OFF if there is none
+  long clickTime;
+  // the palette color and steps so far of the move being flooded
+  int moveColor;
+  long waves;
+
+  FloodMetrics() {
+    this(Boolean.getBoolean("floodit.metrics"));
+  }
+
+  FloodMetrics(boolean enabled) {
+    this.enabled = enabled;
+    this.clickTime = OFF;
+  }
+
+  // returns the time something being measured starts, or OFF if nothing is
+  // being measured
+  long start() {
+    if (this.enabled) {
+      return System.nanoTime();
+    }
+    return OFF;
+  }
+
+  // EFFECT: counts a tick that started at the given time
+  void tick(long start, boolean flooding) {
+    if (start == OFF) {
+      return;
+    }
+    long nanos = System.nanoTime() - start;
+    this.ticks = this.ticks + 1;
+    this.tickNanos = this.tickNanos + nanos;
+    this.maxTickNanos = Math.max(this.maxTickNanos, nanos);
+    TickEvent event = new TickEvent();
+    if (event.isEnabled()) {
+      event.nanos = nanos;
+      event.flooding = flooding;
+      event.commit();
+    }
+  }
+
+  // EFFECT: counts a scene drawn by the given method that started at the given
+  // time
+  void render(long start, String method) {
+    if (start == OFF) {
+      return;
+    }
+    long nanos = System.nanoTime() - start;
+    this.renders = this.renders + 1;
+    this.renderNanos = this.renderNanos + nanos;
+    this.maxRenderNanos = Math.max(this.maxRenderNanos, nanos);
+    RenderEvent event = new RenderEvent();
+    if (event.isEnabled()) {
+      event.nanos = nanos;
+      event.method = method;
+      event.commit();
+    }
+  }
+
+  // EFFECT: counts a step of the flood that started at the given time, and looked
+  // at and changed the given numbers of cells
+  void step(long start, int examined, int changed) {
+    if (start == OFF) {
+      return;
+    }
+    long nanos = System.nanoTime() - start;
+    this.steps = this.steps + 1;
+    this.cellsExamined = this.cellsExamined + examined;
+    this.cellsChanged = this.cellsChanged + changed;
+    this.waves = this.waves + 1;
+    FloodStepEvent event = new FloodStepEvent();
+    if (event.isEnabled()) {
+      event.nanos = nanos;
+      event.examined = examined;
+      event.changed = changed;
+      event.commit();
+    }
+  }
+
+  // EFFECT: remembers that a move with the given palette color was just clicked
+  void click(int color) {
+    if (this.enabled) {
+      this.clickTime = System.nanoTime();
+      this.moveColor = color;
+      this.waves = 0;
+    }
+  }
+
+  // EFFECT: counts the move whose flood just ended
+  // a move clicked while nothing was being measured, or whose flood was not
+  // measured to the end, is not counted
+  void moveDone() {
+    if (!this.enabled || this.clickTime == OFF) {
+      this.clickTime = OFF;
+      return;
+    }
+    long nanos = System.nanoTime() - this.clickTime;
+    this.clickTime = OFF;
+    this.moves = this.moves + 1;
+    this.totalWaves = this.totalWaves + this.waves;
+    this.lastWaves = this.waves;
+    this.lastLatencyNanos = nanos;
+    this.maxLatencyNanos = Math.max(this.maxLatencyNanos, nanos);
+    MoveEvent event = new MoveEvent();
+    if (event.isEnabled()) {
+      event.nanos = nanos;
+      event.color = this.moveColor;
+      event.waves = this.waves;
+      event.commit();
+    }
+  }
+
+  // EFFECT: shows these metrics over JMX, in place of any shown before
+  // returns these metrics
+  FloodMetrics register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("floodit:type=FloodMetrics");
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+      return this;
+    }
+    catch (JMException e) {
+      throw new IllegalStateException("Could not register the metrics", e);
+    }
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public void reset() {
+    this.ticks = 0;
+    this.tickNanos = 0;
+    this.maxTickNanos = 0;
+    this.renders = 0;
+    this.renderNanos = 0;
+    this.maxRenderNanos = 0;
+    this.steps = 0;
+    this.cellsExamined = 0;
+    this.cellsChanged = 0;
+    this.moves = 0;
+    this.totalWaves = 0;
+    this.lastWaves = 0;
+    this.lastLatencyNanos = 0;
+    this.maxLatencyNanos = 0;
+  }
+
+  public long getTicks() {
+    return this.ticks;
+  }
+
+  public double getMeanTickMicros() {
+    return this.mean(this.tickNanos, this.ticks) / 1e3;
+  }
+
+  public double getMaxTickMicros() {
+    return this.maxTickNanos / 1e3;
+  }
+
+  public long getRenders() {
+    return this.renders;
+  }
+
+  public double getMeanRenderMicros() {
+    return this.mean(this.renderNanos, this.renders) / 1e3;
+  }
+
+  public double getMaxRenderMicros() {
+    return this.maxRenderNanos / 1e3;
+  }
+
+  public long getSteps() {
+    return this.steps;
+  }
+
+  public long getCellsExamined() {
+    return this.cellsExamined;
+  }
+
+  public long getCellsChanged() {
+    return this.cellsChanged;
+  }
+
+  public long getMoves() {
+    return this.moves;
+  }
+
+  public double getMeanWavesPerMove() {
+    return this.mean(this.totalWaves, this.moves);
+  }
+
+  public long getLastWavesPerMove() {
+    return this.lastWaves;
+  }
+
+  public double getLastClickLatencyMillis() {
+    return this.lastLatencyNanos / 1e6;
+  }
+
+  public double getMaxClickLatencyMillis() {
+    return this.maxLatencyNanos / 1e6;
+  }
+
+  // returns the given total divided by the given count, or 0 if there is no count
+  double mean(long total, long count) {
+    if (count == 0) {
+      return 0;
+    }
+    return (double) total / count;
+  }
+}
+
+// A call to onTick
+@Name("floodit.Tick")
+@Label("Tick")
+@Category("Flood-It")
+class TickEvent extends Event {
+  @Label("Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  long nanos;
+
+  @Label("Flooding")
+  boolean flooding;
+}
+
+// A scene drawn by makeScene or worldEnds
+@Name("floodit.Render")
+@Label("Render")
+@Category("Flood-It")
+class RenderEvent extends Event {
+  @Label("Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  long nanos;
+
+  @Label("Method")
+  String method;
+}
+
+// A call to floodNext
+@Name("floodit.FloodStep")
+@Label("Flood Step")
+@Category("Flood-It")
+class FloodStepEvent extends Event {
+  @Label("Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  long nanos;
+
+  @Label("Cells Examined")
+  int examined;
+
+  @Label("Cells Changed")
+  int changed;
+}
+
+// A move, from its click to the end of its flood
+@Name("floodit.Move")
+@Label("Move")
+@Category("Flood-It")
+class MoveEvent extends Event {
+  @Label("Click To Flood Complete")
+  @Timespan(Timespan.NANOSECONDS)
+  long nanos;
+
+  @Label("Palette Color")
+  int color;
+
+  @Label("Waves")
+  long waves;
+}
+
+class ExamplesFloodMetrics {
+
+  // returns the seeded world, clicked and flooded to the end of the move
+  FloodItWorld played(FloodMetrics metrics) {
+    FloodItWorld w = new FloodItWorld(10, 4, 71);
+    w.metrics = metrics;
+    w.makeScene();
+    w.onMouseClicked(new Posn(155, 175));
+    while (w.flooding) {
+      w.onTick();
+    }
+    return w;
+  }
+
+  // returns how many cells the steps of the given move on the board played
+  // looked at, played on the board's bits if asked
+  long examined(int c, boolean bits) {
+    FloodGame g = new FloodItWorld(10, 4, 71).game;
+    if (bits) {
+      g.useBits();
+    }
+    g.startMove(c);
+    long ans = 0;
+    boolean spread = true;
+    while (spread) {
+      spread = g.step();
+      ans = ans + g.examined();
+    }
+    return ans;
+  }
+
+  void testDisabled(Tester t) {
+    FloodMetrics m = new FloodMetrics(false);
+    t.checkExpect(m.start(), FloodMetrics.OFF);
+    this.played(m);
+    t.checkExpect(m.ticks, 0L);
+    t.checkExpect(m.steps, 0L);
+    t.checkExpect(m.moves, 0L);
+    t.checkExpect(m.renders, 0L);
+  }
+
+  void testEnabled(Tester t) {
+    FloodMetrics m = new FloodMetrics(true);
+    FloodItWorld w = this.played(m);
+    t.checkExpect(m.getRenders(), 1L);
+    t.checkExpect(m.getMoves(), 1L);
+    t.checkExpect(m.getTicks(), m.getSteps());
+    t.checkExpect(m.getLastWavesPerMove(), m.getSteps());
+    t.checkExpect(m.getMeanWavesPerMove(), (double) m.getSteps());
+    // every cell flooded by the move but the top left one was changed by a step
+    t.checkExpect(m.getCellsChanged(), (long) w.game.board().floodedCount - 1);
+    t.checkExpect(m.getCellsExamined() >= m.getCellsChanged(), true);
+    t.checkExpect(m.getCellsExamined(), this.examined(w.game.movesMade()[0], false));
+    // the bits look at every cell each step
+    t.checkExpect(this.examined(w.game.movesMade()[0], true), 100L * m.getSteps());
+    t.checkExpect(m.getMaxClickLatencyMillis() >= m.getLastClickLatencyMillis(), true);
+    t.checkExpect(m.getLastClickLatencyMillis() > 0, true);
+    m.reset();
+    t.checkExpect(m.getMoves(), 0L);
+    t.checkExpect(m.getMeanTickMicros(), 0.0);
+  }
+
+  void testMoveNotMeasured(Tester t) {
+    FloodMetrics m = new FloodMetrics(false);
+    FloodItWorld w = new FloodItWorld(10, 4, 71);
+    w.metrics = m;
+    w.onMouseClicked(new Posn(155, 175));
+    m.setEnabled(true);
+    while (w.flooding) {
+      w.onTick();
+    }
+    t.checkExpect(m.isEnabled(), true);
+    t.checkExpect(m.getMoves(), 0L);
+    t.checkExpect(m.getSteps() > 0, true);
+  }
+
+  void testJmx(Tester t) throws JMException {
+    FloodMetrics m = new FloodMetrics(true).register();
+    this.played(m);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("floodit:type=FloodMetrics");
+    t.checkExpect(server.getAttribute(name, "Moves"), 1L);
+    t.checkExpect(new FloodMetrics(false).register().getMoves(), 0L);
+    t.checkExpect(server.getAttribute(name, "Enabled"), false);
+  }
+
+  void testJfr(Tester t) throws IOException {
+    Path file = Files.createTempFile("floodit", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("floodit.Move");
+      recording.enable("floodit.FloodStep");
+      recording.start();
+      this.played(new FloodMetrics(true));
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+    int moves = 0;
+    for (RecordedEvent e : events) {
+      if (e.getEventType().getName().equals("floodit.Move")) {
+        moves = moves + 1;
+        t.checkExpect(e.getLong("waves") > 0, true);
+      }
+    }
+    t.checkExpect(moves, 1);
+    t.checkExpect(events.size() > 1, true);
+  }
+}
@@ -0,0 +1,52 @@
+// What FloodMetrics shows over JMX, under the name floodit:type=FloodMetrics
+// JMX only looks at public interfaces, so this one has a file of its own
+public interface FloodMetricsMBean {
+
+  // checks if the game loop is being measured
+  boolean isEnabled();
+
+  // EFFECT: starts or stops measuring the game loop
+  void setEnabled(boolean enabled);
+
+  // EFFECT: sets every count back to zero
+  void reset();
+
+  // returns how many ticks were measured
+  long getTicks();
+
+  // returns the average and longest time an onTick took, in microseconds
+  double getMeanTickMicros();
+
+  double getMaxTickMicros();
+
+  // returns how many scenes were drawn by makeScene and worldEnds
+  long getRenders();
+
+  // returns the average and longest time drawing a scene took, in microseconds
+  double getMeanRenderMicros();
+
+  double getMaxRenderMicros();
+
+  // returns how many times floodNext was called
+  long getSteps();
+
+  // returns how many cells the flood looked at and changed over every step
+  long getCellsExamined();
+
+  long getCellsChanged();
+
+  // returns how many moves were flooded to the end
+  long getMoves();
+
+  // returns the average number of steps a move took, and the number the last
+  // move took
+  double getMeanWavesPerMove();
+
+  long getLastWavesPerMove();
+
+  // returns the time from a click to the end of its flood for the last move and
+  // the slowest move, in milliseconds
+  double getLastClickLatencyMillis();
+
+  double getMaxClickLatencyMillis();
+}
@@ -1,6 +1,23 @@
 public class FloodRunner {
   public static void main(String[] args) {
+    if (args.length > 0 && args[0].equals("endless")) {
+      // a board with no edge, made as the flood and the view get to it
+      EndlessWorld endless = new EndlessWorld(5, System.nanoTime());
+      endless.bigBang(endless.sceneSize, endless.sceneSize, 1.0 / 60);
+      return;
+    }
     FloodItWorld floodIt3 = new FloodItWorld(13, 5);
-    floodIt3.bigBang(500, 500, .1);
+    if (args.length > 0 && args[0].equals("par")) {
+      // allow only as many clicks as the solver needs for each board, as the p
+      // key does while playing
+      floodIt3.usePar(FloodItWorld.PAR_MILLIS);
+    }
+    // show how the game loop is doing over JMX, measured once it is enabled there
+    // or by running with -Dfloodit.metrics=true
+    floodIt3.metrics.register();
+    // flood for up to 4 ms a tick, finish every move within 2 seconds of its
+    // click, and draw 30 frames a second however fast the world ticks
+    floodIt3.scheduler = new FloodScheduler(4.0, 2000.0, 30);
+    floodIt3.bigBang(floodIt3.sceneSize, floodIt3.sceneSize, 1.0 / 60);
   }
 }
\ No newline at end of file
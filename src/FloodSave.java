@@ -0,0 +1,233 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.Tester;
+
+// A saved game: the board it started on and every move made on it since
+// saved games are written as, in order and big endian:
+// - the int MAGIC and the short VERSION
+// - the int size of the board, the byte number of colors in its palette, and the
+// int RGB of each palette color
+// - the int most moves allowed and the int number of moves made
+// - the palette color of every cell, two cells to a byte with the first cell in
+// the high four bits
+// - one bit per cell, set if the cell started flooded, as longs
+// - the palette color of every move, one byte each
+// a 4096x4096 board takes 10 MB, and is loaded by mapping the file into memory
+// and unpacking it straight into the arrays of a FloodBoard
+class FloodSave {
+  // the first four bytes of every saved game, "FLIT"
+  static final int MAGIC = 0x464C4954;
+  static final short VERSION = 1;
+
+  int size;
+  ArrayList<Color> palette;
+  int maxClicks;
+  // the colors and flooded cells of the board before any move
+  byte[] colors;
+  long[] flooded;
+  // the palette color of every move made
+  byte[] moves;
+
+  // makes a save of the given game as it is now
+  FloodSave(FloodGame game) {
+    this.size = game.size;
+    this.palette = game.board.palette;
+    this.maxClicks = game.maxClicks;
+    this.colors = game.startColors;
+    this.flooded = game.startFlooded;
+    this.moves = game.movesMade();
+  }
+
+  // reads the game saved in the given file
+  FloodSave(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (in.remaining() < 6 || in.getInt() != MAGIC) {
+        throw new IOException(file + " is not a saved game");
+      }
+      short version = in.getShort();
+      if (version != VERSION) {
+        throw new IOException(file + " was saved by an unknown version " + version);
+      }
+      this.size = in.getInt();
+      int numColors = in.get();
+      this.palette = new ArrayList<Color>();
+      for (int k = 0; k < numColors; k++) {
+        this.palette.add(new Color(in.getInt()));
+      }
+      this.maxClicks = in.getInt();
+      this.moves = new byte[in.getInt()];
+      int n = this.size * this.size;
+      this.colors = new byte[n];
+      for (int i = 0; i < n; i += 2) {
+        int b = in.get();
+        this.colors[i] = (byte) ((b >> 4) & 0xF);
+        if (i + 1 < n) {
+          this.colors[i + 1] = (byte) (b & 0xF);
+        }
+      }
+      this.flooded = new long[(n + 63) / 64];
+      in.asLongBuffer().get(this.flooded);
+      in.position(in.position() + 8 * this.flooded.length);
+      in.get(this.moves);
+    }
+    catch (RuntimeException e) {
+      // a short or damaged file runs off the end of the buffer or past the
+      // palette, which should be reported like any other bad file
+      throw new IOException(file + " is not a whole saved game", e);
+    }
+  }
+
+  // returns how many bytes this save takes to write
+  long length() {
+    long n = (long) this.size * this.size;
+    return 4 + 2 + 4 + 1 + 4L * this.palette.size() + 4 + 4 + (n + 1) / 2
+        + 8L * this.flooded.length + this.moves.length;
+  }
+
+  // EFFECT: writes this save to the given file, replacing anything already there
+  void write(Path file) throws IOException {
+    if (this.palette.size() > 16) {
+      throw new IOException("Only games of up to 16 colors can be saved");
+    }
+    ByteBuffer out = ByteBuffer.allocate(Math.toIntExact(this.length()));
+    out.putInt(MAGIC);
+    out.putShort(VERSION);
+    out.putInt(this.size);
+    out.put((byte) this.palette.size());
+    for (Color c : this.palette) {
+      out.putInt(c.getRGB());
+    }
+    out.putInt(this.maxClicks);
+    out.putInt(this.moves.length);
+    for (int i = 0; i < this.colors.length; i += 2) {
+      int high = this.colors[i] << 4;
+      int low = i + 1 < this.colors.length ? this.colors[i + 1] : 0;
+      out.put((byte) (high | low));
+    }
+    out.asLongBuffer().put(this.flooded);
+    out.position(out.position() + 8 * this.flooded.length);
+    out.put(this.moves);
+    out.flip();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+    }
+  }
+
+  // returns the game as it was after the given number of moves
+  // the board is rebuilt from the saved start and the moves played again, so the
+  // same save always gives the same game
+  FloodGame replay(int count) {
+    FloodBoard b = new FloodBoard(this.size, this.palette, this.colors, this.flooded);
+    FloodGame ans = new FloodGame(b, this.palette, new Random(0));
+    ans.maxClicks = this.maxClicks;
+    for (int k = 0; k < count; k++) {
+      ans.applyMove(this.moves[k]);
+    }
+    return ans;
+  }
+
+  // returns the game as it was after every saved move
+  FloodGame replay() {
+    return this.replay(this.moves.length);
+  }
+}
+
+class ExamplesFloodSave {
+
+  // returns a seeded game with a few greedy moves made
+  FloodGame played(int size, int colors, int seed, int moves) {
+    FloodGame g = new FloodGame(size, colors, new Random(seed));
+    for (int k = 0; k < moves && !g.allFlooded(); k++) {
+      g.applyMove(new FloodSolver().bestMove(g.regions));
+    }
+    return g;
+  }
+
+  void testRoundTrip(Tester t) throws IOException {
+    Path file = Files.createTempFile("floodit", ".save");
+    FloodGame g = this.played(13, 5, 3, 6);
+    FloodSave s = new FloodSave(g);
+    s.write(file);
+    t.checkExpect(Files.size(file), s.length());
+    FloodSave loaded = new FloodSave(file);
+    Files.delete(file);
+    t.checkExpect(loaded.size, 13);
+    t.checkExpect(loaded.palette, g.board.palette);
+    t.checkExpect(loaded.maxClicks, g.maxClicks);
+    t.checkExpect(loaded.colors, g.startColors);
+    t.checkExpect(loaded.flooded, g.startFlooded);
+    t.checkExpect(loaded.moves, g.movesMade());
+    FloodGame r = loaded.replay();
+    t.checkExpect(r.movesUsed(), 6);
+    t.checkExpect(r.board().colors, g.board().colors);
+    t.checkExpect(r.board().flooded, g.board().flooded);
+    t.checkExpect(r.isWon(), g.isWon());
+  }
+
+  void testReplayEachMove(Tester t) {
+    FloodGame g = new FloodGame(20, 6, new Random(8));
+    ArrayList<byte[]> boards = new ArrayList<byte[]>();
+    boards.add(g.board().colors.clone());
+    while (!g.allFlooded()) {
+      g.applyMove(new FloodSolver().bestMove(g.regions));
+      boards.add(g.board().colors.clone());
+    }
+    FloodSave s = new FloodSave(g);
+    for (int k = 0; k < boards.size(); k++) {
+      t.checkExpect(s.replay(k).board().colors, boards.get(k));
+    }
+    t.checkExpect(s.replay(0).movesUsed(), 0);
+  }
+
+  void testOddBoard(Tester t) throws IOException {
+    Path file = Files.createTempFile("floodit", ".save");
+    FloodGame g = this.played(7, 8, 12, 3);
+    new FloodSave(g).write(file);
+    FloodGame r = new FloodSave(file).replay();
+    Files.delete(file);
+    t.checkExpect(r.board().colors, g.board().colors);
+    t.checkExpect(r.movesMade(), g.movesMade());
+  }
+
+  void testBadFiles(Tester t) throws IOException {
+    Path file = Files.createTempFile("floodit", ".save");
+    Files.write(file, new byte[] { 1, 2, 3 });
+    t.checkException(new IOException(file + " is not a saved game"), this, "load", file);
+    FloodSave s = new FloodSave(this.played(9, 3, 1, 2));
+    s.write(file);
+    byte[] whole = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(whole, whole.length - 20));
+    t.checkExpect(this.fails(file), true);
+    Files.delete(file);
+  }
+
+  // returns the game saved in the given file
+  FloodSave load(Path file) throws IOException {
+    return new FloodSave(file);
+  }
+
+  // checks if loading the given file fails
+  boolean fails(Path file) {
+    try {
+      new FloodSave(file);
+      return false;
+    }
+    catch (IOException e) {
+      return true;
+    }
+  }
+}
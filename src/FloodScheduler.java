@@ -0,0 +1,171 @@
+import java.util.Random;
+
+import tester.Tester;
+import javalib.impworld.WorldScene;
+import javalib.worldimages.Posn;
+
+// Decides how far the flood of a FloodItWorld moves each tick, and when the world
+// is worth drawing again, so the flood runs at its own pace instead of one step
+// per tick
+// each tick takes up to stepsPerTick steps, stopping early once stepNanos have
+// gone by, and a move still flooding moveNanos after its click is finished at
+// once
+// a frame is due once frameNanos have gone by since the last one, or as soon as
+// something other than the flood changed; until then makeScene hands back the
+// last scene, and frames that were missed while the world was behind are
+// skipped rather than caught up on
+// a limit of 0 means no limit, and the default of one step per tick and a frame
+// every time is how the game has always run
+class FloodScheduler {
+  int stepsPerTick;
+  long stepNanos;
+  long moveNanos;
+  long frameNanos;
+
+  // when the move being flooded was clicked
+  long moveStart;
+  // when the next frame is due
+  long nextFrame;
+  // whether something other than the flood changed since the last frame
+  boolean invalid;
+  long framesDrawn;
+  long framesSkipped;
+
+  // one step per tick and a frame every time
+  FloodScheduler() {
+    this(1, 0, 0, 0);
+  }
+
+  FloodScheduler(int stepsPerTick, long stepNanos, long moveNanos, long frameNanos) {
+    this.stepsPerTick = stepsPerTick;
+    this.stepNanos = stepNanos;
+    this.moveNanos = moveNanos;
+    this.frameNanos = frameNanos;
+    this.invalid = true;
+  }
+
+  // returns a scheduler that takes as many steps as fit in the given time each
+  // tick, finishes every move within the given time of its click, and draws the
+  // given number of frames a second
+  FloodScheduler(double stepMillis, double moveMillis, int framesPerSecond) {
+    this(0, (long) (stepMillis * 1e6), (long) (moveMillis * 1e6),
+        1000000000L / framesPerSecond);
+  }
+
+  // EFFECT: remembers that a move was just clicked, and that the world needs
+  // drawing
+  void moveStarted(long now) {
+    this.moveStart = now;
+    this.invalid = true;
+  }
+
+  // EFFECT: remembers that the world needs drawing
+  void invalidate() {
+    this.invalid = true;
+  }
+
+  // EFFECT: floods the given world as far as this tick allows
+  void tick(FloodItWorld w, long now) {
+    int steps = 0;
+    while (w.flooding && (this.stepsPerTick <= 0 || steps < this.stepsPerTick)
+        && (steps == 0 || this.stepNanos <= 0 || System.nanoTime() - now < this.stepNanos)) {
+      w.floodNext();
+      steps = steps + 1;
+    }
+    if (w.flooding && this.moveNanos > 0 && now - this.moveStart >= this.moveNanos) {
+      while (w.flooding) {
+        w.floodNext();
+      }
+    }
+  }
+
+  // checks if a frame is due at the given time
+  boolean frameDue(long now) {
+    return this.invalid || this.frameNanos <= 0 || now - this.nextFrame >= 0;
+  }
+
+  // EFFECT: remembers that a frame was drawn at the given time, counting the
+  // frames that were due since the last one as skipped
+  void drew(long now) {
+    if (this.frameNanos > 0 && !this.invalid && now - this.nextFrame >= this.frameNanos) {
+      this.framesSkipped = this.framesSkipped + (now - this.nextFrame) / this.frameNanos;
+    }
+    this.framesDrawn = this.framesDrawn + 1;
+    this.nextFrame = now + this.frameNanos;
+    this.invalid = false;
+  }
+}
+
+class ExamplesFloodScheduler {
+
+  // returns the seeded world, with a move toward the middle of the board clicked
+  FloodItWorld clicked(FloodScheduler s) {
+    FloodItWorld w = new FloodItWorld(new FloodGame(40, 3, new Random(34)));
+    w.cellSize = 10;
+    w.scheduler = s;
+    w.onMouseClicked(new Posn(250, 250));
+    return w;
+  }
+
+  // returns how many ticks it takes the given world to finish its flood
+  int ticks(FloodItWorld w) {
+    int ans = 0;
+    while (w.flooding) {
+      w.onTick();
+      ans = ans + 1;
+    }
+    return ans;
+  }
+
+  void testStepsPerTick(Tester t) {
+    int one = this.ticks(this.clicked(new FloodScheduler()));
+    int four = this.ticks(this.clicked(new FloodScheduler(4, 0, 0, 0)));
+    t.checkExpect(one > 4, true);
+    t.checkExpect(four, (one + 3) / 4);
+    t.checkExpect(this.ticks(this.clicked(new FloodScheduler(0, 0, 0, 0))), 1);
+    FloodItWorld a = this.clicked(new FloodScheduler());
+    FloodItWorld b = this.clicked(new FloodScheduler(4, 0, 0, 0));
+    this.ticks(a);
+    this.ticks(b);
+    t.checkExpect(b.game.board().colors, a.game.board().colors);
+  }
+
+  void testBudgets(Tester t) {
+    // a budget that is long gone still takes a step each tick
+    FloodItWorld w = this.clicked(new FloodScheduler(0, 1, 0, 0));
+    t.checkExpect(this.ticks(w) >= 1, true);
+    // a move past its deadline is finished on the next tick
+    w = this.clicked(new FloodScheduler(1, 0, 1, 0));
+    t.checkExpect(this.ticks(w), 1);
+    t.checkExpect(w.game.board().floodedCount, w.game.regions.floodedCells);
+  }
+
+  void testFrames(Tester t) {
+    FloodScheduler s = new FloodScheduler(1, 0, 0, 1000000);
+    t.checkExpect(s.frameDue(0), true);
+    s.drew(0);
+    t.checkExpect(s.frameDue(999999), false);
+    t.checkExpect(s.frameDue(1000000), true);
+    s.invalidate();
+    t.checkExpect(s.frameDue(1), true);
+    s.drew(1);
+    s.drew(5000001);
+    t.checkExpect(s.framesDrawn, 3L);
+    t.checkExpect(s.framesSkipped, 4L);
+    t.checkExpect(new FloodScheduler(2.0, 500.0, 30).frameNanos, 33333333L);
+  }
+
+  void testSceneCached(Tester t) {
+    FloodItWorld w = this.clicked(new FloodScheduler(1, 0, 0, 60000000000L));
+    WorldScene first = w.makeScene();
+    w.onTick();
+    t.checkExpect(w.makeScene() == first, true);
+    w.onKeyEvent("u");
+    t.checkExpect(w.makeScene() == first, true);
+    while (w.flooding) {
+      w.onTick();
+    }
+    w.onKeyEvent("u");
+    t.checkExpect(w.makeScene() == first, false);
+  }
+}
@@ -0,0 +1,257 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tester.Tester;
+
+// Hosts games of Flood-It over a line protocol on localhost, one session per
+// connection, each on a virtual thread of its own
+// usage: java FloodServer [port]
+// a session answers each line it is sent with one line:
+// - NEW size colors seed: starts a game on the board of new FloodItWorld(size,
+// colors, seed), answering GAME size colors maxClicks
+// - MOVE color: floods with the given palette color, answering OK moves
+// floodedCells status
+// - STATE: answers STATE size moves maxClicks status and one hex digit per cell
+// giving its palette color, row by row
+// - RESIGN: gives up the game, answering RESIGNED moves
+// - QUIT: ends the session
+// where status is PLAYING, WON, LOST or RESIGNED, and a line that cannot be
+// answered is answered with ERR and why
+// sessions share nothing, so nothing is locked
+public class FloodServer {
+  // how many connections may wait to be accepted
+  static final int BACKLOG = 8192;
+
+  ServerSocket socket;
+  ExecutorService sessions;
+
+  // makes a server listening on the given port of localhost, or any free port if
+  // it is 0
+  FloodServer(int port) throws IOException {
+    this.socket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    this.sessions = Executors.newVirtualThreadPerTaskExecutor();
+  }
+
+  public static void main(String[] args) throws IOException {
+    FloodServer server = new FloodServer(args.length > 0 ? Integer.parseInt(args[0]) : 7711);
+    System.out.println("Flood-It server on port " + server.port());
+    server.serve();
+  }
+
+  // returns the port this server listens on
+  int port() {
+    return this.socket.getLocalPort();
+  }
+
+  // EFFECT: starts serving on a thread of its own
+  // returns this server
+  FloodServer start() {
+    Thread.ofVirtual().name("flood-accept").start(() -> this.serve());
+    return this;
+  }
+
+  // EFFECT: accepts connections until the server is closed, starting a session
+  // for each
+  void serve() {
+    try {
+      while (true) {
+        Socket client = this.socket.accept();
+        this.sessions.submit(() -> this.talk(client));
+      }
+    }
+    catch (IOException e) {
+      // the server was closed
+    }
+  }
+
+  // EFFECT: answers the lines of the given connection until it is closed or quits
+  void talk(Socket client) {
+    FloodSession session = new FloodSession();
+    try (Socket c = client;
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(c.getInputStream(), StandardCharsets.US_ASCII));
+        BufferedWriter out = new BufferedWriter(
+            new OutputStreamWriter(c.getOutputStream(), StandardCharsets.US_ASCII))) {
+      c.setTcpNoDelay(true);
+      String line = in.readLine();
+      while (line != null && !line.trim().equals("QUIT")) {
+        out.write(session.handle(line));
+        out.write('\n');
+        out.flush();
+        line = in.readLine();
+      }
+    }
+    catch (IOException e) {
+      // the client went away
+    }
+  }
+
+  // EFFECT: stops accepting connections and ends every session
+  void close() throws IOException {
+    this.socket.close();
+    this.sessions.shutdownNow();
+  }
+}
+
+// The game of one connection to a FloodServer
+class FloodSession {
+  // the game being played, or null before the first NEW
+  FloodGame game;
+  boolean resigned;
+
+  // returns the answer to the given line of the protocol
+  // EFFECT: plays the line on this session's game
+  String handle(String line) {
+    String[] words = line.trim().split("\\s+");
+    try {
+      switch (words[0]) {
+        case "NEW":
+          return this.start(Integer.parseInt(words[1]), Integer.parseInt(words[2]),
+              Integer.parseInt(words[3]));
+        case "MOVE":
+          return this.move(Integer.parseInt(words[1]));
+        case "STATE":
+          return this.state();
+        case "RESIGN":
+          return this.resign();
+        default:
+          return "ERR unknown command " + words[0];
+      }
+    }
+    catch (ArrayIndexOutOfBoundsException e) {
+      return "ERR missing arguments to " + words[0];
+    }
+    catch (NumberFormatException e) {
+      return "ERR not a number: " + e.getMessage();
+    }
+  }
+
+  // returns the answer to NEW
+  // EFFECT: starts a game on the seeded board of the given size and colors
+  String start(int size, int colors, int seed) {
+    if (size < 1 || size > 4096) {
+      return "ERR size must be from 1 to 4096";
+    }
+    if (colors < 1 || colors > 8) {
+      return "ERR colors must be from 1 to 8";
+    }
+    this.game = new FloodGame(size, colors, new Random(seed));
+    this.resigned = false;
+    return "GAME " + size + " " + colors + " " + this.game.maxClicks;
+  }
+
+  // returns the answer to MOVE
+  // EFFECT: floods this session's game with the given palette color
+  String move(int color) {
+    if (this.game == null) {
+      return "ERR no game";
+    }
+    if (!this.status().equals("PLAYING")) {
+      return "ERR game is over";
+    }
+    if (color < 0 || color >= this.game.allColors.size()) {
+      return "ERR no color " + color;
+    }
+    this.game.applyMove(color);
+    int flooded = this.game.regions == null ? this.game.board().floodedCount
+        : this.game.regions.floodedCells;
+    return "OK " + this.game.movesUsed() + " " + flooded + " " + this.status();
+  }
+
+  // returns the answer to STATE
+  String state() {
+    if (this.game == null) {
+      return "ERR no game";
+    }
+    FloodBoard b = this.game.board();
+    StringBuilder ans = new StringBuilder("STATE " + this.game.size + " "
+        + this.game.movesUsed() + " " + this.game.maxClicks + " " + this.status() + " ");
+    for (byte c : b.colors) {
+      ans.append(Character.forDigit(c, 16));
+    }
+    return ans.toString();
+  }
+
+  // returns the answer to RESIGN
+  // EFFECT: ends this session's game
+  String resign() {
+    if (this.game == null) {
+      return "ERR no game";
+    }
+    this.resigned = true;
+    return "RESIGNED " + this.game.movesUsed();
+  }
+
+  // returns how this session's game stands
+  String status() {
+    if (this.resigned) {
+      return "RESIGNED";
+    }
+    if (this.game.isWon()) {
+      return "WON";
+    }
+    if (this.game.isLost()) {
+      return "LOST";
+    }
+    return "PLAYING";
+  }
+}
+
+class ExamplesFloodServer {
+
+  void testSession(Tester t) {
+    FloodSession s = new FloodSession();
+    t.checkExpect(s.handle("MOVE 1"), "ERR no game");
+    t.checkExpect(s.handle("STATE"), "ERR no game");
+    t.checkExpect(s.handle("NEW 3"), "ERR missing arguments to NEW");
+    t.checkExpect(s.handle("NEW 3 x 1"), "ERR not a number: For input string: \"x\"");
+    t.checkExpect(s.handle("JUMP"), "ERR unknown command JUMP");
+    t.checkExpect(s.handle("NEW 0 3 1"), "ERR size must be from 1 to 4096");
+    t.checkExpect(s.handle("NEW 5 9 1"), "ERR colors must be from 1 to 8");
+    t.checkExpect(s.handle("NEW 5 3 23546798"), "GAME 5 3 5");
+    FloodItWorld w = new FloodItWorld(5, 3, 23546798);
+    t.checkExpect(s.game.board().colors, w.game.board().colors);
+    t.checkExpect(s.handle("MOVE 3"), "ERR no color 3");
+    t.checkExpect(s.handle(" MOVE  1 ").startsWith("OK 1 "), true);
+    t.checkExpect(s.handle("STATE").startsWith("STATE 5 1 5 "), true);
+    t.checkExpect(s.handle("STATE").length(), "STATE 5 1 5 PLAYING ".length() + 25);
+    t.checkExpect(s.handle("RESIGN"), "RESIGNED 1");
+    t.checkExpect(s.handle("MOVE 0"), "ERR game is over");
+    t.checkExpect(s.handle("NEW 2 1 4"), "GAME 2 1 1");
+    t.checkExpect(s.handle("STATE"), "STATE 2 0 1 WON 0000");
+  }
+
+  void testPlayToTheEnd(Tester t) {
+    FloodSession s = new FloodSession();
+    s.handle("NEW 6 3 9");
+    String answer = "";
+    for (int k = 0; k < 40 && !answer.endsWith("WON") && !answer.endsWith("LOST"); k++) {
+      answer = s.handle("MOVE " + (k % 3));
+    }
+    t.checkOneOf(answer.substring(answer.lastIndexOf(' ') + 1), "WON", "LOST");
+    t.checkExpect(s.handle("MOVE 0"), "ERR game is over");
+  }
+
+  void testServer(Tester t) throws IOException {
+    FloodServer server = new FloodServer(0).start();
+    try {
+      LatencyStats stats = new FloodLoadTest().run(server.port(), 50, 8, 4);
+      t.checkExpect(stats.count() > 50, true);
+      t.checkExpect(stats.errors, 0L);
+      t.checkExpect(stats.percentile(0.5) <= stats.percentile(0.99), true);
+    }
+    finally {
+      server.close();
+    }
+  }
+}
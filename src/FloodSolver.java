@@ -0,0 +1,570 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import tester.Tester;
+import java.awt.Color;
+
+// Finds the shortest, or when time runs out a short, list of moves that floods
+// a whole board
+// a beam search solution is found first, then IDA* looks for shorter ones, raising
+// its bound one move at a time; the first solution found under a bound is the
+// shortest there is
+// each round of IDA* splits the first moves into tasks on a fork-join pool that
+// share a table of the states already seen
+class FloodSolver {
+  // how many states the table of seen states may hold
+  int tableLimit;
+  // how many moves deep the search is split into separate tasks
+  int splitDepth;
+  // how many states the beam search keeps after each move
+  int beamWidth;
+  ForkJoinPool pool;
+  // the time in nanoseconds the search has to stop by
+  long deadline;
+  // the fewest moves each state seen in this round of the search was reached in
+  ConcurrentHashMap<RegionState, Integer> seen;
+  // set once a task of this round has found a solution
+  AtomicBoolean found;
+  // whether the last solution is known to be the shortest
+  boolean optimal;
+
+  FloodSolver() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  FloodSolver(ForkJoinPool pool) {
+    this.tableLimit = 1 << 20;
+    this.splitDepth = 2;
+    this.beamWidth = 64;
+    this.pool = pool;
+  }
+
+  // returns palette colors that flood the whole board of the given game, looking
+  // for the shortest list for at most the given number of milliseconds
+  int[] solve(FloodGame game, long millis) {
+    this.deadline = System.nanoTime() + millis * 1000000;
+    this.optimal = false;
+    if (game.regions == null) {
+      return this.greedy(game);
+    }
+    RegionGraph start = new RegionGraph(game.regions);
+    int[] best = this.beam(start);
+    int bound = this.lowerBound(start, new int[start.count], new int[start.count]);
+    this.optimal = true;
+    while (bound < best.length) {
+      this.seen = new ConcurrentHashMap<RegionState, Integer>();
+      this.found = new AtomicBoolean(false);
+      int[] ans = this.pool.invoke(new SolveTask(this, start, new int[0], bound));
+      if (ans != null) {
+        return ans;
+      }
+      if (this.timeUp()) {
+        // this round was cut short, so a shorter solution may have been missed
+        this.optimal = false;
+        return best;
+      }
+      bound = bound + 1;
+    }
+    return best;
+  }
+
+  // checks if the search is out of time
+  boolean timeUp() {
+    return System.nanoTime() - this.deadline > 0;
+  }
+
+  // returns the moves made by always picking the color that floods the most
+  // cells
+  int[] greedy(RegionGraph start) {
+    RegionGraph s = new RegionGraph(start);
+    ArrayList<Integer> moves = new ArrayList<Integer>();
+    while (!s.allFlooded()) {
+      int c = this.bestMove(s);
+      s.floodWith(c);
+      moves.add(c);
+    }
+    return this.toArray(moves);
+  }
+
+  // returns the moves of the first solution found by following the beamWidth
+  // states after each move that look closest to a solution, or the greedy
+  // moves if that runs out of time
+  // a state looks closer than another if it has a smaller lower bound, or the
+  // same lower bound and more cells flooded
+  int[] beam(RegionGraph start) {
+    int[] dist = new int[start.count];
+    int[] queue = new int[start.count];
+    ArrayList<RegionGraph> states = new ArrayList<RegionGraph>(Arrays.asList(start));
+    ArrayList<int[]> paths = new ArrayList<int[]>(Arrays.asList(new int[0]));
+    while (!this.timeUp()) {
+      ArrayList<RegionGraph> nextStates = new ArrayList<RegionGraph>();
+      ArrayList<int[]> nextPaths = new ArrayList<int[]>();
+      ArrayList<long[]> keys = new ArrayList<long[]>();
+      HashSet<RegionState> seenHere = new HashSet<RegionState>();
+      for (int k = 0; k < states.size(); k++) {
+        RegionGraph s = states.get(k);
+        for (int c = 0; c < s.frontier.length; c++) {
+          if (s.frontierSize[c] > 0) {
+            RegionGraph next = new RegionGraph(s);
+            next.floodWith(c);
+            int[] path = Arrays.copyOf(paths.get(k), paths.get(k).length + 1);
+            path[path.length - 1] = c;
+            if (next.allFlooded()) {
+              return path;
+            }
+            if (seenHere.add(new RegionState(next.flooded))) {
+              keys.add(new long[] { this.lowerBound(next, dist, queue), -next.floodedCells,
+                  nextStates.size() });
+              nextStates.add(next);
+              nextPaths.add(path);
+            }
+          }
+        }
+      }
+      keys.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+      states = new ArrayList<RegionGraph>();
+      paths = new ArrayList<int[]>();
+      for (int k = 0; k < keys.size() && k < this.beamWidth; k++) {
+        states.add(nextStates.get((int) keys.get(k)[2]));
+        paths.add(nextPaths.get((int) keys.get(k)[2]));
+      }
+    }
+    return this.greedy(start);
+  }
+
+  // returns the moves made by always picking the color that floods the most
+  // cells, for boards that have to be flooded cell by cell
+  int[] greedy(FloodGame game) {
+    FloodGame g = game.copy();
+    ArrayList<Integer> moves = new ArrayList<Integer>();
+    while (!g.allFlooded()) {
+      int best = 0;
+      int bestCount = -1;
+      for (int c = 0; c < g.board().palette.size(); c++) {
+        FloodGame next = g.copy();
+        next.applyMove(c);
+        if (next.board().floodedCount > bestCount) {
+          best = c;
+          bestCount = next.board().floodedCount;
+        }
+      }
+      g.applyMove(best);
+      moves.add(best);
+    }
+    return this.toArray(moves);
+  }
+
+  // returns the color whose move floods the most cells of the given state
+  int bestMove(RegionGraph s) {
+    int best = 0;
+    long bestGain = -1;
+    for (int c = 0; c < s.frontier.length; c++) {
+      long gain = this.gain(s, c);
+      if (gain > bestGain) {
+        best = c;
+        bestGain = gain;
+      }
+    }
+    return best;
+  }
+
+  // returns the color whose move floods the most cells of the given bits, which
+  // is the same color bestMove picks for the regions of the same board
+  int bestMove(BitBoard bits) {
+    int best = 0;
+    long bestGain = -1;
+    for (int c = 0; c < bits.planes.length; c++) {
+      long gain = bits.gain(c);
+      if (gain > bestGain) {
+        best = c;
+        bestGain = gain;
+      }
+    }
+    return best;
+  }
+
+  // returns how many cells a move of color c floods in the given state
+  long gain(RegionGraph s, int c) {
+    return s.frontierCells[c];
+  }
+
+  // returns a number of moves that the given state cannot be flooded in less
+  // than, which is the larger of
+  // - the number of colors left, since a move floods regions of one color
+  // - the distance to the unflooded region furthest from the flood, since a
+  //   move only floods regions next to the flood
+  // dist and queue are scratch space with one slot per region
+  int lowerBound(RegionGraph s, int[] dist, int[] queue) {
+    Arrays.fill(dist, -1);
+    int tail = 0;
+    for (int c = 0; c < s.frontier.length; c++) {
+      for (int k = 0; k < s.frontierSize[c]; k++) {
+        int r = s.frontier[c][k];
+        dist[r] = 1;
+        queue[tail] = r;
+        tail = tail + 1;
+      }
+    }
+    int far = 0;
+    int colorsLeft = 0;
+    for (int head = 0; head < tail; head++) {
+      int r = queue[head];
+      far = dist[r];
+      colorsLeft = colorsLeft | (1 << s.regionColor[r]);
+      for (int k = s.adjStart[r]; k < s.adjStart[r + 1]; k++) {
+        int m = s.adj[k];
+        if (dist[m] == -1 && !s.isFlooded(m)) {
+          dist[m] = far + 1;
+          queue[tail] = m;
+          tail = tail + 1;
+        }
+      }
+    }
+    return Math.max(far, Integer.bitCount(colorsLeft));
+  }
+
+  // returns the given moves as an array
+  int[] toArray(ArrayList<Integer> moves) {
+    int[] ans = new int[moves.size()];
+    for (int i = 0; i < ans.length; i++) {
+      ans[i] = moves.get(i);
+    }
+    return ans;
+  }
+}
+
+// Searches for a solution that starts with the given moves and has at most the
+// given number of moves, splitting into a task per next move until the split
+// depth and searching on its own from there
+@SuppressWarnings("serial")
+class SolveTask extends RecursiveTask<int[]> {
+  FloodSolver solver;
+  RegionGraph state;
+  int[] path;
+  int bound;
+  // scratch space for the lower bound of a state
+  int[] dist;
+  int[] queue;
+
+  SolveTask(FloodSolver solver, RegionGraph state, int[] path, int bound) {
+    this.solver = solver;
+    this.state = state;
+    this.path = path;
+    this.bound = bound;
+  }
+
+  // returns a solution of at most bound moves that starts with the path, or null
+  // if there is none or the search was stopped
+  protected int[] compute() {
+    this.dist = new int[this.state.count];
+    this.queue = new int[this.state.count];
+    if (this.path.length >= this.solver.splitDepth) {
+      int[] moves = Arrays.copyOf(this.path, Math.max(this.bound, this.path.length));
+      return this.search(this.state, moves, this.path.length);
+    }
+    if (!this.worthSearching(this.state, this.path.length)) {
+      return null;
+    }
+    if (this.state.allFlooded()) {
+      this.solver.found.set(true);
+      return this.path;
+    }
+    ArrayList<SolveTask> tasks = new ArrayList<SolveTask>();
+    for (int c : this.order(this.state)) {
+      RegionGraph next = new RegionGraph(this.state);
+      next.floodWith(c);
+      int[] nextPath = Arrays.copyOf(this.path, this.path.length + 1);
+      nextPath[this.path.length] = c;
+      SolveTask task = new SolveTask(this.solver, next, nextPath, this.bound);
+      task.fork();
+      tasks.add(task);
+    }
+    int[] ans = null;
+    for (SolveTask task : tasks) {
+      int[] r = task.join();
+      if (ans == null) {
+        ans = r;
+      }
+    }
+    return ans;
+  }
+
+  // returns a solution of at most bound moves that starts with the first g of
+  // the given moves and reaches the given state, or null if there is none or the
+  // search was stopped
+  // EFFECT: writes the moves tried into moves, and tries them on the given state,
+  // taking each back before the next so the state ends up as it was
+  int[] search(RegionGraph s, int[] moves, int g) {
+    if (s.allFlooded()) {
+      this.solver.found.set(true);
+      return Arrays.copyOf(moves, g);
+    }
+    if (!this.worthSearching(s, g)) {
+      return null;
+    }
+    for (int c : this.order(s)) {
+      int[] delta = s.move(c);
+      moves[g] = c;
+      int[] ans = this.search(s, moves, g + 1);
+      s.undo(delta);
+      if (ans != null) {
+        return ans;
+      }
+    }
+    return null;
+  }
+
+  // checks if a state reached in g moves could still be solved within the bound
+  // and was not already reached in g moves or less
+  // EFFECT: remembers that the state was reached in g moves
+  boolean worthSearching(RegionGraph s, int g) {
+    if (this.solver.found.get() || this.solver.timeUp()
+        || g + this.solver.lowerBound(s, this.dist, this.queue) > this.bound) {
+      return false;
+    }
+    RegionState key = new RegionState(s.flooded);
+    Integer before = this.solver.seen.get(key);
+    if (before != null && before <= g) {
+      return false;
+    }
+    if (this.solver.seen.size() < this.solver.tableLimit) {
+      // the state keeps changing as moves are tried and taken back, so the table
+      // keeps a copy of it
+      this.solver.seen.merge(new RegionState(s.flooded.clone()), g, Math::min);
+    }
+    return true;
+  }
+
+  // returns the colors that flood something in the given state, the ones that
+  // flood the most cells first
+  int[] order(RegionGraph s) {
+    int n = 0;
+    long[] keys = new long[s.frontier.length];
+    for (int c = 0; c < s.frontier.length; c++) {
+      if (s.frontierSize[c] > 0) {
+        // the gain in the high bits and the color in the low bits, so sorting
+        // sorts by gain
+        keys[n] = (this.solver.gain(s, c) << 8) | c;
+        n = n + 1;
+      }
+    }
+    Arrays.sort(keys, 0, n);
+    int[] ans = new int[n];
+    for (int k = 0; k < n; k++) {
+      ans[k] = (int) (keys[n - 1 - k] & 0xFF);
+    }
+    return ans;
+  }
+}
+
+// The flooded regions of a state of a RegionGraph, which is all that changes
+// from one state to the next
+class RegionState {
+  long[] flooded;
+  int hash;
+
+  RegionState(long[] flooded) {
+    this.flooded = flooded;
+    this.hash = Arrays.hashCode(flooded);
+  }
+
+  public int hashCode() {
+    return this.hash;
+  }
+
+  public boolean equals(Object other) {
+    return other instanceof RegionState
+        && Arrays.equals(this.flooded, ((RegionState) other).flooded);
+  }
+}
+
+// Works out the par of each board of a world on a thread of its own, so the
+// window never waits for the solver
+// until the solver is done with a board, the game keeps the limit it had
+class FloodPar {
+  // how long in milliseconds the solver may take for each board
+  long millis;
+  // made when the first search starts, and its thread ends when left idle
+  ThreadPoolExecutor worker;
+  // the search running or done, or null
+  Future<int[]> running;
+  // the board the search is for, and how many moves had been made on it
+  FloodBoard board;
+  int moves;
+
+  FloodPar(long millis) {
+    this.millis = millis;
+  }
+
+  // returns the thread searches run on, made the first time it is needed
+  ThreadPoolExecutor worker() {
+    if (this.worker == null) {
+      this.worker = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread t = new Thread(r, "flood-par");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+          });
+    }
+    return this.worker;
+  }
+
+  // EFFECT: drops any search and starts one for the given game's board as it is
+  // now, on a copy of the game so the player can go on playing
+  void start(FloodGame game) {
+    this.cancel();
+    FloodGame copy = game.copy();
+    long millis = this.millis;
+    this.board = game.board;
+    this.moves = game.moves;
+    this.running = this.worker().submit(() -> new FloodSolver().solve(copy, millis));
+  }
+
+  // EFFECT: drops any search, leaving the game's limit as it is
+  // a search already running still runs out its time, but nothing comes of it
+  void cancel() {
+    if (this.running != null) {
+      this.running.cancel(false);
+      this.running = null;
+    }
+    this.board = null;
+  }
+
+  // EFFECT: once the search for the given game's board is done, allows as many
+  // moves as it needed
+  // returns whether the limit was set
+  boolean apply(FloodGame game) {
+    if (this.running == null || !this.running.isDone()) {
+      return false;
+    }
+    Future<int[]> done = this.running;
+    boolean same = this.board == game.board;
+    this.running = null;
+    this.board = null;
+    if (!same) {
+      return false;
+    }
+    try {
+      game.maxClicks = this.moves + done.get().length;
+      return true;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    catch (CancellationException | ExecutionException e) {
+      // with no par the game keeps the limit it had
+      return false;
+    }
+  }
+
+  // EFFECT: waits for the search, if any, to finish
+  void join() {
+    if (this.running != null) {
+      try {
+        this.running.get();
+      }
+      catch (CancellationException | ExecutionException e) {
+        // a stopped search has nothing more to give
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
+
+class ExamplesFloodSolver {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  // a game on the 3x3 board
+  // red green blue
+  // red red blue
+  // green red red
+  FloodGame game3() {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    b.floodStart();
+    return new FloodGame(b, this.colors, new Random(5));
+  }
+
+  // checks that the given moves win the given game
+  boolean wins(FloodGame game, int[] moves) {
+    FloodGame g = game.copy();
+    for (int c : moves) {
+      g.applyMove(c);
+    }
+    return g.allFlooded();
+  }
+
+  void testSolveSmall(Tester t) {
+    FloodSolver solver = new FloodSolver();
+    int[] moves = solver.solve(this.game3(), 1000);
+    t.checkExpect(moves.length, 2);
+    t.checkExpect(solver.optimal, true);
+    t.checkExpect(this.wins(this.game3(), moves), true);
+  }
+
+  void testLowerBound(Tester t) {
+    FloodSolver solver = new FloodSolver();
+    RegionGraph g = this.game3().regions;
+    t.checkExpect(solver.lowerBound(g, new int[g.count], new int[g.count]), 2);
+    g.floodWith(1);
+    t.checkExpect(solver.lowerBound(g, new int[g.count], new int[g.count]), 1);
+  }
+
+  void testGreedy(Tester t) {
+    FloodSolver solver = new FloodSolver();
+    RegionGraph g = this.game3().regions;
+    t.checkExpect(solver.gain(g, 1), 2L);
+    t.checkExpect(solver.gain(g, 2), 2L);
+    t.checkExpect(solver.gain(g, 0), 0L);
+    t.checkExpect(solver.bestMove(g), 1);
+    t.checkExpect(solver.greedy(g), new int[] { 1, 2 });
+
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    FloodGame noRegions = new FloodGame(b, this.colors, new Random(5));
+    int[] moves = solver.solve(noRegions, 1000);
+    t.checkExpect(this.wins(noRegions, moves), true);
+  }
+
+  void testSolveSeeded(Tester t) {
+    FloodSolver solver = new FloodSolver();
+    for (int seed = 0; seed < 5; seed++) {
+      FloodGame game = new FloodGame(8, 4, new Random(seed));
+      int[] greedy = solver.greedy(game.regions);
+      int[] beam = solver.beam(game.regions);
+      int[] moves = solver.solve(game, 2000);
+      t.checkExpect(this.wins(game, beam), true);
+      t.checkExpect(this.wins(game, moves), true);
+      t.checkExpect(moves.length <= beam.length, true);
+      t.checkExpect(moves.length <= greedy.length, true);
+    }
+  }
+
+  void testUsePar(Tester t) {
+    FloodGame game = new FloodGame(6, 3, new Random(9));
+    game.usePar(1000);
+    int par = game.maxClicks;
+    t.checkExpect(this.wins(game, new FloodSolver().solve(game, 1000)), true);
+    t.checkExpect(new FloodSolver().solve(game, 1000).length, par);
+    game.reset();
+    t.checkExpect(game.maxClicks, new FloodSolver().solve(game, 1000).length);
+  }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.Tester;
+import java.awt.Color;
+
+// A way of picking the next move of a game without a display
+// strategies keep no state of their own, so one can play many games at once
+abstract class AMoveStrategy {
+
+  // returns the palette color to flood the given game with next, using the given
+  // random for any choice it makes at random
+  abstract int chooseMove(FloodGame game, Random rand);
+
+  // returns the name of this strategy
+  abstract String name();
+
+  // returns the colors that would flood at least one more cell of the given game
+  int[] usefulMoves(FloodGame game) {
+    if (game.bits != null) {
+      return game.bits.usefulMoves();
+    }
+    RegionGraph s = game.regions;
+    int n = 0;
+    for (int c = 0; c < s.frontier.length; c++) {
+      if (s.frontierSize[c] > 0) {
+        n = n + 1;
+      }
+    }
+    int[] ans = new int[n];
+    n = 0;
+    for (int c = 0; c < s.frontier.length; c++) {
+      if (s.frontierSize[c] > 0) {
+        ans[n] = c;
+        n = n + 1;
+      }
+    }
+    return ans;
+  }
+}
+
+// Picks any color that floods something, at random
+class RandomStrategy extends AMoveStrategy {
+
+  int chooseMove(FloodGame game, Random rand) {
+    int[] moves = this.usefulMoves(game);
+    return moves[rand.nextInt(moves.length)];
+  }
+
+  String name() {
+    return "random";
+  }
+}
+
+// Picks the color that floods the most cells
+class GreedyStrategy extends AMoveStrategy {
+
+  int chooseMove(FloodGame game, Random rand) {
+    if (game.bits != null) {
+      return new FloodSolver().bestMove(game.bits);
+    }
+    return new FloodSolver().bestMove(game.regions);
+  }
+
+  String name() {
+    return "greedy";
+  }
+}
+
+// Picks the color that starts the list of the given number of moves that floods
+// the most cells, preferring lists that flood everything sooner
+// it tries moves on the regions of the game, so it cannot play on bits
+class LookaheadStrategy extends AMoveStrategy {
+  int depth;
+
+  LookaheadStrategy(int depth) {
+    this.depth = depth;
+  }
+
+  int chooseMove(FloodGame game, Random rand) {
+    // every move tried is taken back, so one copy of the game's regions will do
+    return this.bestMove(new RegionGraph(game.regions));
+  }
+
+  // returns the color that starts the best list of moves from the given state, or
+  // -1 if every region is flooded
+  // EFFECT: tries moves on the given state, leaving it as it was
+  int bestMove(RegionGraph s) {
+    int best = -1;
+    long bestValue = Long.MIN_VALUE;
+    for (int c = 0; c < s.frontier.length; c++) {
+      if (s.frontierSize[c] > 0) {
+        int[] delta = s.move(c);
+        long value = this.value(s, this.depth - 1);
+        s.undo(delta);
+        if (value > bestValue) {
+          best = c;
+          bestValue = value;
+        }
+      }
+    }
+    return best;
+  }
+
+  // returns how good the given state is when the given number of moves are left
+  // to make, which is the most cells those moves can flood, with flooding every
+  // cell with moves to spare worth more than anything else
+  // EFFECT: tries moves on the given state, leaving it as it was
+  long value(RegionGraph s, int movesLeft) {
+    if (s.allFlooded()) {
+      return ((long) movesLeft + 1) << 40;
+    }
+    if (movesLeft == 0) {
+      return s.floodedCells;
+    }
+    long ans = 0;
+    for (int c = 0; c < s.frontier.length; c++) {
+      if (s.frontierSize[c] > 0) {
+        int[] delta = s.move(c);
+        ans = Math.max(ans, this.value(s, movesLeft - 1));
+        s.undo(delta);
+      }
+    }
+    return ans;
+  }
+
+  String name() {
+    return "lookahead" + this.depth;
+  }
+}
+
+class ExamplesMoveStrategy {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  // a game on the 3x3 board
+  // red green blue
+  // red red blue
+  // green red red
+  FloodGame game3() {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    b.floodStart();
+    return new FloodGame(b, this.colors, new Random(5));
+  }
+
+  void testUsefulMoves(Tester t) {
+    FloodGame g = this.game3();
+    t.checkExpect(new GreedyStrategy().usefulMoves(g), new int[] { 1, 2 });
+    g.applyMove(2);
+    t.checkExpect(new GreedyStrategy().usefulMoves(g), new int[] { 1 });
+  }
+
+  void testChooseMove(Tester t) {
+    FloodGame g = this.game3();
+    t.checkExpect(new GreedyStrategy().chooseMove(g, new Random(1)), 1);
+    t.checkOneOf(new RandomStrategy().chooseMove(g, new Random(1)), 1, 2);
+    t.checkExpect(new LookaheadStrategy(2).chooseMove(g, new Random(1)), 1);
+    t.checkExpect(new LookaheadStrategy(2).value(g.regions, 2), 1L << 40);
+    t.checkExpect(new LookaheadStrategy(2).value(g.regions, 3), 2L << 40);
+    t.checkExpect(new LookaheadStrategy(1).value(g.regions, 0), 5L);
+  }
+
+  void testPlaysToTheEnd(Tester t) {
+    AMoveStrategy[] strategies = new AMoveStrategy[] { new RandomStrategy(),
+        new GreedyStrategy(), new LookaheadStrategy(3) };
+    for (AMoveStrategy s : strategies) {
+      FloodGame g = new FloodGame(10, 5, new Random(4));
+      Random rand = new Random(4);
+      while (!g.allFlooded()) {
+        g.applyMove(s.chooseMove(g, rand));
+      }
+      t.checkExpect(g.board().allFlooded(), true);
+    }
+  }
+}
@@ -0,0 +1,485 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.Tester;
+import java.awt.Color;
+
+// Represents a board as a graph of regions, where a region is a group of
+// connected unflooded cells of one color, or all of the flooded cells
+// a move absorbs every region of its color next to the flood, so it costs as
+// much as the regions it absorbs instead of the cells they cover
+// every region next to the flood is kept in a frontier list for its color, and
+// a move takes the whole list for its color at once
+// the cells of each list are counted as regions join and leave it, so which
+// moves are useful and how much each would flood is known without looking
+class RegionGraph {
+  // the region of each cell
+  int[] region;
+  // the palette color, number of cells and adjacent regions of each region
+  // the regions adjacent to region r are adj[adjStart[r]] to adj[adjStart[r + 1] - 1]
+  byte[] regionColor;
+  int[] regionSize;
+  int[] adjStart;
+  int[] adj;
+  int count;
+
+  // one bit per region, set if the region is flooded
+  long[] flooded;
+  // the palette color of the flood
+  int floodColor;
+  // how many cells are flooded
+  int floodedCells;
+  // for each palette color, the unflooded regions of that color next to the flood
+  int[][] frontier;
+  int[] frontierSize;
+  // for each palette color, how many cells the regions of its frontier list hold,
+  // which is how many cells a move of that color would flood
+  int[] frontierCells;
+  // one bit per region, set if the region is in a frontier list
+  long[] inFrontier;
+  // the cells in order of their region, where the cells of region r are
+  // cells[cellStart[r]] to cells[cellStart[r + 1] - 1], so a move's cells can be
+  // painted without looking at the rest of the board
+  int[] cells;
+  int[] cellStart;
+
+  // makes the graph of the regions of the given board, where region 0 holds the
+  // top left cell
+  RegionGraph(FloodBoard board) {
+    int n = board.colors.length;
+    this.region = new int[n];
+    Arrays.fill(this.region, -1);
+    // the cells in order of their region, where the cells of region r start at
+    // order[start[r]]
+    int[] order = new int[n];
+    int[] start = new int[n + 1];
+    this.regionColor = new byte[n];
+    this.count = 0;
+    int tail = 0;
+    for (int s = 0; s < n; s++) {
+      if (this.region[s] == -1) {
+        int r = this.count;
+        this.count = this.count + 1;
+        start[r] = tail;
+        this.regionColor[r] = board.colors[s];
+        this.region[s] = r;
+        order[tail] = s;
+        tail = tail + 1;
+        for (int head = start[r]; head < tail; head++) {
+          int i = order[head];
+          tail = this.label(board, i, board.left(i), order, tail);
+          tail = this.label(board, i, board.top(i), order, tail);
+          tail = this.label(board, i, board.right(i), order, tail);
+          tail = this.label(board, i, board.bottom(i), order, tail);
+        }
+      }
+    }
+    start[this.count] = n;
+    this.cells = order;
+    this.cellStart = Arrays.copyOf(start, this.count + 1);
+    this.regionColor = Arrays.copyOf(this.regionColor, this.count);
+    this.regionSize = new int[this.count];
+    for (int r = 0; r < this.count; r++) {
+      this.regionSize[r] = start[r + 1] - start[r];
+    }
+
+    this.adjStart = new int[this.count + 1];
+    this.adj = new int[16];
+    int len = 0;
+    int[] seen = new int[this.count];
+    Arrays.fill(seen, -1);
+    for (int r = 0; r < this.count; r++) {
+      this.adjStart[r] = len;
+      for (int k = start[r]; k < start[r + 1]; k++) {
+        int i = order[k];
+        len = this.link(board.left(i), r, seen, len);
+        len = this.link(board.top(i), r, seen, len);
+        len = this.link(board.right(i), r, seen, len);
+        len = this.link(board.bottom(i), r, seen, len);
+      }
+    }
+    this.adjStart[this.count] = len;
+    this.adj = Arrays.copyOf(this.adj, len);
+
+    this.flooded = new long[(this.count + 63) / 64];
+    this.inFrontier = new long[this.flooded.length];
+    this.frontier = new int[board.palette.size()][];
+    this.frontierSize = new int[board.palette.size()];
+    this.frontierCells = new int[board.palette.size()];
+    for (int c = 0; c < this.frontier.length; c++) {
+      this.frontier[c] = new int[4];
+    }
+    this.floodColor = this.regionColor[0];
+    this.floodedCells = 0;
+    if (board.isFlooded(0)) {
+      this.absorb(0);
+    }
+  }
+
+  // makes a graph in the same state as the given graph that can be played
+  // without changing it, sharing the regions, which never change
+  RegionGraph(RegionGraph other) {
+    this.region = other.region;
+    this.regionColor = other.regionColor;
+    this.regionSize = other.regionSize;
+    this.adjStart = other.adjStart;
+    this.adj = other.adj;
+    this.count = other.count;
+    this.cells = other.cells;
+    this.cellStart = other.cellStart;
+    this.flooded = Arrays.copyOf(other.flooded, other.flooded.length);
+    this.floodColor = other.floodColor;
+    this.floodedCells = other.floodedCells;
+    this.frontier = new int[other.frontier.length][];
+    for (int c = 0; c < this.frontier.length; c++) {
+      this.frontier[c] = Arrays.copyOf(other.frontier[c], other.frontier[c].length);
+    }
+    this.frontierSize = Arrays.copyOf(other.frontierSize, other.frontierSize.length);
+    this.frontierCells = Arrays.copyOf(other.frontierCells, other.frontierCells.length);
+    this.inFrontier = Arrays.copyOf(other.inFrontier, other.inFrontier.length);
+  }
+
+  // EFFECT: puts the cell j next to cell i in the region of i if they belong
+  // together, and queues it to have its own adjacent cells looked at
+  // returns the new end of the queue
+  int label(FloodBoard board, int i, int j, int[] order, int tail) {
+    if (j == FloodBoard.BORDER || this.region[j] != -1
+        || board.isFlooded(i) != board.isFlooded(j)
+        || (!board.isFlooded(i) && board.colors[i] != board.colors[j])) {
+      return tail;
+    }
+    this.region[j] = this.region[i];
+    order[tail] = j;
+    return tail + 1;
+  }
+
+  // EFFECT: adds the region of cell j to the regions adjacent to region r unless
+  // it is r or already there
+  // returns the new length of the adjacency array
+  int link(int j, int r, int[] seen, int len) {
+    if (j == FloodBoard.BORDER) {
+      return len;
+    }
+    int other = this.region[j];
+    if (other == r || seen[other] == r) {
+      return len;
+    }
+    seen[other] = r;
+    if (len == this.adj.length) {
+      this.adj = Arrays.copyOf(this.adj, len * 2);
+    }
+    this.adj[len] = other;
+    return len + 1;
+  }
+
+  // checks if the flood is exactly region 0, which is what every board that
+  // makeBoard or a move leaves behind looks like
+  // boards built by hand can have flooded cells away from the top left cell,
+  // and those have to be flooded cell by cell
+  boolean coversFlood(FloodBoard board) {
+    return board.isFlooded(0) && this.floodedCells == board.floodedCount;
+  }
+
+  // checks if the given region is flooded
+  boolean isFlooded(int r) {
+    return (this.flooded[r >> 6] & (1L << r)) != 0;
+  }
+
+  // checks if every cell is flooded
+  boolean allFlooded() {
+    return this.floodedCells == this.region.length;
+  }
+
+  // EFFECT: changes the flood to the palette color c and floods every region of
+  // that color next to it
+  void floodWith(int c) {
+    this.floodColor = c;
+    int n = this.frontierSize[c];
+    int[] absorbed = this.frontier[c];
+    this.frontierSize[c] = 0;
+    this.frontierCells[c] = 0;
+    // no region of color c is next to another unflooded region of color c, so
+    // absorbing them never adds to the list being read
+    for (int k = 0; k < n; k++) {
+      this.absorb(absorbed[k]);
+    }
+  }
+
+  // EFFECT: changes the flood to the palette color c and floods every region of
+  // that color next to it
+  // returns what the move changed, for undo to take back: the color the flood
+  // had, the move's color, the size of each frontier list before the move, and
+  // the regions the move flooded
+  // a move only adds to the end of the frontier lists of other colors, so their
+  // old sizes are enough to take the additions back
+  int[] move(int c) {
+    int colors = this.frontier.length;
+    int n = this.frontierSize[c];
+    int[] delta = new int[2 + colors + n];
+    delta[0] = this.floodColor;
+    delta[1] = c;
+    System.arraycopy(this.frontierSize, 0, delta, 2, colors);
+    System.arraycopy(this.frontier[c], 0, delta, 2 + colors, n);
+    this.floodWith(c);
+    return delta;
+  }
+
+  // EFFECT: takes back the move that returned the given delta, which must be the
+  // last move made that has not been taken back
+  // costs as much as the regions the move flooded and added to the frontier
+  void undo(int[] delta) {
+    int colors = this.frontier.length;
+    int c = delta[1];
+    for (int d = 0; d < colors; d++) {
+      int before = delta[2 + d];
+      if (d != c) {
+        for (int k = before; k < this.frontierSize[d]; k++) {
+          int m = this.frontier[d][k];
+          this.inFrontier[m >> 6] &= ~(1L << m);
+          this.frontierCells[d] = this.frontierCells[d] - this.regionSize[m];
+        }
+        this.frontierSize[d] = before;
+      }
+    }
+    int n = delta.length - 2 - colors;
+    System.arraycopy(delta, 2 + colors, this.frontier[c], 0, n);
+    this.frontierSize[c] = n;
+    for (int k = 0; k < n; k++) {
+      int r = this.frontier[c][k];
+      this.flooded[r >> 6] &= ~(1L << r);
+      this.floodedCells = this.floodedCells - this.regionSize[r];
+      this.frontierCells[c] = this.frontierCells[c] + this.regionSize[r];
+    }
+    this.floodColor = delta[0];
+  }
+
+  // EFFECT: floods the given region and adds the unflooded regions next to it
+  // to the frontier
+  void absorb(int r) {
+    this.flooded[r >> 6] |= 1L << r;
+    this.floodedCells = this.floodedCells + this.regionSize[r];
+    for (int k = this.adjStart[r]; k < this.adjStart[r + 1]; k++) {
+      int m = this.adj[k];
+      if (!this.isFlooded(m) && (this.inFrontier[m >> 6] & (1L << m)) == 0) {
+        this.inFrontier[m >> 6] |= 1L << m;
+        int c = this.regionColor[m];
+        if (this.frontierSize[c] == this.frontier[c].length) {
+          this.frontier[c] = Arrays.copyOf(this.frontier[c], this.frontierSize[c] * 2);
+        }
+        this.frontier[c][this.frontierSize[c]] = m;
+        this.frontierSize[c] = this.frontierSize[c] + 1;
+        this.frontierCells[c] = this.frontierCells[c] + this.regionSize[m];
+      }
+    }
+  }
+
+  // EFFECT: changes the cells of the given board, which matched this graph before
+  // the move that returned the given delta, to match it after the move
+  // costs as much as the cells the move changed
+  void paintMove(FloodBoard board, int[] delta) {
+    int colors = this.frontier.length;
+    for (int k = 2 + colors; k < delta.length; k++) {
+      int r = delta[k];
+      for (int j = this.cellStart[r]; j < this.cellStart[r + 1]; j++) {
+        board.flood(this.cells[j]);
+      }
+    }
+    board.recolorFlood(delta[1]);
+  }
+
+  // EFFECT: changes the cells of the given board, which matched this graph after
+  // the move that returned the given delta, to match it before the move, once
+  // the move is taken back
+  // costs as much as the cells the move changed
+  void unpaintMove(FloodBoard board, int[] delta) {
+    int colors = this.frontier.length;
+    for (int k = 2 + colors; k < delta.length; k++) {
+      int r = delta[k];
+      for (int j = this.cellStart[r]; j < this.cellStart[r + 1]; j++) {
+        board.unflood(this.cells[j]);
+      }
+    }
+    board.recolorFlood(delta[0]);
+  }
+
+  // EFFECT: changes the colors and flooded cells of the given board to match
+  // this graph
+  void paint(FloodBoard board) {
+    Arrays.fill(board.flooded, 0);
+    for (int i = 0; i < this.region.length; i++) {
+      int r = this.region[i];
+      if (this.isFlooded(r)) {
+        board.colors[i] = (byte) this.floodColor;
+        board.flooded[i >> 6] |= 1L << i;
+      }
+      else {
+        board.colors[i] = this.regionColor[r];
+      }
+    }
+    board.floodedCount = this.floodedCells;
+    board.allDirty = true;
+    if (board.pyramid != null) {
+      board.pyramid.build();
+    }
+  }
+}
+
+class ExamplesRegionGraph {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  // the 3x3 board
+  // red green blue
+  // red red blue
+  // green red red
+  FloodBoard board3() {
+    FloodBoard b = new FloodBoard(3, this.colors);
+    b.colors = new byte[] { 0, 1, 2, 0, 0, 2, 1, 0, 0 };
+    b.floodStart();
+    return b;
+  }
+
+  void testRegions(Tester t) {
+    RegionGraph g = new RegionGraph(this.board3());
+    t.checkExpect(g.count, 4);
+    t.checkExpect(g.region, new int[] { 0, 1, 2, 0, 0, 2, 3, 0, 0 });
+    t.checkExpect(g.regionColor, new byte[] { 0, 1, 2, 1 });
+    t.checkExpect(g.regionSize, new int[] { 5, 1, 2, 1 });
+    t.checkExpect(g.adjStart, new int[] { 0, 3, 5, 7, 8 });
+    t.checkExpect(g.adj, new int[] { 1, 3, 2, 0, 2, 1, 0, 0 });
+    t.checkExpect(g.coversFlood(this.board3()), true);
+  }
+
+  void testFrontier(Tester t) {
+    RegionGraph g = new RegionGraph(this.board3());
+    t.checkExpect(g.isFlooded(0), true);
+    t.checkExpect(g.floodedCells, 5);
+    t.checkExpect(g.frontierSize, new int[] { 0, 2, 1 });
+    t.checkExpect(g.frontierCells, new int[] { 0, 2, 2 });
+    g.floodWith(2);
+    t.checkExpect(g.frontierCells, new int[] { 0, 2, 0 });
+    t.checkExpect(g.floodColor, 2);
+    t.checkExpect(g.floodedCells, 7);
+    t.checkExpect(g.frontierSize, new int[] { 0, 2, 0 });
+    t.checkExpect(g.allFlooded(), false);
+    g.floodWith(0);
+    t.checkExpect(g.floodedCells, 7);
+    g.floodWith(1);
+    t.checkExpect(g.allFlooded(), true);
+  }
+
+  void testPaint(Tester t) {
+    FloodBoard b = this.board3();
+    RegionGraph g = new RegionGraph(b);
+    g.floodWith(1);
+    g.paint(b);
+    t.checkExpect(b.colors, new byte[] { 1, 1, 2, 1, 1, 2, 1, 1, 1 });
+    t.checkExpect(b.floodedCount, 7);
+    t.checkExpect(b.isFlooded(6), true);
+    t.checkExpect(b.isFlooded(2), false);
+  }
+
+  void testCopy(Tester t) {
+    RegionGraph g = new RegionGraph(this.board3());
+    RegionGraph c = new RegionGraph(g);
+    c.floodWith(1);
+    t.checkExpect(c.floodedCells, 7);
+    t.checkExpect(g.floodedCells, 5);
+    t.checkExpect(c.region == g.region, true);
+  }
+
+  void testStrayFlood(Tester t) {
+    FloodBoard b = this.board3();
+    b.flood(2);
+    t.checkExpect(new RegionGraph(b).coversFlood(b), false);
+    FloodBoard none = new FloodBoard(3, this.colors);
+    t.checkExpect(new RegionGraph(none).coversFlood(none), false);
+  }
+
+  void testUndo(Tester t) {
+    RegionGraph g = new RegionGraph(this.board3());
+    RegionGraph start = new RegionGraph(g);
+    int[] first = g.move(2);
+    t.checkExpect(first, new int[] { 0, 2, 0, 2, 1, 2 });
+    RegionGraph afterFirst = new RegionGraph(g);
+    int[] second = g.move(1);
+    t.checkExpect(g.allFlooded(), true);
+    g.undo(second);
+    t.checkExpect(g.flooded, afterFirst.flooded);
+    t.checkExpect(g.floodedCells, 7);
+    t.checkExpect(g.floodColor, 2);
+    t.checkExpect(g.frontierSize, afterFirst.frontierSize);
+    g.undo(first);
+    t.checkExpect(g.flooded, start.flooded);
+    t.checkExpect(g.inFrontier, start.inFrontier);
+    t.checkExpect(g.frontierSize, start.frontierSize);
+    t.checkExpect(g.floodColor, 0);
+    t.checkExpect(g.floodedCells, 5);
+    // a move that floods nothing only changes the color
+    int[] none = g.move(0);
+    g.undo(none);
+    t.checkExpect(g.frontierSize, start.frontierSize);
+  }
+
+  void testUndoRandomGames(Tester t) {
+    for (int seed = 0; seed < 20; seed++) {
+      FloodGame game = new FloodGame(15, 6, new Random(seed));
+      RegionGraph g = game.regions;
+      Random rand = new Random(seed);
+      ArrayList<int[]> deltas = new ArrayList<int[]>();
+      ArrayList<RegionGraph> states = new ArrayList<RegionGraph>();
+      while (!g.allFlooded()) {
+        states.add(new RegionGraph(g));
+        deltas.add(g.move(rand.nextInt(6)));
+      }
+      for (int k = deltas.size() - 1; k >= 0; k--) {
+        g.undo(deltas.get(k));
+        t.checkExpect(g.flooded, states.get(k).flooded);
+        t.checkExpect(g.inFrontier, states.get(k).inFrontier);
+        t.checkExpect(g.floodedCells, states.get(k).floodedCells);
+        t.checkExpect(g.floodColor, states.get(k).floodColor);
+        for (int c = 0; c < 6; c++) {
+          t.checkExpect(Arrays.copyOf(g.frontier[c], g.frontierSize[c]),
+              Arrays.copyOf(states.get(k).frontier[c], states.get(k).frontierSize[c]));
+        }
+      }
+    }
+  }
+
+  // returns the number of cells of the regions of each frontier list of the
+  // given graph, counted from the lists
+  int[] countFrontierCells(RegionGraph g) {
+    int[] ans = new int[g.frontier.length];
+    for (int c = 0; c < ans.length; c++) {
+      for (int k = 0; k < g.frontierSize[c]; k++) {
+        ans[c] = ans[c] + g.regionSize[g.frontier[c][k]];
+      }
+    }
+    return ans;
+  }
+
+  void testFrontierCells(Tester t) {
+    Random rand = new Random(12);
+    boolean same = true;
+    for (int game = 0; game < 20; game++) {
+      FloodBoard b = new FloodBoard(2 + rand.nextInt(30), rand, new Utils().randColorSet(rand,
+          new Utils().gameColors(), 2 + rand.nextInt(6)));
+      RegionGraph g = new RegionGraph(b);
+      ArrayDeque<int[]> deltas = new ArrayDeque<int[]>();
+      same = same && Arrays.equals(g.frontierCells, this.countFrontierCells(g));
+      for (int m = 0; m < 60 && !g.allFlooded(); m++) {
+        if (!deltas.isEmpty() && rand.nextInt(3) == 0) {
+          g.undo(deltas.pop());
+        }
+        else {
+          deltas.push(g.move(rand.nextInt(g.frontier.length)));
+        }
+        same = same && Arrays.equals(g.frontierCells, this.countFrontierCells(g));
+      }
+    }
+    t.checkExpect(same, true);
+  }
+}
@@ -0,0 +1,473 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import tester.Tester;
+import java.awt.Color;
+
+// Floods a board with a palette color all at once on a fork-join pool, for
+// boards too large to flood on one core
+// the board is cut into square tiles, and each round floods every active tile
+// as far as it can go without leaving the tile, each tile on a task of its own
+// a tile whose flood reached its edge makes the tile across that edge active
+// for the next round, which picks the flood up from there, and the rounds stop
+// once no tile is active
+// the cells reached are kept as a byte each, per tile, so tasks never write to
+// the same array, and tiles the flood never gets to cost nothing
+// only once every round is done are the reached cells flooded and colored, a
+// tile per task
+// the board ends just as flood(0), updateColor(0, c), startWave and every
+// floodStep after it would leave it
+class TileFlood {
+  // the width and height of a tile in cells
+  static final int TILE = 128;
+  // sets bits of the board's flooded cells from tasks that may share a word
+  static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+  // the queue of cells each worker thread floods its tiles with, kept between
+  // tiles, rounds and moves so that flooding a tile allocates nothing
+  static final ThreadLocal<int[]> QUEUES = ThreadLocal.withInitial(() -> new int[0]);
+
+  FloodBoard board;
+  int c;
+  int tile;
+  // how many tiles there are along a side of the board
+  int tiles;
+  // for each tile, 1 for each of its cells, by row, the flood has reached, or null
+  // if the flood has not got to the tile
+  byte[][] reached;
+  // whether each tile is to be flooded in the next round
+  boolean[] active;
+  // the sides of each tile the flood reached in the last round, as the bits of
+  // LEFT, UP, RIGHT and DOWN
+  int[] edges;
+  // the tiles the flood got to, in the order it got to them
+  int[] touched;
+  int touchedSize;
+  int rounds;
+  // for each tile the flood got to, the board indexes of its cells the move
+  // flooded that were not flooded, where the tile's count says how many there are
+  int[][] added;
+  int[] addedCounts;
+
+  static final int LEFT = 1;
+  static final int UP = 2;
+  static final int RIGHT = 4;
+  static final int DOWN = 8;
+
+  TileFlood(FloodBoard board, int c) {
+    this(board, c, TILE);
+  }
+
+  TileFlood(FloodBoard board, int c, int tile) {
+    this.board = board;
+    this.c = c;
+    this.tile = tile;
+    this.tiles = (board.size + tile - 1) / tile;
+    this.reached = new byte[this.tiles * this.tiles][];
+    this.active = new boolean[this.tiles * this.tiles];
+    this.edges = new int[this.tiles * this.tiles];
+    this.touched = new int[this.tiles * this.tiles];
+    this.added = new int[this.tiles * this.tiles][];
+    this.addedCounts = new int[this.tiles * this.tiles];
+  }
+
+  // EFFECT: floods the board on the given pool
+  void run(ForkJoinPool pool) {
+    this.active[0] = true;
+    int[] todo = new int[this.active.length];
+    int n = 1;
+    todo[0] = 0;
+    while (n > 0) {
+      for (int k = 0; k < n; k++) {
+        this.active[todo[k]] = false;
+        if (this.reached[todo[k]] == null) {
+          this.reached[todo[k]] = new byte[this.width(todo[k]) * this.height(todo[k])];
+          this.touched[this.touchedSize] = todo[k];
+          this.touchedSize = this.touchedSize + 1;
+        }
+      }
+      pool.invoke(new TileRound(this, todo, 0, n));
+      this.rounds = this.rounds + 1;
+      n = this.next(todo, n);
+    }
+    long added = pool.invoke(new PaintTiles(this, 0, this.touchedSize));
+    this.board.floodedCount = this.board.floodedCount + (int) added;
+    this.board.waveSize = 0;
+    this.board.allDirty = true;
+    if (this.board.pyramid != null) {
+      this.board.pyramid.build();
+    }
+  }
+
+  // returns the board indexes of the cells the move flooded that were not flooded,
+  // tile by tile in the order the flood got to them
+  int[] added() {
+    int n = 0;
+    for (int k = 0; k < this.touchedSize; k++) {
+      n = n + this.addedCounts[this.touched[k]];
+    }
+    int[] ans = new int[n];
+    int at = 0;
+    for (int k = 0; k < this.touchedSize; k++) {
+      int t = this.touched[k];
+      System.arraycopy(this.added[t], 0, ans, at, this.addedCounts[t]);
+      at = at + this.addedCounts[t];
+    }
+    return ans;
+  }
+
+  // returns how many cells wide the given tile is
+  int width(int t) {
+    return Math.min(this.tile, this.board.size - (t % this.tiles) * this.tile);
+  }
+
+  // returns how many cells high the given tile is
+  int height(int t) {
+    return Math.min(this.tile, this.board.size - (t / this.tiles) * this.tile);
+  }
+
+  // EFFECT: replaces the first n tiles of todo, which were just flooded, with the
+  // tiles across the edges they reached
+  // returns how many tiles there are to flood next
+  int next(int[] todo, int n) {
+    int count = 0;
+    int[] from = Arrays.copyOf(todo, n);
+    for (int t : from) {
+      int tx = t % this.tiles;
+      int ty = t / this.tiles;
+      int e = this.edges[t];
+      count = this.activate(todo, count, e & LEFT, tx - 1, ty);
+      count = this.activate(todo, count, e & UP, tx, ty - 1);
+      count = this.activate(todo, count, e & RIGHT, tx + 1, ty);
+      count = this.activate(todo, count, e & DOWN, tx, ty + 1);
+    }
+    return count;
+  }
+
+  // EFFECT: adds the tile at (tx, ty) to todo if the edge toward it was reached
+  // and it is not there already
+  // returns how many tiles todo holds
+  int activate(int[] todo, int count, int edge, int tx, int ty) {
+    if (edge != 0) {
+      int t = ty * this.tiles + tx;
+      if (!this.active[t]) {
+        this.active[t] = true;
+        todo[count] = t;
+        return count + 1;
+      }
+    }
+    return count;
+  }
+
+  // checks if the flood of this move can pass through the given cell
+  boolean open(int i) {
+    return this.board.isFlooded(i) || this.board.colors[i] == this.c;
+  }
+
+  // EFFECT: floods the given tile as far as it goes without leaving it, starting
+  // from the top left cell on the first round and from the cells next to cells
+  // other tiles reached otherwise, and keeps which edges of the tile it reached
+  void floodTile(int t) {
+    int tx = t % this.tiles;
+    int ty = t / this.tiles;
+    int x0 = tx * this.tile;
+    int y0 = ty * this.tile;
+    int w = this.width(t);
+    int h = this.height(t);
+    byte[] mine = this.reached[t];
+    int[] queue = TileFlood.queue(w * h);
+    int tail = 0;
+    if (t == 0 && this.rounds == 0) {
+      tail = this.reach(queue, tail, mine, 0, 0, 0);
+    }
+    // the cells along each edge whose neighbor across it was reached
+    if (ty > 0) {
+      byte[] across = this.reached[t - this.tiles];
+      int last = (this.height(t - this.tiles) - 1) * w;
+      for (int x = 0; x < w && across != null; x++) {
+        if (across[last + x] == 1) {
+          tail = this.reach(queue, tail, mine, x, x0 + x, y0);
+        }
+      }
+    }
+    if (ty < this.tiles - 1) {
+      byte[] across = this.reached[t + this.tiles];
+      for (int x = 0; x < w && across != null; x++) {
+        if (across[x] == 1) {
+          tail = this.reach(queue, tail, mine, (h - 1) * w + x, x0 + x, y0 + h - 1);
+        }
+      }
+    }
+    if (tx > 0) {
+      byte[] across = this.reached[t - 1];
+      for (int y = 0; y < h && across != null; y++) {
+        if (across[y * this.tile + this.tile - 1] == 1) {
+          tail = this.reach(queue, tail, mine, y * w, x0, y0 + y);
+        }
+      }
+    }
+    if (tx < this.tiles - 1) {
+      byte[] across = this.reached[t + 1];
+      int acrossWidth = this.width(t + 1);
+      for (int y = 0; y < h && across != null; y++) {
+        if (across[y * acrossWidth] == 1) {
+          tail = this.reach(queue, tail, mine, y * w + w - 1, x0 + w - 1, y0 + y);
+        }
+      }
+    }
+    int edges = 0;
+    for (int head = 0; head < tail; head++) {
+      int l = queue[head];
+      int x = l % w;
+      int y = l / w;
+      edges = edges | (x == 0 ? LEFT : 0) | (y == 0 ? UP : 0) | (x == w - 1 ? RIGHT : 0)
+          | (y == h - 1 ? DOWN : 0);
+      if (x > 0) {
+        tail = this.reach(queue, tail, mine, l - 1, x0 + x - 1, y0 + y);
+      }
+      if (y > 0) {
+        tail = this.reach(queue, tail, mine, l - w, x0 + x, y0 + y - 1);
+      }
+      if (x < w - 1) {
+        tail = this.reach(queue, tail, mine, l + 1, x0 + x + 1, y0 + y);
+      }
+      if (y < h - 1) {
+        tail = this.reach(queue, tail, mine, l + w, x0 + x, y0 + y + 1);
+      }
+    }
+    // edges of the board lead nowhere
+    int last = this.tiles - 1;
+    this.edges[t] = edges & ~((tx == 0 ? LEFT : 0) | (ty == 0 ? UP : 0)
+        | (tx == last ? RIGHT : 0) | (ty == last ? DOWN : 0));
+  }
+
+  // returns this thread's queue, made to hold at least the given number of cells
+  static int[] queue(int cells) {
+    int[] ans = QUEUES.get();
+    if (ans.length < cells) {
+      ans = new int[cells];
+      QUEUES.set(ans);
+    }
+    return ans;
+  }
+
+  // EFFECT: reaches and queues the cell at index l of the given tile's reached
+  // cells, which is the cell at (x, y) of the board, if the flood can pass
+  // through it and has not reached it yet
+  // returns the new end of the queue
+  int reach(int[] queue, int tail, byte[] mine, int l, int x, int y) {
+    if (mine[l] == 0 && this.open(y * this.board.size + x)) {
+      mine[l] = 1;
+      queue[tail] = l;
+      return tail + 1;
+    }
+    return tail;
+  }
+
+  // EFFECT: floods the reached cells of the given tile and changes them to the
+  // move's color
+  // returns how many of them were not flooded before
+  long paint(int t) {
+    int size = this.board.size;
+    int x0 = (t % this.tiles) * this.tile;
+    int y0 = (t / this.tiles) * this.tile;
+    int w = this.width(t);
+    int h = this.height(t);
+    byte[] mine = this.reached[t];
+    this.added[t] = new int[16];
+    long ans = 0;
+    for (int y = 0; y < h; y++) {
+      int word = -1;
+      long bits = 0;
+      for (int x = 0; x < w; x++) {
+        if (mine[y * w + x] == 1) {
+          int i = (y0 + y) * size + x0 + x;
+          this.board.colors[i] = (byte) this.c;
+          if (i >> 6 != word) {
+            ans = ans + this.addCells(t, word, this.setBits(word, bits));
+            word = i >> 6;
+            bits = 0;
+          }
+          bits = bits | (1L << i);
+        }
+      }
+      ans = ans + this.addCells(t, word, this.setBits(word, bits));
+    }
+    return ans;
+  }
+
+  // EFFECT: sets the given bits of the given word of the board's flooded cells, if
+  // there is a word
+  // returns the ones that were not set before
+  long setBits(int word, long bits) {
+    if (word < 0) {
+      return 0;
+    }
+    long old = (long) WORDS.getAndBitwiseOr(this.board.flooded, word, bits);
+    return bits & ~old;
+  }
+
+  // EFFECT: adds the cells of the given bits of the given word of the board's
+  // flooded cells to the cells the move flooded in tile t
+  // returns how many there are
+  long addCells(int t, int word, long bits) {
+    int n = this.addedCounts[t];
+    for (long b = bits; b != 0; b = b & (b - 1)) {
+      if (n == this.added[t].length) {
+        this.added[t] = Arrays.copyOf(this.added[t], n * 2);
+      }
+      this.added[t][n] = (word << 6) + Long.numberOfTrailingZeros(b);
+      n = n + 1;
+    }
+    this.addedCounts[t] = n;
+    return Long.bitCount(bits);
+  }
+}
+
+// Floods the given tiles of a TileFlood, splitting them between tasks until each
+// has one
+@SuppressWarnings("serial")
+class TileRound extends RecursiveAction {
+  TileFlood flood;
+  int[] todo;
+  int from;
+  int to;
+
+  // floods tiles todo[from] to todo[to - 1]
+  TileRound(TileFlood flood, int[] todo, int from, int to) {
+    this.flood = flood;
+    this.todo = todo;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: floods the tiles of this task
+  protected void compute() {
+    if (this.to - this.from == 1) {
+      this.flood.floodTile(this.todo[this.from]);
+    }
+    else {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new TileRound(this.flood, this.todo, this.from, mid),
+          new TileRound(this.flood, this.todo, mid, this.to));
+    }
+  }
+}
+
+// Floods and colors the reached cells of the tiles a TileFlood got to, splitting
+// them between tasks until each has one
+// each cell belongs to one tile, and a word of the board's flooded cells that
+// two tiles share has its bits set atomically
+@SuppressWarnings("serial")
+class PaintTiles extends RecursiveTask<Long> {
+  TileFlood flood;
+  int from;
+  int to;
+
+  // paints tiles touched[from] to touched[to - 1]
+  PaintTiles(TileFlood flood, int from, int to) {
+    this.flood = flood;
+    this.from = from;
+    this.to = to;
+  }
+
+  // returns how many cells of this task's tiles were newly flooded
+  protected Long compute() {
+    if (this.to - this.from <= 1) {
+      return this.to == this.from ? 0 : this.flood.paint(this.flood.touched[this.from]);
+    }
+    int mid = (this.from + this.to) >>> 1;
+    PaintTiles left = new PaintTiles(this.flood, this.from, mid);
+    left.fork();
+    long right = new PaintTiles(this.flood, mid, this.to).compute();
+    return left.join() + right;
+  }
+}
+
+class ExamplesTileFlood {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue, Color.yellow));
+
+  // returns the given board after a move of color c made one step at a time
+  FloodBoard stepped(FloodBoard b, int c) {
+    b.flood(0);
+    b.updateColor(0, c);
+    b.startWave();
+    while (b.floodStep(c)) {
+      // each step floods the next wave of the move
+    }
+    return b;
+  }
+
+  void testMatchesSteps(Tester t) {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    boolean same = true;
+    for (int seed = 0; seed < 30; seed++) {
+      Random rand = new Random(seed);
+      int size = 1 + rand.nextInt(90);
+      FloodBoard one = new FloodBoard(size, rand, this.colors);
+      FloodBoard tiled = new FloodBoard(one);
+      int tile = 1 + rand.nextInt(20);
+      for (int m = 0; m < 15; m++) {
+        int c = rand.nextInt(this.colors.size());
+        this.stepped(one, c);
+        new TileFlood(tiled, c, tile).run(pool);
+        same = same && Arrays.equals(one.colors, tiled.colors)
+            && Arrays.equals(one.flooded, tiled.flooded) && one.floodedCount == tiled.floodedCount;
+      }
+    }
+    pool.shutdown();
+    t.checkExpect(same, true);
+  }
+
+  void testRounds(Tester t) {
+    // a 4x4 board of 2x2 tiles where the flood of red winds through three tiles
+    // red green red red
+    // red green red green
+    // red red red green
+    // green green green green
+    FloodBoard b = new FloodBoard(4, this.colors);
+    b.colors = new byte[] { 0, 1, 0, 0, 0, 1, 0, 1, 0, 0, 0, 1, 1, 1, 1, 1 };
+    b.flood(0);
+    TileFlood f = new TileFlood(b, 0, 2);
+    f.run(ForkJoinPool.commonPool());
+    t.checkExpect(f.tiles, 2);
+    // top left, then bottom left, then bottom right, then top right, then nothing
+    // new in the tiles they point back to
+    t.checkExpect(f.rounds >= 4, true);
+    t.checkExpect(b.floodedCount, 8);
+    t.checkExpect(b.isFlooded(3), true);
+    t.checkExpect(b.isFlooded(7), false);
+    t.checkExpect(b.allDirty, true);
+    t.checkExpect(b.colors, this.stepped(new FloodBoard(b), 0).colors);
+  }
+
+  void testOneTile(Tester t) {
+    FloodBoard b = new FloodBoard(5, new Random(3), this.colors);
+    FloodBoard expected = this.stepped(new FloodBoard(b), 2);
+    TileFlood f = new TileFlood(b, 2);
+    f.run(ForkJoinPool.commonPool());
+    t.checkExpect(f.tiles, 1);
+    t.checkExpect(b.colors, expected.colors);
+    t.checkExpect(b.flooded, expected.flooded);
+  }
+
+  void testQueueKept(Tester t) {
+    int[] q = TileFlood.queue(64);
+    t.checkExpect(TileFlood.queue(16) == q, true);
+    int[] bigger = TileFlood.queue(q.length + 1);
+    t.checkExpect(bigger.length, q.length + 1);
+    t.checkExpect(TileFlood.queue(64) == bigger, true);
+    // a flood of many tiles leaves the same queue for the next one
+    FloodBoard b = new FloodBoard(40, new Random(5), this.colors);
+    FloodBoard expected = this.stepped(new FloodBoard(b), 1);
+    new TileFlood(b, 1, 8).run(ForkJoinPool.commonPool());
+    t.checkExpect(b.flooded, expected.flooded);
+  }
+}
@@ -0,0 +1,513 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.Tester;
+import java.awt.Color;
+import javalib.impworld.*;
+import javalib.worldimages.*;
+
+// A window onto a board that can be panned and zoomed, drawn as a picture the
+// size of the window
+// the top left corner of the board is at (originX, originY) in the window, and
+// each cell is cellPx pixels wide, so drawing a frame costs as much as the
+// window, however big the board is
+// while nothing but the board changes, only the cells that changed and can be
+// seen are painted again
+// once a cell is less than a pixel wide, each pixel shows a block of cells from
+// the board's pyramid instead
+class Viewport {
+  // the most and fewest pixels a cell can be wide
+  static final double MAX_CELL_PX = 64;
+  static final double MIN_CELL_PX = 1.0 / 1024;
+  // the color of the window where there is no board
+  static final Color BACKGROUND = Color.white;
+  // the color of the cells of an endless board that have not been made
+  static final Color UNMADE = Color.lightGray;
+
+  int width;
+  int height;
+  // the number of cells along a side of the board
+  int size;
+  double originX;
+  double originY;
+  double cellPx;
+
+  // the board this was last drawn from
+  FloodBoard board;
+  ComputedPixelImage image;
+  // whether the view moved since the last frame
+  boolean moved;
+  // how many pixels were painted for the last frame
+  int lastPainted;
+
+  // makes a view of a board of the given size in a window of the given width and
+  // height, with the board centered and each cell the given number of pixels
+  // wide, which is where the board has always been drawn
+  Viewport(int width, int height, int size, int cellPx) {
+    this.width = width;
+    this.height = height;
+    this.size = size;
+    this.originX = (width / 2) - (size * cellPx) / 2;
+    this.originY = (height / 2) - (size * cellPx) / 2;
+    this.cellPx = cellPx;
+    this.image = new ComputedPixelImage(width, height);
+    this.moved = true;
+  }
+
+  // returns a view of the whole of a board of the given size in a window of the
+  // given width and height, with each cell the given number of pixels wide if the
+  // board fits that way, which is where the board has always been drawn, and as
+  // many whole pixels as fit otherwise, or a half, quarter and so on of a pixel
+  static Viewport fit(int width, int height, int size, int cellPx) {
+    Viewport ans = new Viewport(width, height, size, cellPx);
+    int side = Math.min(width, height);
+    if ((long) size * cellPx > side) {
+      double px = Math.max(1, side / size);
+      while (px * size > side && px > MIN_CELL_PX) {
+        px = px / 2;
+      }
+      ans.cellPx = px;
+      ans.originX = (width - size * px) / 2;
+      ans.originY = (height - size * px) / 2;
+    }
+    return ans;
+  }
+
+  // returns the index of the cell of the board shown at the given Posn, or the
+  // border if no cell is shown there
+  int cellAt(Posn pos) {
+    return this.cellAt(pos.x, pos.y);
+  }
+
+  // returns the index of the cell of the board shown at the given pixel, or the
+  // border if no cell is shown there
+  int cellAt(double px, double py) {
+    int x = (int) Math.floor((px - this.originX) / this.cellPx);
+    int y = (int) Math.floor((py - this.originY) / this.cellPx);
+    if (x < 0 || x >= this.size || y < 0 || y >= this.size) {
+      return FloodBoard.BORDER;
+    }
+    return y * this.size + x;
+  }
+
+  // EFFECT: moves the board the given number of pixels right and down
+  void pan(double dx, double dy) {
+    this.originX = this.originX + dx;
+    this.originY = this.originY + dy;
+    this.moved = true;
+  }
+
+  // EFFECT: makes the cells the given number of times wider, within the limits,
+  // keeping the point of the board at the given pixel where it is
+  void zoom(double factor, double px, double py) {
+    double next = Math.max(MIN_CELL_PX, Math.min(MAX_CELL_PX, this.cellPx * factor));
+    double applied = next / this.cellPx;
+    this.originX = px - (px - this.originX) * applied;
+    this.originY = py - (py - this.originY) * applied;
+    this.cellPx = next;
+    this.moved = true;
+  }
+
+  // EFFECT: paints the window again where the given board changed since the last
+  // frame, or all of it if the view moved, the board is a different one, or the
+  // cells are smaller than a pixel
+  // returns the picture of the window
+  WorldImage draw(FloodBoard b) {
+    if (b != this.board) {
+      if (this.board != null) {
+        this.board.pyramid = null;
+      }
+      this.board = b;
+      this.moved = true;
+    }
+    if (this.cellPx < 1 && b.pyramid == null) {
+      b.pyramid = new BoardPyramid(b);
+    }
+    if (this.moved || b.allDirty || this.cellPx < 1) {
+      this.paintAll();
+    }
+    else {
+      this.lastPainted = 0;
+      for (int k = 0; k < b.dirtySize; k++) {
+        this.paintCell(b.dirty[k]);
+      }
+    }
+    this.moved = false;
+    b.clearDirty();
+    return this.image;
+  }
+
+  // EFFECT: paints the whole window again if the view moved or the given endless
+  // board changed since the last frame
+  // returns the picture of the window
+  // the cells shown are made as they come into view, but once cells are smaller
+  // than a pixel only the cells already made are shown, since there could be far
+  // more of them than pixels
+  WorldImage draw(EndlessBoard b) {
+    if (this.moved || b.changed) {
+      int[] columns = this.cellsAlong(this.width, this.originX, Integer.MAX_VALUE);
+      int[] rows = this.cellsAlong(this.height, this.originY, Integer.MAX_VALUE);
+      for (int py = 0; py < this.height; py++) {
+        for (int px = 0; px < this.width; px++) {
+          Color c = BACKGROUND;
+          if (rows[py] >= 0 && columns[px] >= 0) {
+            c = this.cellPx >= 1 ? b.colorAt(columns[px], rows[py])
+                : b.peek(columns[px], rows[py]);
+          }
+          this.image.setPixel(px, py, c == null ? UNMADE : c);
+        }
+      }
+      this.lastPainted = this.width * this.height;
+    }
+    else {
+      this.lastPainted = 0;
+    }
+    this.moved = false;
+    b.changed = false;
+    return this.image;
+  }
+
+  // EFFECT: paints every pixel of the window
+  void paintAll() {
+    // the cell shown in each column and row of pixels, or -1 for none
+    int[] columns = this.cellsAlong(this.width, this.originX);
+    int[] rows = this.cellsAlong(this.height, this.originY);
+    int level = 0;
+    if (this.cellPx < 1) {
+      // the largest blocks that are still no wider than a pixel
+      level = Math.min(this.board.pyramid.levels(),
+          (int) Math.floor(Math.log(1 / this.cellPx) / Math.log(2)));
+    }
+    for (int py = 0; py < this.height; py++) {
+      for (int px = 0; px < this.width; px++) {
+        Color c = BACKGROUND;
+        if (rows[py] >= 0 && columns[px] >= 0) {
+          c = this.colorOf(columns[px], rows[py], level);
+        }
+        this.image.setPixel(px, py, c);
+      }
+    }
+    this.lastPainted = this.width * this.height;
+  }
+
+  // returns the cell of the board shown at each of the given number of pixels
+  // along a side of the window, or -1 where there is none, given where the board
+  // starts along that side
+  int[] cellsAlong(int pixels, double origin) {
+    return this.cellsAlong(pixels, origin, this.board.size);
+  }
+
+  // returns the cell of a board with the given number of cells along a side shown
+  // at each of the given number of pixels along a side of the window, or -1
+  // where there is none, given where the board starts along that side
+  int[] cellsAlong(int pixels, double origin, int cells) {
+    int[] ans = new int[pixels];
+    for (int p = 0; p < pixels; p++) {
+      double cell = Math.floor((p - origin) / this.cellPx);
+      ans[p] = cell >= 0 && cell < cells ? (int) cell : -1;
+    }
+    return ans;
+  }
+
+  // returns the color the cell at (x, y) is shown with when each pixel shows a
+  // block 2 ^ level cells wide
+  Color colorOf(int x, int y, int level) {
+    if (level == 0) {
+      return this.board.colorAt(this.board.index(x, y));
+    }
+    return this.board.pyramid.colorAt(level, x >> level, y >> level);
+  }
+
+  // EFFECT: paints the pixels of the given cell that are in the window
+  void paintCell(int i) {
+    int x = i % this.board.size;
+    int y = i / this.board.size;
+    int left = Math.max(0, (int) Math.ceil(this.originX + x * this.cellPx));
+    int right = Math.min(this.width, (int) Math.ceil(this.originX + (x + 1) * this.cellPx));
+    int top = Math.max(0, (int) Math.ceil(this.originY + y * this.cellPx));
+    int bottom = Math.min(this.height, (int) Math.ceil(this.originY + (y + 1) * this.cellPx));
+    Color c = this.board.colorAt(i);
+    for (int py = top; py < bottom; py++) {
+      for (int px = left; px < right; px++) {
+        this.image.setPixel(px, py, c);
+      }
+    }
+    this.lastPainted = this.lastPainted + Math.max(0, right - left) * Math.max(0, bottom - top);
+  }
+}
+
+// A board summed up in blocks, for showing it zoomed out
+// level L has a block for every 2 ^ L by 2 ^ L square of cells, holding the most
+// common color of the square when the pyramid was built and how many of its
+// cells are flooded
+// a block mostly flooded is shown with the color of the flood, and any other
+// with its most common color, which does not change since unflooded cells keep
+// their color
+// each newly flooded cell adds to its block at every level, so keeping the
+// pyramid up to date costs as many steps as there are levels per cell
+class BoardPyramid {
+  FloodBoard board;
+  // the number of blocks along a side at each level, starting from level 1
+  int[] sides;
+  byte[][] mode;
+  int[][] flooded;
+
+  BoardPyramid(FloodBoard board) {
+    this.board = board;
+    int n = 0;
+    for (int side = board.size; side > 1; side = (side + 1) / 2) {
+      n = n + 1;
+    }
+    this.sides = new int[n];
+    this.mode = new byte[n][];
+    this.flooded = new int[n][];
+    int side = board.size;
+    for (int level = 0; level < n; level++) {
+      side = (side + 1) / 2;
+      this.sides[level] = side;
+      this.mode[level] = new byte[side * side];
+      this.flooded[level] = new int[side * side];
+    }
+    this.build();
+  }
+
+  // returns how many levels of blocks there are
+  int levels() {
+    return this.sides.length;
+  }
+
+  // EFFECT: works out every block again from the cells of the board
+  void build() {
+    int colors = Math.max(1, this.board.palette.size());
+    int[] tally = new int[colors];
+    for (int level = 1; level <= this.levels(); level++) {
+      int side = this.sides[level - 1];
+      byte[] modes = this.mode[level - 1];
+      int[] counts = this.flooded[level - 1];
+      for (int by = 0; by < side; by++) {
+        for (int bx = 0; bx < side; bx++) {
+          Arrays.fill(tally, 0);
+          int count = 0;
+          for (int dy = 0; dy < 2; dy++) {
+            for (int dx = 0; dx < 2; dx++) {
+              int x = 2 * bx + dx;
+              int y = 2 * by + dy;
+              if (level == 1 && x < this.board.size && y < this.board.size) {
+                int i = this.board.index(x, y);
+                tally[this.board.colors[i]] = tally[this.board.colors[i]] + 1;
+                count = count + (this.board.isFlooded(i) ? 1 : 0);
+              }
+              else if (level > 1 && x < this.sides[level - 2] && y < this.sides[level - 2]) {
+                int child = y * this.sides[level - 2] + x;
+                int c = this.mode[level - 2][child];
+                tally[c] = tally[c] + 1;
+                count = count + this.flooded[level - 2][child];
+              }
+            }
+          }
+          int best = 0;
+          for (int c = 1; c < colors; c++) {
+            if (tally[c] > tally[best]) {
+              best = c;
+            }
+          }
+          modes[by * side + bx] = (byte) best;
+          counts[by * side + bx] = count;
+        }
+      }
+    }
+  }
+
+  // EFFECT: counts the given cell as flooded in each block it is in
+  void flood(int i) {
+    int x = i % this.board.size;
+    int y = i / this.board.size;
+    for (int level = 1; level <= this.levels(); level++) {
+      int block = (y >> level) * this.sides[level - 1] + (x >> level);
+      this.flooded[level - 1][block] = this.flooded[level - 1][block] + 1;
+    }
+  }
+
+  // EFFECT: counts the given cell of the board as no longer flooded
+  void unflood(int i) {
+    int x = i % this.board.size;
+    int y = i / this.board.size;
+    for (int level = 1; level <= this.levels(); level++) {
+      int block = (y >> level) * this.sides[level - 1] + (x >> level);
+      this.flooded[level - 1][block] = this.flooded[level - 1][block] - 1;
+    }
+  }
+
+  // returns how many cells of the board the given block at the given level covers
+  int area(int level, int bx, int by) {
+    int full = 1 << level;
+    int w = Math.min(full, this.board.size - bx * full);
+    int h = Math.min(full, this.board.size - by * full);
+    return w * h;
+  }
+
+  // returns the color the given block at the given level is shown with
+  Color colorAt(int level, int bx, int by) {
+    int block = by * this.sides[level - 1] + bx;
+    if (2 * this.flooded[level - 1][block] > this.area(level, bx, by)) {
+      return this.board.colorAt(0);
+    }
+    return this.board.palette.get(this.mode[level - 1][block]);
+  }
+}
+
+class ExamplesViewport {
+
+  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.red, Color.green,
+      Color.blue));
+
+  // a 4x4 board
+  // red red green green
+  // red blue green green
+  // blue blue blue red
+  // blue blue red red
+  FloodBoard board4() {
+    FloodBoard b = new FloodBoard(4, this.colors);
+    b.colors = new byte[] { 0, 0, 1, 1, 0, 2, 1, 1, 2, 2, 2, 0, 2, 2, 0, 0 };
+    b.flood(0);
+    b.flood(1);
+    b.flood(4);
+    return b;
+  }
+
+  void testLegacyView(Tester t) {
+    FloodItWorld w = new FloodItWorld(13, 5, 3);
+    Viewport v = new Viewport(500, 500, 13, 20);
+    for (int px = 100; px < 400; px = px + 3) {
+      for (int py = 100; py < 400; py = py + 7) {
+        t.checkExpect(v.cellAt(new Posn(px, py)), w.cellAt(new Posn(px, py)));
+      }
+    }
+    t.checkExpect(v.originX, 120.0);
+  }
+
+  void testPanZoom(Tester t) {
+    Viewport v = new Viewport(100, 100, 4, 10);
+    t.checkExpect(v.cellAt(30, 30), 0);
+    t.checkExpect(v.cellAt(29, 30), FloodBoard.BORDER);
+    v.pan(-10, 0);
+    t.checkExpect(v.cellAt(30, 30), 1);
+    v.zoom(2, 30, 30);
+    t.checkExpect(v.cellPx, 20.0);
+    t.checkExpect(v.cellAt(30, 30), 1);
+    t.checkExpect(v.cellAt(50, 30), 2);
+    v.zoom(1e9, 0, 0);
+    t.checkExpect(v.cellPx, Viewport.MAX_CELL_PX);
+    v.zoom(1e-12, 0, 0);
+    t.checkExpect(v.cellPx, Viewport.MIN_CELL_PX);
+  }
+
+  void testDrawOnlyWhatChanged(Tester t) {
+    FloodBoard b = this.board4();
+    Viewport v = new Viewport(30, 30, 4, 10);
+    v.pan(5, 5);
+    v.draw(b);
+    t.checkExpect(v.lastPainted, 900);
+    v.draw(b);
+    t.checkExpect(v.lastPainted, 0);
+    b.updateColor(5, 0);
+    b.updateColor(15, 1);
+    v.draw(b);
+    // cell 5 is in view, cell 15 is off the window
+    t.checkExpect(v.lastPainted, 100);
+    Viewport fresh = new Viewport(30, 30, 4, 10);
+    fresh.pan(5, 5);
+    fresh.draw(b);
+    t.checkExpect(v.image, fresh.image);
+  }
+
+  void testPyramid(Tester t) {
+    FloodBoard b = this.board4();
+    BoardPyramid p = new BoardPyramid(b);
+    t.checkExpect(p.levels(), 2);
+    t.checkExpect(p.sides, new int[] { 2, 1 });
+    t.checkExpect(p.mode[0], new byte[] { 0, 1, 2, 0 });
+    t.checkExpect(p.flooded[0], new int[] { 3, 0, 0, 0 });
+    t.checkExpect(p.flooded[1], new int[] { 3 });
+    t.checkExpect(p.colorAt(1, 0, 0), Color.red);
+    t.checkExpect(p.colorAt(1, 1, 0), Color.green);
+    b.pyramid = p;
+    b.flood(2);
+    b.flood(3);
+    b.flood(6);
+    t.checkExpect(p.flooded[0], new int[] { 3, 3, 0, 0 });
+    t.checkExpect(p.colorAt(1, 1, 0), Color.red);
+    t.checkExpect(p.area(1, 1, 1), 4);
+    t.checkExpect(new BoardPyramid(new FloodBoard(5, this.colors)).area(2, 1, 0), 4);
+  }
+
+  void testZoomedOut(Tester t) {
+    FloodBoard b = this.board4();
+    Viewport v = new Viewport(2, 2, 4, 1);
+    v.zoom(0.5, 0, 0);
+    v.draw(b);
+    t.checkExpect(b.pyramid == null, false);
+    t.checkExpect(v.colorOf(2, 0, 1), Color.green);
+    t.checkExpect(v.lastPainted, 4);
+    ComputedPixelImage expected = new ComputedPixelImage(2, 2);
+    expected.setPixel(0, 0, Color.red);
+    expected.setPixel(1, 0, Color.green);
+    expected.setPixel(0, 1, Color.blue);
+    expected.setPixel(1, 1, Color.red);
+    t.checkExpect(v.image, expected);
+    // a new board lets go of the old board's pyramid
+    FloodBoard other = this.board4();
+    v.draw(other);
+    t.checkExpect(b.pyramid, null);
+    t.checkExpect(other.pyramid == null, false);
+  }
+
+  void testWorldView(Tester t) {
+    FloodItWorld w = new FloodItWorld(24, 4, 5);
+    int before = w.cellAt(new Posn(250, 250));
+    w.onKeyEvent("left");
+    t.checkExpect(w.view == null, false);
+    // the board moves right a quarter of the scene, so the cell 7 left of the
+    // middle one is under the middle of the scene
+    t.checkExpect(w.cellAt(new Posn(250, 250)), before - 7);
+    w.onKeyEvent("=");
+    t.checkExpect(w.view.cellPx, 40.0);
+    w.onKeyEvent("-");
+    w.onKeyEvent("-");
+    t.checkExpect(w.view.cellPx, 10.0);
+    double x = w.view.originX;
+    w.onMousePressed(new Posn(300, 300));
+    w.onMouseReleased(new Posn(310, 300));
+    t.checkExpect(w.view.originX, x + 10);
+    w.onMouseClicked(new Posn(250, 250), "RightButton");
+    t.checkExpect(w.view.cellPx, 20.0);
+    t.checkExpect(w.flooding, false);
+    w.makeScene();
+    w.onKeyEvent("0");
+    // back where the board has always been drawn
+    t.checkExpect(w.view.cellPx, 20.0);
+    t.checkExpect(w.view.originX, 10.0);
+    t.checkExpect(w.cellAt(new Posn(250, 250)), before);
+  }
+
+  void testBoardBiggerThanScene(Tester t) {
+    FloodItWorld w = new FloodItWorld(new FloodGame(1200, 4, new Random(2)));
+    // the board is shown whole, a quarter of a pixel a cell, and only the scene's
+    // pixels are painted
+    WorldScene s = w.makeScene();
+    t.checkExpect(w.boardImage, null);
+    t.checkExpect(w.view.cellPx, 0.25);
+    t.checkExpect(w.view.lastPainted, 500 * 500);
+    t.checkExpect(s != null, true);
+    t.checkExpect(w.cellAt(new Posn(101, 101)), w.game.board().index(4, 4));
+    t.checkExpect(w.cellAt(new Posn(99, 250)), FloodBoard.BORDER);
+    w.onKeyEvent("=");
+    w.onKeyEvent("0");
+    t.checkExpect(w.view.cellPx, 0.25);
+    // a board that needs whole pixels fits with as many as it can have
+    Viewport v = Viewport.fit(500, 500, 30, 20);
+    t.checkExpect(v.cellPx, 16.0);
+    t.checkExpect(v.originX, 10.0);
+  }
+}